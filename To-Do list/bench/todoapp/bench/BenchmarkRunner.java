@@ -0,0 +1,296 @@
+package todoapp.bench;
+
+import todoapp.model.Task;
+import todoapp.service.DataPersistence;
+import todoapp.service.Durability;
+import todoapp.service.ParallelScan;
+import todoapp.service.TaskManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the task benchmarks for every combination of parameters and writes the results as JSON
+ * Results use the same layout as JMH JSON output, so the usual JMH result viewers can compare them
+ *
+ * Data files are written to the working directory, so it has to be run from an empty directory:
+ * java -cp out todoapp.bench.BenchmarkRunner [--tasks 1000,1000000] [--distribution UNIFORM,SKEWED]
+ * [--strings SHORT,LONG] [--benchmarks findById,save] [--warmup 2] [--iterations 5] [--time 500]
+ * [--scan-threads 1,8] [--stores TASK_MANAGER,COLUMNAR,OFF_HEAP] [--out results.json]
+ * Every benchmark runs once per scan thread count, 1 runs text scans and query filters sequentially
+ * Other stores than TaskManager have no parallel scans, they run once with scan thread count 1
+ */
+public class BenchmarkRunner {
+    private static final long SEED = 42;
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1); //Fixed, so OVERDUE selects the same tasks on every run
+    private static final double Z_999 = 3.29; //Two-sided 99.9% normal quantile, used for the score error
+
+    private static volatile Object sink; //Consumes benchmark results
+
+    private final PrintStream console = System.out;
+    private final List<String> results = new ArrayList<>();
+    private int[] sizes = {1_000, 10_000, 100_000, 1_000_000};
+    private List<TaskDataset.Distribution> distributions = List.of(TaskDataset.Distribution.values());
+    private List<TaskDataset.StringLength> stringLengths = List.of(TaskDataset.StringLength.values());
+    private List<TaskBenchmark> benchmarks = List.of(TaskBenchmark.values());
+    private List<TaskBenchmark.Store> stores = List.of(TaskBenchmark.Store.values());
+    private int[] scanThreads = {1, Runtime.getRuntime().availableProcessors()};
+    private int warmupIterations = 2;
+    private int iterations = 5;
+    private long iterationMillis = 500;
+    private Path output = Paths.get("bench-results.json");
+
+    public static void main(String[] args) {
+        BenchmarkRunner runner = new BenchmarkRunner();
+
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+
+        if (Files.exists(Paths.get("tasks.dat")) || Files.exists(Paths.get("tasks.log"))) {
+            System.out.println("Error: working directory already has task data, run benchmarks from an empty directory");
+            return;
+        }
+
+        runner.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--tasks" -> {
+                    String[] parts = value.split(",");
+                    sizes = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        sizes[j] = Integer.parseInt(parts[j].trim());
+                    }
+                }
+                case "--distribution" -> {
+                    distributions = new ArrayList<>();
+                    for (String part : value.split(",")) {
+                        distributions.add(TaskDataset.Distribution.valueOf(part.trim().toUpperCase()));
+                    }
+                }
+                case "--strings" -> {
+                    stringLengths = new ArrayList<>();
+                    for (String part : value.split(",")) {
+                        stringLengths.add(TaskDataset.StringLength.valueOf(part.trim().toUpperCase()));
+                    }
+                }
+                case "--benchmarks" -> {
+                    benchmarks = new ArrayList<>();
+                    for (String part : value.split(",")) {
+                        benchmarks.add(benchmark(part.trim()));
+                    }
+                }
+                case "--stores" -> {
+                    stores = new ArrayList<>();
+                    for (String part : value.split(",")) {
+                        stores.add(TaskBenchmark.Store.valueOf(part.trim().toUpperCase().replace('-', '_')));
+                    }
+                }
+                case "--scan-threads" -> {
+                    String[] parts = value.split(",");
+                    scanThreads = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        scanThreads[j] = Integer.parseInt(parts[j].trim());
+                    }
+                }
+                case "--warmup" -> warmupIterations = Integer.parseInt(value);
+                case "--iterations" -> iterations = Integer.parseInt(value);
+                case "--time" -> iterationMillis = Long.parseLong(value);
+                case "--out" -> output = Paths.get(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (iterations <= 0 || warmupIterations < 0 || iterationMillis <= 0) {
+            throw new IllegalArgumentException("Iterations and time must be positive numbers");
+        }
+        for (int threads : scanThreads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Scan threads must be positive numbers");
+            }
+        }
+        if (scanThreads.length == 2 && scanThreads[0] == scanThreads[1]) {
+            scanThreads = new int[] {scanThreads[0]}; //Single core machine, default 1 and N are the same
+        }
+    }
+
+    private static TaskBenchmark benchmark(String name) {
+        for (TaskBenchmark benchmark : TaskBenchmark.values()) {
+            if (benchmark.displayName().equalsIgnoreCase(name) || benchmark.name().equalsIgnoreCase(name)) {
+                return benchmark;
+            }
+        }
+        throw new IllegalArgumentException("Unknown benchmark: " + name);
+    }
+
+    private void run() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); //viewTasks output is not measured on the console
+
+        try {
+            for (int size : sizes) {
+                for (TaskDataset.Distribution distribution : distributions) {
+                    for (TaskDataset.StringLength stringLength : stringLengths) {
+                        runAll(new TaskDataset(size, distribution, stringLength, TODAY, SEED));
+                    }
+                }
+            }
+        } finally {
+            System.setOut(console);
+            deleteData();
+        }
+
+        try {
+            Files.writeString(output, "[\n" + String.join(",\n", results) + "\n]\n");
+            console.println("Results written to " + output);
+        } catch (IOException e) {
+            console.println("Error writing results: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs every benchmark on one dataset, each one starting from the freshly written snapshot
+     */
+    private void runAll(TaskDataset dataset) {
+        List<Task> tasks = dataset.generate();
+
+        for (TaskBenchmark.Store store : stores) {
+            int[] threadCounts = store == TaskBenchmark.Store.TASK_MANAGER ? scanThreads : new int[] {1};
+            for (int threads : threadCounts) {
+                ParallelScan scan = ParallelScan.withThreads(threads, ParallelScan.DEFAULT_THRESHOLD);
+
+                for (TaskBenchmark benchmark : benchmarks) {
+                    if (!benchmark.supports(store)) {
+                        continue;
+                    }
+                    writeSnapshot(tasks, dataset.getSize());
+
+                    TaskBenchmark.State state = new TaskBenchmark.State(dataset, tasks, store, SEED);
+                    state.store = store.open();
+                    if (state.store instanceof TaskManager manager) {
+                        manager.setParallelScan(scan);
+                        state.manager = manager;
+                    }
+                    try {
+                        double[] scores = measure(benchmark, state);
+                        report(benchmark, dataset, store, threads, scores);
+                    } finally {
+                        state.store.close();
+                    }
+                    System.gc(); //Garbage of one benchmark should not be collected during the next one
+                }
+            }
+        }
+    }
+
+    private void writeSnapshot(List<Task> tasks, int size) {
+        deleteData();
+        if (!DataPersistence.saveTasks(tasks, 0, size + 1)) {
+            throw new IllegalStateException("Could not write benchmark snapshot");
+        }
+    }
+
+    private static void deleteData() {
+        TaskManager manager = new TaskManager(true, Durability.NONE);
+        manager.deleteAllData();
+        manager.close();
+    }
+
+    /**
+     * Runs warmup and measured iterations, each repeating the operation for the iteration time
+     *
+     * @return average time per operation of every measured iteration, in nanoseconds
+     */
+    private double[] measure(TaskBenchmark benchmark, TaskBenchmark.State state) {
+        double[] scores = new double[iterations];
+        long iterationNanos = iterationMillis * 1_000_000;
+
+        for (int i = -warmupIterations; i < iterations; i++) {
+            long operations = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                sink = benchmark.run(state);
+                operations++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < iterationNanos);
+
+            if (i >= 0) {
+                scores[i] = (double) elapsed / operations;
+            }
+        }
+
+        return scores;
+    }
+
+    private void report(TaskBenchmark benchmark, TaskDataset dataset, TaskBenchmark.Store store, int threads, double[] scores) {
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length > 1 ? Z_999 * Math.sqrt(variance / (scores.length - 1)) / Math.sqrt(scores.length) : Double.NaN;
+
+        console.printf(Locale.ROOT, "%-18s tasks=%-8d %-8s %-6s %-12s scan=%-3d %,16.1f ns/op%n", benchmark.displayName(), dataset.getSize(),
+                dataset.getDistribution(), dataset.getStringLength(), store, threads, mean);
+
+        StringBuilder rawData = new StringBuilder();
+        for (double score : scores) {
+            rawData.append(rawData.isEmpty() ? "" : ", ").append(number(score));
+        }
+
+        results.add(String.format(Locale.ROOT, """
+                  {
+                    "benchmark": "todoapp.bench.TaskBenchmark.%s",
+                    "mode": "avgt",
+                    "jdkVersion": "%s",
+                    "threads": 1,
+                    "forks": 0,
+                    "warmupIterations": %d,
+                    "measurementIterations": %d,
+                    "measurementTime": "%d ms",
+                    "params": {
+                      "taskCount": "%d",
+                      "distribution": "%s",
+                      "stringLength": "%s",
+                      "store": "%s",
+                      "scanThreads": "%d"
+                    },
+                    "primaryMetric": {
+                      "score": %s,
+                      "scoreError": %s,
+                      "scoreUnit": "ns/op",
+                      "rawData": [[%s]]
+                    }
+                  }""", benchmark.displayName(), System.getProperty("java.version"), warmupIterations, iterations,
+                iterationMillis, dataset.getSize(), dataset.getDistribution(), dataset.getStringLength(), store, threads,
+                number(mean), number(error), rawData));
+    }
+
+    //JSON has no NaN, an unknown error is written as null
+    private static String number(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,288 @@
+package todoapp.bench;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import todoapp.service.ConcurrentTaskManager;
+import todoapp.service.Durability;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Stress test of ConcurrentTaskManager: worker threads add, update and remove tasks at the same time,
+ * while the journal writes checkpoints in between
+ * Every worker changes its own tasks and some fields of shared tasks, each field of a shared task has one writer,
+ * so the final state is known exactly. Checks that IDs are unique, that no update was lost,
+ * and that the state loaded back from snapshot and journal is the same
+ *
+ * Data files are written to the working directory, so it has to be run from an empty directory:
+ * java -cp out todoapp.bench.ConcurrentStressTest [--threads 8] [--operations 20000] [--durability NONE|BATCHED|PER_OP]
+ * Exits with status 1 if a check fails
+ */
+public class ConcurrentStressTest {
+    private static final long SEED = 42;
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1);
+    private static final int SHARED_TASKS = 64;
+    private static final int SHARED_FIELDS = 4; //Title, description, due date and priority
+
+    private int threads = 8;
+    private int operations = 20_000; //Per thread
+    private Durability durability = Durability.BATCHED;
+    private final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) {
+        ConcurrentStressTest test = new ConcurrentStressTest();
+
+        try {
+            test.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+
+        if (Files.exists(Paths.get("tasks.dat")) || Files.exists(Paths.get("tasks.log"))) {
+            System.out.println("Error: working directory already has task data, run the stress test from an empty directory");
+            return;
+        }
+
+        try {
+            test.run();
+        } catch (InterruptedException e) {
+            System.out.println("Error: interrupted");
+            return;
+        }
+
+        if (!test.failures.isEmpty()) {
+            test.failures.stream().limit(20).forEach(failure -> System.out.println("FAILED: " + failure));
+            System.out.println(test.failures.size() + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--operations" -> operations = Integer.parseInt(value);
+                case "--durability" -> durability = Durability.valueOf(value.toUpperCase());
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (threads <= 0 || threads > SHARED_TASKS * SHARED_FIELDS || operations <= 0) {
+            throw new IllegalArgumentException("Operations must be positive, threads between 1 and " + SHARED_TASKS * SHARED_FIELDS);
+        }
+    }
+
+    private void run() throws InterruptedException {
+        ConcurrentTaskManager manager = new ConcurrentTaskManager(durability);
+        try {
+            List<Task> shared = new ArrayList<>();
+            for (int i = 0; i < SHARED_TASKS; i++) {
+                shared.add(new Task("Shared " + i, "", TODAY, Priority.MEDIUM));
+            }
+            manager.addTasks(shared); //Tasks keep their IDs and serve as expected state of the shared tasks
+
+            System.out.printf(Locale.ROOT, "%d threads, %d operations each, durability %s%n", threads, operations, durability);
+            Worker[] workers = new Worker[threads];
+            Thread[] running = new Thread[threads];
+            long start = System.nanoTime();
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker(i, manager, shared, new Random(SEED + i));
+                running[i] = new Thread(workers[i], "stress-worker-" + i);
+                running[i].start();
+            }
+            for (Thread thread : running) {
+                thread.join();
+            }
+            manager.lastWrite().join();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf(Locale.ROOT, "%,d operations in %,d ms, %,.0f ops/s%n", (long) threads * operations, millis,
+                    threads * (double) operations * 1000 / Math.max(1, millis));
+
+            Map<Integer, Task> expected = new HashMap<>();
+            Set<Integer> ids = new HashSet<>();
+            int handedOut = shared.size();
+            for (Task task : shared) {
+                expected.put(task.getId(), task);
+                ids.add(task.getId());
+            }
+            for (Worker worker : workers) {
+                if (worker.error != null) {
+                    failures.add(worker.error);
+                }
+                expected.putAll(worker.owned);
+                ids.addAll(worker.addedIds);
+                handedOut += worker.addedIds.size();
+            }
+            check(ids.size() == handedOut, (handedOut - ids.size()) + " IDs were handed out twice");
+
+            compare("Live state", expected, manager);
+            manager.close();
+            check(Files.exists(Paths.get("tasks.dat")), "No checkpoint was written");
+
+            manager = new ConcurrentTaskManager(durability); //Snapshot of the last checkpoint and the journal after it
+            compare("Reloaded state", expected, manager);
+            Task added = new Task("After reload", "", TODAY, Priority.LOW);
+            manager.addTask(added);
+            int maxId = ids.stream().mapToInt(Integer::intValue).max().orElse(0);
+            check(added.getId() > maxId, "ID " + added.getId() + " after reload was handed out before");
+            System.out.printf(Locale.ROOT, "%,d tasks, %,d IDs handed out%n", expected.size(), handedOut);
+        } finally {
+            manager.deleteAllData();
+            manager.close();
+        }
+    }
+
+    private void compare(String state, Map<Integer, Task> expected, ConcurrentTaskManager manager) {
+        check(manager.size() == expected.size(), state + ": " + manager.size() + " tasks, expected " + expected.size());
+        for (Task task : expected.values()) {
+            Task stored = manager.findById(task.getId());
+            check(stored != null && describe(stored).equals(describe(task)),
+                    state + ": expected " + describe(task) + " but was " + (stored != null ? describe(stored) : "missing"));
+        }
+    }
+
+    private void check(boolean condition, String failure) {
+        if (!condition) {
+            failures.add(failure);
+        }
+    }
+
+    private static String describe(Task task) {
+        return task.getId() + "|" + task.getTitle() + "|" + task.getDescription() + "|" + task.getDueDate() + "|"
+                + task.getPriority() + "|" + task.isCompleted();
+    }
+
+    /**
+     * One thread of changes, its own tasks are kept in a local map as expected state
+     */
+    private final class Worker implements Runnable {
+        private final int number;
+        private final ConcurrentTaskManager manager;
+        private final List<Task> shared;
+        private final Random random;
+        private final Map<Integer, Task> owned = new HashMap<>();
+        private final List<Integer> ownedIds = new ArrayList<>(); //Keys of owned, for random picks
+        private final List<Integer> addedIds = new ArrayList<>(); //Every ID this worker got, also of removed tasks
+        private final List<int[]> sharedFields = new ArrayList<>(); //Shared task and field pairs written only by this worker
+        private String error;
+
+        Worker(int number, ConcurrentTaskManager manager, List<Task> shared, Random random) {
+            this.number = number;
+            this.manager = manager;
+            this.shared = shared;
+            this.random = random;
+            for (int slot = 0; slot < SHARED_TASKS * SHARED_FIELDS; slot++) {
+                if (slot % threads == number) {
+                    sharedFields.add(new int[] {slot / SHARED_FIELDS, slot % SHARED_FIELDS});
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < operations; i++) {
+                    step(i);
+                }
+            } catch (RuntimeException e) {
+                error = "Worker " + number + ": " + e;
+            }
+        }
+
+        private void step(int step) {
+            int roll = random.nextInt(100);
+            if (ownedIds.isEmpty() || roll < 20) {
+                add(new Task("Worker " + number + " task " + step, "", TODAY.plusDays(random.nextInt(365)), Priority.LOW));
+            } else if (roll < 25) {
+                List<Task> batch = new ArrayList<>();
+                for (int i = random.nextInt(20); i >= 0; i--) {
+                    batch.add(new Task("Worker " + number + " batch " + step + "." + i, "", TODAY, Priority.HIGH));
+                }
+                manager.addTasks(batch);
+                for (Task task : batch) {
+                    keep(task);
+                }
+            } else if (roll < 55) {
+                update(owned.get(ownedIds.get(random.nextInt(ownedIds.size()))), random.nextInt(5), step);
+            } else if (roll < 80) {
+                int[] field = sharedFields.get(random.nextInt(sharedFields.size()));
+                update(shared.get(field[0]), field[1], step);
+            } else if (roll < 95) {
+                int position = random.nextInt(ownedIds.size());
+                int id = ownedIds.get(position);
+                ownedIds.set(position, ownedIds.get(ownedIds.size() - 1));
+                ownedIds.remove(ownedIds.size() - 1);
+                owned.remove(id);
+                if (!manager.removeTask(id)) {
+                    error = "Worker " + number + ": task " + id + " was gone before its removal";
+                }
+            } else {
+                Task task = owned.get(ownedIds.get(random.nextInt(ownedIds.size())));
+                Task stored = manager.findById(task.getId());
+                if (stored == null || !describe(stored).equals(describe(task))) {
+                    error = "Worker " + number + ": read " + (stored != null ? describe(stored) : "nothing") + " instead of " + describe(task);
+                }
+            }
+        }
+
+        private void add(Task task) {
+            manager.addTask(task);
+            keep(task);
+        }
+
+        private void keep(Task task) {
+            owned.put(task.getId(), task);
+            ownedIds.add(task.getId());
+            addedIds.add(task.getId());
+        }
+
+        /**
+         * Changes one field in the manager and in the expected task
+         */
+        private void update(Task task, int field, int step) {
+            int id = task.getId();
+            switch (field) {
+                case 0 -> {
+                    task.setTitle("Title " + number + "." + step);
+                    manager.updateTitle(id, task.getTitle());
+                }
+                case 1 -> {
+                    task.setDescription("Description " + number + "." + step);
+                    manager.updateDescription(id, task.getDescription());
+                }
+                case 2 -> {
+                    task.setDueDate(TODAY.plusDays(random.nextInt(365)));
+                    manager.updateDate(id, task.getDueDate());
+                }
+                case 3 -> {
+                    task.setPriority(Priority.values()[random.nextInt(3)]);
+                    manager.updatePriority(id, task.getPriority());
+                }
+                default -> {
+                    task.setCompleted(!task.isCompleted());
+                    if (task.isCompleted()) {
+                        manager.markCompleted(id);
+                    } else {
+                        manager.markIncompleted(id);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package todoapp.bench;
+
+import todoapp.server.TaskServer;
+import todoapp.service.DataPersistence;
+import todoapp.service.Durability;
+import todoapp.service.TaskManager;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Load test of TaskServer: starts the server on a free local port and drives it with concurrent clients
+ * Every client sends one request at a time over a kept-alive connection, mixing reads, listings, updates and adds
+ * Reports throughput and p50/p99/max latency per request type
+ *
+ * Data files are written to the working directory, so it has to be run from an empty directory:
+ * java -cp out todoapp.bench.ServerLoadTest [--clients 16] [--tasks 10000] [--warmup 2000] [--time 10000]
+ * [--durability NONE|BATCHED|PER_OP]
+ */
+public class ServerLoadTest {
+    private static final long SEED = 42;
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1);
+
+    /**
+     * Request types with their share of all requests, in percent
+     */
+    private enum Operation {
+        GET(55),
+        UPDATE(20),
+        ADD(15),
+        LIST(10);
+
+        private final int percent;
+
+        Operation(int percent) {
+            this.percent = percent;
+        }
+    }
+
+    private int clients = 16;
+    private int taskCount = 10_000;
+    private long warmupMillis = 2_000;
+    private long testMillis = 10_000;
+    private Durability durability = Durability.BATCHED;
+
+    public static void main(String[] args) {
+        ServerLoadTest test = new ServerLoadTest();
+
+        try {
+            test.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+
+        if (Files.exists(Paths.get("tasks.dat")) || Files.exists(Paths.get("tasks.log"))) {
+            System.out.println("Error: working directory already has task data, run the load test from an empty directory");
+            return;
+        }
+
+        try {
+            test.run();
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--clients" -> clients = Integer.parseInt(value);
+                case "--tasks" -> taskCount = Integer.parseInt(value);
+                case "--warmup" -> warmupMillis = Long.parseLong(value);
+                case "--time" -> testMillis = Long.parseLong(value);
+                case "--durability" -> durability = Durability.valueOf(value.toUpperCase());
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (clients <= 0 || taskCount <= 0 || warmupMillis < 0 || testMillis <= 0) {
+            throw new IllegalArgumentException("Clients, tasks and time must be positive numbers");
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        TaskDataset dataset = new TaskDataset(taskCount, TaskDataset.Distribution.UNIFORM, TaskDataset.StringLength.SHORT, TODAY, SEED);
+        if (!DataPersistence.saveTasks(dataset.generate(), 0, taskCount + 1)) {
+            throw new IOException("Could not write load test snapshot");
+        }
+        TaskManager manager = new TaskManager(true, durability);
+
+        try (TaskServer server = new TaskServer(manager, 0)) {
+            server.start();
+            String base = "http://localhost:" + server.getPort() + "/tasks";
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+
+            System.out.printf(Locale.ROOT, "%d clients, %d tasks, durability %s%n", clients, taskCount, durability);
+            drive(http, base, warmupMillis); //JIT, connection setup and lazily built indexes are not measured
+            Client[] results = drive(http, base, testMillis);
+            report(results, testMillis);
+        } finally {
+            TaskManager cleanup = new TaskManager(true, Durability.NONE); //Server closed the manager, remove the test data
+            cleanup.deleteAllData();
+            cleanup.close();
+        }
+    }
+
+    /**
+     * Runs all clients for the given time and waits for them
+     */
+    private Client[] drive(HttpClient http, String base, long millis) throws InterruptedException {
+        long end = System.nanoTime() + millis * 1_000_000;
+        Client[] running = new Client[clients];
+        Thread[] threads = new Thread[clients];
+
+        for (int i = 0; i < clients; i++) {
+            running[i] = new Client(http, base, new Random(SEED + i), end);
+            threads[i] = new Thread(running[i], "load-client-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return running;
+    }
+
+    private void report(Client[] results, long millis) {
+        long total = 0;
+        long errors = 0;
+
+        for (Operation operation : Operation.values()) {
+            int count = 0;
+            for (Client client : results) {
+                count += client.counts[operation.ordinal()];
+            }
+
+            long[] latencies = new long[count];
+            int position = 0;
+            for (Client client : results) {
+                int clientCount = client.counts[operation.ordinal()];
+                System.arraycopy(client.latencies[operation.ordinal()], 0, latencies, position, clientCount);
+                position += clientCount;
+            }
+            Arrays.sort(latencies);
+            total += count;
+
+            if (count == 0) {
+                System.out.printf(Locale.ROOT, "%-8s no requests%n", operation);
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-8s %,10d req  p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n", operation, count,
+                    millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)), millis(latencies[count - 1]));
+        }
+
+        for (Client client : results) {
+            errors += client.errors;
+        }
+        System.out.printf(Locale.ROOT, "Total    %,10d req  %,.0f req/s  %d errors%n", total, total * 1000.0 / millis, errors);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * One client connection sending requests until the end time, latencies are kept per request type
+     */
+    private final class Client implements Runnable {
+        private final HttpClient http;
+        private final String base;
+        private final Random random;
+        private final long end;
+        private final long[][] latencies = new long[Operation.values().length][1024];
+        private final int[] counts = new int[Operation.values().length];
+        private long errors;
+
+        Client(HttpClient http, String base, Random random, long end) {
+            this.http = http;
+            this.base = base;
+            this.random = random;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < end) {
+                Operation operation = pick();
+                HttpRequest request = request(operation);
+
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    if (response.statusCode() >= 400) {
+                        errors++;
+                    }
+                } catch (IOException e) {
+                    errors++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                record(operation, System.nanoTime() - start);
+            }
+        }
+
+        private Operation pick() {
+            int roll = random.nextInt(100);
+            for (Operation operation : Operation.values()) {
+                roll -= operation.percent;
+                if (roll < 0) {
+                    return operation;
+                }
+            }
+            return Operation.GET;
+        }
+
+        private HttpRequest request(Operation operation) {
+            int id = 1 + random.nextInt(taskCount); //Preloaded tasks are never removed
+            return switch (operation) {
+                case GET -> HttpRequest.newBuilder(URI.create(base + "/" + id)).GET().build();
+                case UPDATE -> HttpRequest.newBuilder(URI.create(base + "/" + id))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"priority\":\"" + (random.nextBoolean() ? "HIGH" : "LOW")
+                                + "\",\"completed\":" + random.nextBoolean() + "}"))
+                        .build();
+                case ADD -> HttpRequest.newBuilder(URI.create(base))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Load test " + id + "\",\"description\":\"\",\"dueDate\":\""
+                                + TODAY.plusDays(random.nextInt(365)) + "\",\"priority\":\"MEDIUM\"}"))
+                        .build();
+                case LIST -> HttpRequest.newBuilder(URI.create(base + "?filter=incompleted&sort=date&limit=50")).GET().build();
+            };
+        }
+
+        private void record(Operation operation, long nanos) {
+            int type = operation.ordinal();
+            if (counts[type] == latencies[type].length) {
+                latencies[type] = Arrays.copyOf(latencies[type], counts[type] * 2);
+            }
+            latencies[type][counts[type]++] = nanos;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package todoapp.bench;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import todoapp.service.ColumnarTaskStore;
+import todoapp.service.DataPersistence;
+import todoapp.service.Durability;
+import todoapp.service.OffHeapTaskStore;
+import todoapp.service.TaskFilter;
+import todoapp.service.TaskManager;
+import todoapp.service.TaskOperations;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measured operations, one per TaskManager or DataPersistence hot path
+ * Operations of the TaskOperations interface also run on the other task stores
+ * Every operation returns a value that is consumed by the runner, so the JIT cannot remove it
+ */
+public enum TaskBenchmark {
+    ADD_TASK(state -> {
+        Task task = state.dataset.newTask(state.random);
+        state.store.addTask(task);
+        return task.getId();
+    }),
+    FIND_BY_ID(state -> state.store.findById(1 + state.random.nextInt(state.dataset.getSize()))),
+    FIND_BY_TITLE(state -> state.store.findByTitle(state.dataset.word(state.random)).size()),
+    FIND_BY_DESCRIPTION(state -> state.store.findByDescription(state.dataset.word(state.random)).size()),
+    SCAN_TITLE(state -> {
+        //Two letters are shorter than a gram, so every title is checked; the cache would answer repeated searches
+        state.clearQueryCache();
+        return state.store.findByTitle(state.dataset.word(state.random).substring(0, 2)).size();
+    }),
+    SCAN_DESCRIPTION(state -> {
+        state.clearQueryCache();
+        return state.store.findByDescription(state.dataset.word(state.random).substring(0, 2)).size();
+    }),
+    FIND_BY_PRIORITY(state -> state.store.findByPriority(state.nextPriority()).size()),
+    FIND_BY_DATE(state -> state.store.findByDate(state.dataset.dueDate(state.random)).size()),
+    GET_ALL(state -> state.store.getTasks(TaskFilter.ALL).size()),
+    GET_COMPLETE(state -> state.store.getTasks(TaskFilter.COMPLETE).size()),
+    GET_INCOMPLETE(state -> state.store.getTasks(TaskFilter.INCOMPLETE).size()),
+    GET_OVERDUE(state -> state.store.getTasks(TaskFilter.OVERDUE).size()),
+    VIEW_TASKS(state -> {
+        state.manager.viewTasks(TaskFilter.ALL); //Printed to a discarding stream by the runner
+        return null;
+    }),
+    SORT_BY_DUE_DATE(state -> {
+        state.manager.sortByDueDate();
+        return null;
+    }),
+    SORT_BY_PRIORITY(state -> {
+        state.manager.sortByPriority();
+        return null;
+    }),
+    SORT_BY_ID(state -> {
+        state.manager.sortById();
+        return null;
+    }),
+    SAVE(state -> DataPersistence.saveTasks(state.tasks, 0, state.dataset.getSize() + 1)),
+    LOAD(state -> {
+        TaskOperations store = state.storeType.open();
+        boolean empty = store.isTaskListEmpty();
+        store.close();
+        return empty;
+    }),
+    LOAD_AND_INDEX(state -> {
+        //Startup followed by the first searches, which check, decode and index the whole snapshot
+        TaskOperations store = state.storeType.open();
+        int found = store.findByTitle(state.dataset.word(state.random)).size() + store.findByPriority(Priority.HIGH).size();
+        store.close();
+        return found;
+    }),
+    LOAD_SAVE_CYCLE(state -> {
+        //Load, touch every task, write the snapshot back
+        TaskOperations store = state.storeType.open();
+        List<Task> tasks = store.getTasks(TaskFilter.ALL);
+        store.close();
+        return DataPersistence.saveTasks(tasks, 0, tasks.size() + 1);
+    });
+
+    /**
+     * Task stores the benchmarks run on, each opened on the snapshot in the working directory
+     */
+    enum Store {
+        TASK_MANAGER(() -> new TaskManager(true, Durability.NONE)),
+        COLUMNAR(() -> new ColumnarTaskStore(Durability.NONE)),
+        OFF_HEAP(() -> new OffHeapTaskStore(Durability.NONE));
+
+        private final Supplier<TaskOperations> factory;
+
+        Store(Supplier<TaskOperations> factory) {
+            this.factory = factory;
+        }
+
+        TaskOperations open() {
+            return factory.get();
+        }
+    }
+
+    /**
+     * Data shared by the invocations of one benchmark run
+     */
+    static class State {
+        final TaskDataset dataset;
+        final List<Task> tasks; //Generated tasks, also written as the snapshot
+        final Random random;
+        final Store storeType;
+        TaskOperations store;
+        TaskManager manager; //The same object as store on TASK_MANAGER, null on other stores
+        private int priority;
+
+        State(TaskDataset dataset, List<Task> tasks, Store storeType, long seed) {
+            this.dataset = dataset;
+            this.tasks = tasks;
+            this.storeType = storeType;
+            this.random = new Random(seed);
+        }
+
+        Priority nextPriority() {
+            Priority[] priorities = Priority.values();
+            return priorities[priority++ % priorities.length];
+        }
+
+        void clearQueryCache() {
+            if (manager != null) {
+                manager.getQueryCache().clear(); //Other stores have no cache
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Operation {
+        Object run(State state);
+    }
+
+    private final Operation operation;
+
+    TaskBenchmark(Operation operation) {
+        this.operation = operation;
+    }
+
+    Object run(State state) {
+        return operation.run(state);
+    }
+
+    /**
+     * Checks if the benchmark runs on the given store
+     * Display, sorts and the query cache are TaskManager features and SAVE does not use a store, those run on TaskManager only
+     *
+     * @param store the task store
+     * @return true if the operation only uses TaskOperations or the store is TaskManager
+     */
+    boolean supports(Store store) {
+        return store == Store.TASK_MANAGER
+                || !(this == VIEW_TASKS || this == SORT_BY_DUE_DATE || this == SORT_BY_PRIORITY || this == SORT_BY_ID || this == SAVE);
+    }
+
+    /**
+     * Checks if the operation changes the saved data, such runs start from a freshly written snapshot
+     *
+     * @return true for operations that add tasks or reorder them
+     */
+    boolean isMutating() {
+        return this == ADD_TASK || this == SORT_BY_DUE_DATE || this == SORT_BY_PRIORITY || this == SORT_BY_ID;
+    }
+
+    /**
+     * Returns name in the style of the measured method, e.g. findByTitle
+     *
+     * @return the benchmark name used in the results
+     */
+    String displayName() {
+        StringBuilder name = new StringBuilder();
+        for (String part : name().toLowerCase().split("_")) {
+            name.append(name.isEmpty() ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package todoapp.bench;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of benchmark task lists
+ * Same parameters and seed always give the same tasks, so results of different versions are comparable
+ */
+public class TaskDataset {
+    static final String[] WORDS = {
+            "report", "meeting", "groceries", "invoice", "review", "dentist", "release", "backup",
+            "garden", "budget", "exam", "travel", "birthday", "laundry", "project", "call"
+    };
+
+    /**
+     * How priorities and due dates are spread over the tasks
+     */
+    public enum Distribution {
+        UNIFORM, //All priorities equally often, due dates spread over two years
+        SKEWED //Mostly LOW priority, most due dates within the next two weeks
+    }
+
+    /**
+     * Length range of titles and descriptions in characters
+     */
+    public enum StringLength {
+        SHORT(8, 24),
+        LONG(100, 400);
+
+        final int min;
+        final int max;
+
+        StringLength(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private final int size;
+    private final Distribution distribution;
+    private final StringLength stringLength;
+    private final LocalDate today;
+    private final long seed;
+
+    public TaskDataset(int size, Distribution distribution, StringLength stringLength, LocalDate today, long seed) {
+        this.size = size;
+        this.distribution = distribution;
+        this.stringLength = stringLength;
+        this.today = today;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the tasks with IDs 1..size, about a third of them completed
+     *
+     * @return the generated task list
+     */
+    public List<Task> generate() {
+        Random random = new Random(seed);
+        List<Task> tasks = new ArrayList<>(size);
+
+        for (int i = 1; i <= size; i++) {
+            Task task = newTask(random);
+            task.setId(i);
+            task.setCompleted(random.nextInt(3) == 0);
+            tasks.add(task);
+        }
+
+        return tasks;
+    }
+
+    /**
+     * Generates one more task with the same distributions, without ID
+     *
+     * @param random the random source
+     * @return the new task
+     */
+    public Task newTask(Random random) {
+        return new Task(text(random), text(random), dueDate(random), priority(random));
+    }
+
+    private Priority priority(Random random) {
+        if (distribution == Distribution.UNIFORM) {
+            return Priority.values()[random.nextInt(3)];
+        }
+
+        int roll = random.nextInt(10);
+        return roll < 7 ? Priority.LOW : roll < 9 ? Priority.MEDIUM : Priority.HIGH;
+    }
+
+    /**
+     * Returns a due date drawn from the dataset's date distribution
+     *
+     * @param random the random source
+     * @return the due date
+     */
+    public LocalDate dueDate(Random random) {
+        if (distribution == Distribution.UNIFORM || random.nextInt(5) == 0) {
+            return today.plusDays(random.nextInt(730) - 365);
+        }
+
+        return today.plusDays(random.nextInt(14));
+    }
+
+    /**
+     * Returns a word that occurs in generated titles and descriptions, used as search text
+     *
+     * @param random the random source
+     * @return the search word
+     */
+    public String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private String text(Random random) {
+        int length = stringLength.min + random.nextInt(stringLength.max - stringLength.min + 1);
+        StringBuilder text = new StringBuilder(length + 16);
+
+        while (text.length() < length) {
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(word(random));
+        }
+
+        text.setLength(length);
+        return text.toString();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    public StringLength getStringLength() {
+        return stringLength;
+    }
+}
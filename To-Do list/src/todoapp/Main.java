@@ -1,12 +1,22 @@
 package todoapp;
 
+import todoapp.service.ReminderListener;
+import todoapp.service.ReminderScheduler;
+import todoapp.service.TaskBatch;
+import todoapp.service.TaskFormat;
 import todoapp.service.TaskManager;
+import todoapp.service.TaskMetrics;
 import todoapp.service.TaskFilter;
+import todoapp.service.TaskQuery;
+import todoapp.service.TaskTransfer;
 import todoapp.model.Task;
 import todoapp.model.Priority;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Scanner;
+import java.util.function.IntPredicate;
 import java.time.LocalDate;
 
 public class Main {
@@ -80,8 +90,7 @@ public class Main {
             }
 
             try {
-                DateTimeFormatter dateFormatted = DateTimeFormatter.ofPattern("dd.MM.yyyy");
-                LocalDate date = LocalDate.parse(dateInput, dateFormatted);
+                LocalDate date = LocalDate.parse(dateInput, DATE_FORMAT);
 
                 if (date.isBefore(LocalDate.now())) {
                     System.out.println("!Date can not be in the past!");
@@ -115,10 +124,112 @@ public class Main {
         }
     }
 
+    /**
+     * Reads completion status with 'back' cancellation support
+     * Returns true for 'complete' and false for 'incomplete'
+     */
+    private static boolean readCompleteness() {
+        while (true) {
+            String input = scanner.nextLine().trim().toLowerCase();
+
+            switch (input) {
+                case "back":
+                    throw new CancellationException();
+                case "complete":
+                    return true;
+                case "incomplete":
+                    return false;
+                default:
+                    System.out.println("!Wrong status! Use complete, incomplete");
+            }
+        }
+    }
+
+    /**
+     * Reads value of one search criterion and adds it to the query
+     *
+     * @param query the query to extend
+     * @param criterion the criterion name entered by the user
+     * @return false if the input is not a criterion name
+     */
+    private static boolean readCriterion(TaskQuery query, String criterion) {
+        switch (criterion) {
+            case "title":
+                System.out.println("Enter title: ");
+                query.titleContains(readTitle());
+                return true;
+            case "description":
+                System.out.println("Enter description: ");
+                query.descriptionContains(scanner.nextLine()); //Empty input finds tasks without description
+                return true;
+            case "date":
+                System.out.println("Enter date: ");
+                query.dueOn(readDate());
+                return true;
+            case "priority":
+                System.out.println("Enter priority: ");
+                query.priority(readPriority()); //Repeating adds another allowed priority
+                return true;
+            case "status":
+                System.out.println("Enter status (complete, incomplete): ");
+                query.completed(readCompleteness());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Shows tasks page by page, each page is printed by the given function
+     * Enter shows the next page, 'back' returns to the menu
+     *
+     * @param page prints the page starting at the given offset and returns true if more tasks follow
+     */
+    private static void showPages(IntPredicate page) {
+        int offset = 0;
+        while (page.test(offset)) {
+            offset += PAGE_SIZE;
+            System.out.println("Press Enter to see more tasks or type 'back' to stop");
+
+            if (scanner.nextLine().trim().equalsIgnoreCase("back")) {
+                break;
+            }
+        }
+    }
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy"); //Created once, formatters are immutable
+    private static final int PAGE_SIZE = 20; //Tasks shown at once when browsing
     private static final TaskManager manager = new TaskManager();
     private static final Scanner scanner = new Scanner(System.in);
+    private static final ReminderScheduler reminders = new ReminderScheduler();
+
+    /**
+     * Prints a reminder whenever a task becomes due or overdue, also for deadlines of today found at start
+     */
+    private static void startReminders() {
+        reminders.addListener(new ReminderListener() {
+            @Override
+            public void taskDue(int id, LocalDate dueDate) {
+                System.out.println("Reminder! Task " + id + " is due today");
+            }
+
+            @Override
+            public void taskOverdue(int id, LocalDate dueDate) {
+                System.out.println("Reminder! Task " + id + " is overdue since " + dueDate.format(DATE_FORMAT));
+            }
+        });
+
+        manager.addListener(reminders); //Deadlines follow every change made through the menu
+        reminders.scheduleAll(manager.getTaskList()); //Loaded records are scheduled without decoding them
+        reminders.start();
+    }
 
     public static void main(String[] args) {
+        if (!TaskMetrics.get().registerMBean()) {
+            System.out.println("Warning! Metrics are not available over JMX");
+        }
+        startReminders();
+
         while (true) {
             System.out.println("\n======== To-Do List Menu ========");
             System.out.println("0. Exit");
@@ -129,7 +240,10 @@ public class Main {
             System.out.println("5. Update in the task");
             System.out.println("6. Sort tasks");
             System.out.println("7. Delete all data");
-            System.out.println("Please enter your choice(0-7): ");
+            System.out.println("8. Bulk edit");
+            System.out.println("9. Import / export");
+            System.out.println("10. Show metrics");
+            System.out.println("Please enter your choice(0-10): ");
             String c = scanner.nextLine().trim(); //To catch if choice is not a number
 
             try {
@@ -138,7 +252,10 @@ public class Main {
 
                 switch (choice) {
                     case 0 -> {
+                        reminders.close();
+                        manager.close(); //Write pending changes before exit
                         System.out.println("Goodbye!");
+
                         return;
                     }
                     case 1 -> {
@@ -182,32 +299,34 @@ public class Main {
                         while(true) {
                             String input = scanner.nextLine().toLowerCase();
 
+                            TaskFilter filter;
                             switch (input) {
                                 case "back":
                                     break label; //Break to main menu using label
                                 case "all":
-                                    manager.viewTasks(TaskFilter.ALL);
+                                    filter = TaskFilter.ALL;
                                     break;
                                 case "completed":
-                                    manager.viewTasks(TaskFilter.COMPLETE);
+                                    filter = TaskFilter.COMPLETE;
                                     break;
                                 case "incompleted":
-                                    manager.viewTasks(TaskFilter.INCOMPLETE);
+                                    filter = TaskFilter.INCOMPLETE;
                                     break;
                                 case "overdue":
-                                    manager.viewTasks(TaskFilter.OVERDUE);
+                                    filter = TaskFilter.OVERDUE;
                                     break;
                                 default:
                                     System.out.println("!Wrong input! Use 'all, completed, incompleted, overdue'");
                                     continue; //Continue inner loop for retry
                             }
+                            showPages(offset -> manager.viewTasks(filter, offset, PAGE_SIZE)); //Large lists are shown page by page
                             break;
                         }
                     }
                     case 3 -> {
-                        //Search functionality with multiple search criteria
-                        //Supports searching for an empty or partially matched description
-                        //And partially matched title
+                        //Search with combinable criteria (title, description, date, priority, status)
+                        //Every added criterion narrows the result, 'search' runs the query
+                        //ID lookup shows the single task right away
 
                         //Checks if list of tasks is empty
                         if (manager.isTaskListEmpty()) {
@@ -216,9 +335,12 @@ public class Main {
                         }
 
                         try {
-                            System.out.println("Find by (ID, title, description, date, priority): ");
+                            System.out.println("Find by (ID, title, description, date, priority, status): ");
+                            System.out.println("Combine several criteria, then type 'search' to see the tasks");
                             System.out.println("Use 'back' to cancel"); //Supports back cancellation
 
+                            TaskQuery query = new TaskQuery();
+
                             while (true) {
                                 String input = scanner.nextLine().toLowerCase();
 
@@ -230,56 +352,18 @@ public class Main {
                                         int id = readId();
                                         Task task = manager.findById(id);
                                         System.out.println(task != null ? task : "!Task not found!");
-                                        break;
-                                    case "title":
-                                        System.out.println("Enter title: ");
-                                        String title = readTitle();
-                                        List<Task> byTitle = manager.findByTitle(title);
-
-                                        if (byTitle.isEmpty()) {
-                                            System.out.println("!No tasks found!");
-                                        } else {
-                                            byTitle.forEach(System.out::println);
-                                        }
-                                        break;
-                                    case "description":
-                                        System.out.println("Enter description: ");
-                                        String description = scanner.nextLine();
-                                        List<Task> byDesc = manager.findByDescription(description);
-
-                                        if (byDesc.isEmpty()) {
-                                            System.out.println("!No tasks found!");
-                                        } else {
-                                            byDesc.forEach(System.out::println);
-                                        }
-                                        break;
-                                    case "date":
-                                        System.out.println("Enter date: ");
-                                        LocalDate date = readDate();
-                                        List<Task> byDate = manager.findByDate(date);
-
-                                        if (byDate.isEmpty()) {
-                                            System.out.println("!No tasks found!");
-                                        } else {
-                                            byDate.forEach(System.out::println);
-                                        }
-                                        break;
-                                    case "priority":
-                                        System.out.println("Enter priority: ");
-                                        Priority priority = readPriority();
-                                        List<Task> byPrior = manager.findByPriority(priority);
+                                        break label;
+                                    case "search":
+                                        showPages(offset -> manager.viewTasks(query, offset, PAGE_SIZE));
+                                        break label;
 
-                                        if (byPrior.isEmpty()) {
-                                            System.out.println("!No tasks found!");
-                                        } else {
-                                            byPrior.forEach(System.out::println);
-                                        }
-                                        break;
                                     default:
-                                        System.out.println("!Wrong input! Use 'ID, title, description, date, priority'");
-                                        continue;
+                                        if (!readCriterion(query, input)) {
+                                            System.out.println("!Wrong input! Use 'ID, title, description, date, priority, status' or 'search'");
+                                            continue;
+                                        }
                                 }
-                                break;
+                                System.out.println("Add another criterion or type 'search': ");
                             }
                         } catch (CancellationException e) {
                             System.out.println("Search cancelled");
@@ -463,10 +547,149 @@ public class Main {
                             System.out.println("Cancelled");
                         }
                     }
-                    default -> System.out.println("!Invalid choice! Please enter number (0-7)");
+                    case 8 -> {
+                        //Bulk edit: several actions on all tasks matching the criteria
+                        //Actions are applied in one batch - saved together or undone together
+
+                        //Checks if list of tasks is empty
+                        if (manager.isTaskListEmpty()) {
+                            System.out.println("!Task list is empty! No tasks to edit");
+                            break;
+                        }
+
+                        try {
+                            System.out.println("Select tasks by (title, description, date, priority, status): ");
+                            System.out.println("Type 'done' when finished, without criteria all tasks are selected");
+                            System.out.println("Use 'back' to cancel"); //Supports back cancellation
+
+                            TaskQuery query = new TaskQuery();
+
+                            while (true) {
+                                String input = scanner.nextLine().toLowerCase();
+
+                                if (input.equals("back")) {
+                                    throw new CancellationException();
+                                }
+                                if (input.equals("done")) {
+                                    break;
+                                }
+                                if (!readCriterion(query, input)) {
+                                    System.out.println("!Wrong input! Use 'title, description, date, priority, status' or 'done'");
+                                    continue;
+                                }
+                                System.out.println("Add another criterion or type 'done': ");
+                            }
+
+                            int selected = manager.find(query).size();
+                            if (selected == 0) {
+                                System.out.println("!No tasks found!");
+                                break;
+                            }
+
+                            //Closing the batch without 'save' undoes every action
+                            try (TaskBatch batch = manager.beginBatch()) {
+                                System.out.println(selected + " tasks selected");
+                                System.out.println("Apply to selected tasks (complete, incomplete, priority, date, delete): ");
+                                System.out.println("Type 'save' to keep all changes or 'back' to undo them");
+
+                                while (true) {
+                                    String input = scanner.nextLine().toLowerCase();
+                                    int changed;
+
+                                    switch (input) {
+                                        case "save":
+                                            batch.commit(); //One journal write for all actions
+                                            System.out.println("Changes saved");
+                                            break label;
+                                        case "back":
+                                            throw new CancellationException();
+                                        case "complete":
+                                            changed = manager.markCompleted(query);
+                                            break;
+                                        case "incomplete":
+                                            changed = manager.markIncompleted(query);
+                                            break;
+                                        case "priority":
+                                            System.out.println("Enter priority: ");
+                                            changed = manager.updatePriority(query, readPriority());
+                                            break;
+                                        case "date":
+                                            System.out.println("Enter date: ");
+                                            changed = manager.updateDate(query, readDate());
+                                            break;
+                                        case "delete":
+                                            changed = manager.removeTasks(query);
+                                            break;
+                                        default:
+                                            System.out.println("!Wrong input! Use 'complete, incomplete, priority, date, delete', 'save' or 'back'");
+                                            continue;
+                                    }
+                                    System.out.println(changed + " tasks changed. Apply another action, 'save' or 'back': ");
+                                }
+                            }
+                        } catch (CancellationException e) {
+                            System.out.println("Bulk edit cancelled, no changes were saved");
+                        }
+                    }
+                    case 9 -> {
+                        //Import or export tasks as CSV or JSON Lines, the format is taken from the file extension
+                        try {
+                            System.out.println("Import or export tasks (import, export): ");
+                            System.out.println("Use 'back' to cancel"); //Supports back cancellation
+
+                            String action;
+                            while (true) {
+                                action = scanner.nextLine().trim().toLowerCase();
+
+                                if (action.equals("back")) {
+                                    throw new CancellationException();
+                                }
+                                if (action.equals("import") || action.equals("export")) {
+                                    break;
+                                }
+                                System.out.println("!Wrong input! Use 'import' or 'export'");
+                            }
+
+                            System.out.println("Enter file name (.csv or .jsonl) (or 'back' to cancel): ");
+                            String fileName;
+                            TaskFormat format;
+                            while (true) {
+                                fileName = scanner.nextLine().trim();
+
+                                if (fileName.equals("back")) {
+                                    throw new CancellationException();
+                                }
+                                format = TaskFormat.forFileName(fileName);
+                                if (format != null) {
+                                    break;
+                                }
+                                System.out.println("!Wrong file type! Use a file name ending with .csv or .jsonl");
+                            }
+
+                            try {
+                                if (action.equals("import")) {
+                                    int imported = TaskTransfer.importTasks(manager, Paths.get(fileName), format);
+                                    System.out.println(imported + " tasks imported");
+                                } else {
+                                    int exported = TaskTransfer.exportTasks(manager.iterate(new TaskQuery()), Paths.get(fileName), format);
+                                    System.out.println(exported + " tasks exported");
+                                }
+                            } catch (IOException | InvalidPathException e) {
+                                System.out.println("!Error: " + e.getMessage());
+                            }
+                        } catch (CancellationException e) {
+                            System.out.println("Import / export cancelled");
+                        }
+                    }
+                    case 10 -> {
+                        //Latency and row counts of all operations since start, also readable over JMX
+                        System.out.print(TaskMetrics.get().dump());
+                        System.out.println(manager.getQueryCache());
+                    }
+                    default -> System.out.println("!Invalid choice! Please enter number (0-10)");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("!Invalid choice! Please enter a number (0-7), not text!");
+                System.out.println("!Invalid choice! Please enter a number (0-10), not text!");
             }
         }
     }
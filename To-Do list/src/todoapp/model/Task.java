@@ -8,6 +8,7 @@ import java.io.Serializable;
 public class Task implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy"); //Immutable, shared by all tasks
 
     private int id; //Unique id
     private String title; //Task name
@@ -99,24 +100,30 @@ public class Task implements Serializable {
  */
     @Override
     public String toString() {
-        DateTimeFormatter formatted = DateTimeFormatter.ofPattern("dd.MM.yyyy");
-        String formattedDate = dueDate.format(formatted);
-
-        String completeness = completed ? "Done" : "In progress";
-        String priorityText = priority.name();
+        StringBuilder result = new StringBuilder(96);
+        appendTo(result);
+        return result.toString();
+    }
 
-        StringBuilder result = new StringBuilder();
-        result.append(id).append(". ").append(title).append("\n");
+    /**
+     * Appends the same text as toString, without building intermediate strings
+     * Used to print many tasks into one buffer
+     *
+     * @param result the buffer to append to
+     */
+    public void appendTo(StringBuilder result) {
+        //Getters, so subclasses backed by other storage print correctly
+        result.append(getId()).append(". ").append(getTitle()).append("\n");
 
-        if (getDescription() != null && !getDescription().trim().isEmpty()) {
-            result.append("Description: ").append(getDescription()).append("\n");
+        String description = getDescription();
+        if (description != null && !description.trim().isEmpty()) {
+            result.append("Description: ").append(description).append("\n");
         }
 
-        result.append("Deadline: ").append(formattedDate)
-                .append("\nPriority: ").append(priorityText)
-                .append("\nStatus: ").append(completeness)
+        result.append("Deadline: ");
+        DATE_FORMAT.formatTo(getDueDate(), result);
+        result.append("\nPriority: ").append(getPriority().name())
+                .append("\nStatus: ").append(isCompleted() ? "Done" : "In progress")
                 .append("\n");
-
-        return result.toString();
     }
 }
@@ -0,0 +1,13 @@
+package todoapp.model;
+
+/**
+ * Task fields that can change after a task is created
+ * Used to tell listeners which field of a task was updated
+ */
+public enum TaskField {
+    TITLE,
+    DESCRIPTION,
+    DUE_DATE,
+    PRIORITY,
+    COMPLETED
+}
@@ -0,0 +1,396 @@
+package todoapp.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import todoapp.service.TaskBatch;
+import todoapp.service.TaskFilter;
+import todoapp.service.TaskFormat;
+import todoapp.service.TaskManager;
+import todoapp.service.TaskQuery;
+import todoapp.service.TaskSort;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Local HTTP/JSON front end for TaskManager, built on the JDK HTTP server
+ *
+ * POST /tasks - adds a task: {"title", "description", "dueDate" (yyyy-MM-dd), "priority"}
+ * GET /tasks/{id} - returns one task
+ * PATCH /tasks/{id} - changes the given fields: title, description, dueDate, priority, completed
+ * DELETE /tasks/{id} - removes a task
+ * GET /tasks - lists tasks as a JSON array, optional parameters: filter (all, completed, incompleted, overdue),
+ * title, description, priority, date, sort (id, date, priority), offset, limit
+ *
+ * Every request runs on its own virtual thread when the JDK has them (21+), on a pooled thread otherwise
+ * TaskManager is not thread-safe, so requests take turns on one lock
+ * Listings are sent in chunks and the lock is released between chunks, so a slow client never blocks other requests
+ * Connections are kept alive between requests by the JDK server
+ *
+ * Binds to the loopback address only: java -cp out todoapp.server.TaskServer [port]
+ */
+public class TaskServer implements AutoCloseable {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int LIST_CHUNK = 1000; //Tasks read under the lock and written at once
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final TaskManager manager;
+    private final ReentrantLock lock = new ReentrantLock(); //Not synchronized, so waiting virtual threads do not pin their carrier
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates the server, requests are accepted after start
+     *
+     * @param manager the manager to serve, only used through this server while it runs
+     * @param port the port on the loopback address, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public TaskServer(TaskManager manager, int port) throws IOException {
+        //Headers and body are separate small writes, with Nagle's algorithm each response waits for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.manager = manager;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/tasks", this::handle);
+    }
+
+    /**
+     * Creates a virtual-thread-per-request executor on JDK 21+, a cached thread pool on older JDKs
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "task-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for running ones and writes pending changes
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+
+        lock.lock();
+        try {
+            manager.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (RuntimeException e) {
+            if (exchange.getResponseCode() != -1) {
+                throw e; //Listing already started, the connection is closed mid-response
+            }
+            int status = e instanceof IllegalArgumentException ? 400 : 500;
+            send(exchange, status, error(status == 400 ? e.getMessage() : "Internal error: " + e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+
+        if (path.equals("/tasks") || path.equals("/tasks/")) {
+            switch (method) {
+                case "GET" -> list(exchange, query(exchange));
+                case "POST" -> add(exchange);
+                default -> send(exchange, 405, error("Method not allowed: " + method));
+            }
+            return;
+        }
+
+        int id;
+        try {
+            id = Integer.parseInt(path.substring("/tasks/".length()));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            send(exchange, 404, error("Not found: " + path));
+            return;
+        }
+
+        switch (method) {
+            case "GET" -> sendTask(exchange, 200, locked(() -> json(manager.findById(id))));
+            case "PATCH", "PUT" -> update(exchange, id);
+            case "DELETE" -> {
+                if (locked(() -> manager.removeTask(id))) {
+                    exchange.sendResponseHeaders(204, -1);
+                } else {
+                    send(exchange, 404, error("Task with ID " + id + " not found"));
+                }
+            }
+            default -> send(exchange, 405, error("Method not allowed: " + method));
+        }
+    }
+
+    private void add(HttpExchange exchange) throws IOException {
+        Task task = TaskFormat.JSON_LINES.parse(readBody(exchange));
+        sendTask(exchange, 201, locked(() -> {
+            manager.addTask(task);
+            return json(task);
+        }));
+    }
+
+    /**
+     * Applies all given fields or none of them
+     * Values are checked before the first change, and the changes are saved as one batch
+     */
+    private void update(HttpExchange exchange, int id) throws IOException {
+        Map<String, String> fields = TaskFormat.readObject(readBody(exchange));
+        String title = fields.get("title");
+        if (title != null && title.trim().isEmpty()) {
+            throw new IllegalArgumentException("Title cannot be empty");
+        }
+        String description = fields.get("description");
+        LocalDate dueDate = fields.get("dueDate") != null ? TaskFormat.parseDate(fields.get("dueDate")) : null;
+        Priority priority = fields.get("priority") != null ? TaskFormat.parsePriority(fields.get("priority")) : null;
+        Boolean completed = fields.get("completed") != null ? TaskFormat.parseBoolean(fields.get("completed")) : null;
+
+        String updated = locked(() -> {
+            if (manager.findById(id) == null) {
+                return null;
+            }
+
+            try (TaskBatch batch = manager.beginBatch()) {
+                if (title != null) {
+                    manager.updateTitle(id, title);
+                }
+                if (description != null) {
+                    manager.updateDescription(id, description);
+                }
+                if (dueDate != null) {
+                    manager.updateDate(id, dueDate);
+                }
+                if (priority != null) {
+                    manager.updatePriority(id, priority);
+                }
+                if (completed != null) {
+                    if (completed) {
+                        manager.markCompleted(id);
+                    } else {
+                        manager.markIncompleted(id);
+                    }
+                }
+                batch.commit();
+            }
+            return json(manager.findById(id));
+        });
+
+        sendTask(exchange, 200, updated);
+    }
+
+    /**
+     * Streams the listing as a chunked JSON array
+     * The query runs once, then the tasks of its result IDs are read with one lock per chunk
+     * Tasks removed between chunks are left out, renumbered IDs may show other tasks, like with any paged listing
+     */
+    private void list(HttpExchange exchange, TaskQuery query) throws IOException {
+        int[] ids = locked(() -> manager.findIds(query));
+
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0); //Length 0 - chunked transfer encoding
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            StringBuilder chunk = new StringBuilder(LIST_CHUNK * 128);
+            chunk.append('[');
+            boolean first = true;
+
+            for (int from = 0; from < ids.length; from += LIST_CHUNK) {
+                int chunkStart = from;
+                int chunkEnd = Math.min(from + LIST_CHUNK, ids.length);
+                boolean separate = !first;
+                int found = locked(() -> {
+                    //Encoded under the lock, tasks are changed in place by updates
+                    List<Task> tasks = manager.findByIds(ids, chunkStart, chunkEnd);
+                    for (int i = 0; i < tasks.size(); i++) {
+                        if (separate || i > 0) {
+                            chunk.append(',');
+                        }
+                        TaskFormat.JSON_LINES.write(tasks.get(i), chunk);
+                    }
+                    return tasks.size();
+                });
+                first = first && found == 0;
+
+                out.write(chunk.toString().getBytes(StandardCharsets.UTF_8));
+                chunk.setLength(0);
+            }
+
+            chunk.append(']');
+            out.write(chunk.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Builds the listing query from the URL parameters
+     */
+    private static TaskQuery query(HttpExchange exchange) {
+        Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+
+        TaskFilter filter = switch (parameters.getOrDefault("filter", "all").toLowerCase()) {
+            case "all" -> TaskFilter.ALL;
+            case "completed" -> TaskFilter.COMPLETE;
+            case "incompleted" -> TaskFilter.INCOMPLETE;
+            case "overdue" -> TaskFilter.OVERDUE;
+            default -> throw new IllegalArgumentException("Wrong filter, use all, completed, incompleted or overdue");
+        };
+        TaskQuery query = TaskQuery.of(filter, LocalDate.now());
+
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String value = parameter.getValue();
+            switch (parameter.getKey()) {
+                case "filter" -> {
+                    //Applied above
+                }
+                case "title" -> query.titleContains(value);
+                case "description" -> query.descriptionContains(value);
+                case "priority" -> query.priority(TaskFormat.parsePriority(value));
+                case "date" -> query.dueOn(TaskFormat.parseDate(value));
+                case "sort" -> query.sortBy(switch (value.toLowerCase()) {
+                    case "id" -> TaskSort.ID;
+                    case "date" -> TaskSort.DUE_DATE;
+                    case "priority" -> TaskSort.PRIORITY;
+                    default -> throw new IllegalArgumentException("Wrong sort, use id, date or priority");
+                });
+                case "offset" -> query.offset(parseNumber(value, "offset"));
+                case "limit" -> query.limit(parseNumber(value, "limit"));
+                default -> throw new IllegalArgumentException("Unknown parameter: " + parameter.getKey());
+            }
+        }
+
+        return query;
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.put(key, value);
+        }
+        return parameters;
+    }
+
+    private static int parseNumber(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Wrong " + name + ", expected a number: " + value);
+        }
+    }
+
+    private <T> T locked(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Encodes a task as JSON, called under the lock
+     */
+    private static String json(Task task) {
+        if (task == null) {
+            return null;
+        }
+
+        StringBuilder body = new StringBuilder(128);
+        TaskFormat.JSON_LINES.write(task, body);
+        return body.toString();
+    }
+
+    private static void sendTask(HttpExchange exchange, int status, String task) throws IOException {
+        if (task == null) {
+            send(exchange, 404, error("Task not found"));
+            return;
+        }
+        send(exchange, status, task);
+    }
+
+    /**
+     * Sends a response with known length, so the connection can be kept alive
+     */
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        StringBuilder body = new StringBuilder("{\"error\":\"");
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '"' || c == '\\') {
+                body.append('\\');
+            }
+            body.append(c < 0x20 ? ' ' : c);
+        }
+        return body.append("\"}").toString();
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        try {
+            TaskServer server = new TaskServer(new TaskManager(true), port); //Stable IDs, so a removal does not change the IDs clients hold
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close)); //Writes pending changes on Ctrl+C
+            server.start();
+            System.out.println("Serving tasks on http://localhost:" + server.getPort() + "/tasks");
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+        }
+    }
+}
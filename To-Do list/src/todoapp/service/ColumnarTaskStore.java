@@ -0,0 +1,493 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.File;
+import java.io.Serial;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+
+/**
+ * Task manager that keeps tasks in primitive columns instead of one object per task
+ * IDs, due dates (epoch days) and priorities are arrays, completed flags a bitset,
+ * titles and descriptions are stored back to back in char arrays
+ * Filters and sorts run as loops over the arrays, without touching task objects
+ *
+ * Rows are kept in ID order and IDs are always stable, so a row is found by binary search
+ * Returned tasks are flyweight views over the columns - they always show the current values,
+ * and their setters change the store like the update methods do
+ * Uses the same data files as TaskManager, so only one of them may be open at a time
+ */
+public class ColumnarTaskStore implements TaskOperations {
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private int[] ids = new int[16];
+    private int[] epochDays = new int[16];
+    private byte[] priorities = new byte[16];
+    private final BitSet completed = new BitSet();
+    private final TextColumn titles = new TextColumn();
+    private final TextColumn descriptions = new TextColumn();
+    private int size;
+    private int structureVersion; //Changed when rows move, views look their row up again
+    private TaskSort currentSort; //Order of query results, rows themselves stay in ID order
+    private final TaskJournal journal;
+    private int nextId;
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     */
+    public ColumnarTaskStore() {
+        this(Durability.BATCHED);
+    }
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     * Loaded tasks are copied into the columns, task objects are not kept
+     *
+     * @param durability when journal records are forced to disk
+     */
+    public ColumnarTaskStore(Durability durability) {
+        this.journal = new TaskJournal(new File(DataPersistence.JOURNAL_FILE), durability);
+
+        TaskSnapshot snapshot = DataPersistence.loadTasks(journal);
+        List<Task> tasks = snapshot.getTasks();
+        this.nextId = snapshot.getNextId();
+        this.currentSort = snapshot.getViewOrder();
+
+        //Lists sorted by older versions are saved sorted, rows have to be in ID order
+        long[] order = new long[tasks.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (long) LazyTaskList.peekId(tasks, i) << 32 | i;
+        }
+        Arrays.sort(order);
+
+        for (long entry : order) {
+            append(tasks.get((int) entry));
+        }
+        tasks.clear(); //Releases the mapped file, Windows could not replace it on checkpoint
+    }
+
+    /**
+     * Flyweight task backed by one row of the columns
+     */
+    private final class View extends Task {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final int id;
+        private int row;
+        private int version;
+
+        View(int row) {
+            super(null, null, null, null); //Fields of Task are not used
+            this.id = ids[row];
+            this.row = row;
+            this.version = structureVersion;
+        }
+
+        private int row() {
+            if (version != structureVersion) {
+                row = rowOf(id);
+                version = structureVersion;
+            }
+
+            if (row < 0) {
+                throw new IllegalStateException("Task " + id + " was removed");
+            }
+            return row;
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public String getTitle() {
+            return titles.get(row());
+        }
+
+        @Override
+        public String getDescription() {
+            return descriptions.get(row());
+        }
+
+        @Override
+        public LocalDate getDueDate() {
+            return LocalDate.ofEpochDay(epochDays[row()]);
+        }
+
+        @Override
+        public Priority getPriority() {
+            return PRIORITIES[priorities[row()]];
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return completed.get(row());
+        }
+
+        @Override
+        public void setId(int id) {
+            throw new UnsupportedOperationException("Task ID is assigned by the store");
+        }
+
+        @Override
+        public void reassignId(int newId) {
+            throw new UnsupportedOperationException("Task IDs are stable in the columnar store");
+        }
+
+        @Override
+        public void setTitle(String title) {
+            row();
+            updateTitle(id, title);
+        }
+
+        @Override
+        public void setDescription(String description) {
+            row();
+            updateDescription(id, description);
+        }
+
+        @Override
+        public void setDueDate(LocalDate dueDate) {
+            row();
+            updateDate(id, dueDate);
+        }
+
+        @Override
+        public void setPriority(Priority priority) {
+            row();
+            updatePriority(id, priority);
+        }
+
+        @Override
+        public void setCompleted(boolean completed) {
+            row();
+            if (completed) {
+                markCompleted(id);
+            } else {
+                markIncompleted(id);
+            }
+        }
+    }
+
+    private void append(Task task) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+        }
+
+        ids[size] = task.getId();
+        epochDays[size] = Math.toIntExact(task.getDueDate().toEpochDay());
+        priorities[size] = (byte) task.getPriority().ordinal();
+        completed.set(size, task.isCompleted());
+        titles.add(task.getTitle());
+        descriptions.add(task.getDescription());
+        size++;
+    }
+
+    private int rowOf(int id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     * Adds new task with the next ID from the counter
+     * The task object only passes its values, later changes to it do not reach the store
+     *
+     * @param task the task to add
+     */
+    public void addTask(Task task) {
+        task.setId(nextId++);
+        append(task); //IDs only grow, so rows stay in ID order
+        journal.logAdd(task);
+        checkpointIfNeeded();
+    }
+
+    public Task findById(int id) {
+        int row = rowOf(id);
+        return row < 0 ? null : new View(row);
+    }
+
+    public List<Task> findByTitle(String searchText) {
+        char[] needle = searchText.toLowerCase().toCharArray();
+        return select(row -> titles.containsIgnoreCase(row, needle));
+    }
+
+    public List<Task> findByDescription(String searchText) {
+        if (searchText.trim().isEmpty()) {
+            return select(descriptions::isBlank); //Tasks with empty descriptions
+        }
+
+        char[] needle = searchText.toLowerCase().toCharArray();
+        return select(row -> descriptions.containsIgnoreCase(row, needle));
+    }
+
+    public List<Task> findByPriority(Priority priority) {
+        byte ordinal = (byte) priority.ordinal();
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (priorities[row] == ordinal) {
+                rows[count++] = row;
+            }
+        }
+
+        return toTasks(rows, count);
+    }
+
+    public List<Task> findByDate(LocalDate date) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (epochDays[row] == epochDay) {
+                rows[count++] = row;
+            }
+        }
+
+        return toTasks(rows, count);
+    }
+
+    public List<Task> getTasks(TaskFilter filter) {
+        int[] rows = new int[size];
+        int count = 0;
+
+        switch (filter) {
+            case ALL -> {
+                for (int row = 0; row < size; row++) {
+                    rows[count++] = row;
+                }
+            }
+            case COMPLETE -> {
+                for (int row = completed.nextSetBit(0); row >= 0 && row < size; row = completed.nextSetBit(row + 1)) {
+                    rows[count++] = row;
+                }
+            }
+            case INCOMPLETE -> {
+                for (int row = completed.nextClearBit(0); row < size; row = completed.nextClearBit(row + 1)) {
+                    rows[count++] = row;
+                }
+            }
+            case OVERDUE -> {
+                int today = Math.toIntExact(LocalDate.now().toEpochDay());
+                for (int row = completed.nextClearBit(0); row < size; row = completed.nextClearBit(row + 1)) {
+                    if (epochDays[row] < today) {
+                        rows[count++] = row;
+                    }
+                }
+            }
+        }
+
+        return toTasks(rows, count);
+    }
+
+    private List<Task> select(IntPredicate predicate) {
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (predicate.test(row)) {
+                rows[count++] = row;
+            }
+        }
+
+        return toTasks(rows, count);
+    }
+
+    /**
+     * Orders matching rows by the current sort and wraps them in views
+     * Sort key and row are packed into one long, so sorting is a primitive array sort
+     */
+    private List<Task> toTasks(int[] rows, int count) {
+        if (currentSort != null && currentSort != TaskSort.ID) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                long key = currentSort == TaskSort.DUE_DATE ? epochDays[row] : -priorities[row]; //Priority HIGH to LOW
+                keys[i] = key << 32 | row; //Equal keys stay in ID order
+            }
+            Arrays.sort(keys);
+
+            for (int i = 0; i < count; i++) {
+                rows[i] = (int) keys[i];
+            }
+        }
+
+        List<Task> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new View(rows[i]));
+        }
+        return result;
+    }
+
+    public boolean removeTask(int id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        int moved = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, moved);
+        System.arraycopy(epochDays, row + 1, epochDays, row, moved);
+        System.arraycopy(priorities, row + 1, priorities, row, moved);
+        BitSet tail = completed.get(row + 1, size);
+        completed.clear(row, size);
+        for (int bit = tail.nextSetBit(0); bit >= 0; bit = tail.nextSetBit(bit + 1)) {
+            completed.set(row + bit);
+        }
+        titles.remove(row);
+        descriptions.remove(row);
+        size--;
+        structureVersion++;
+
+        journal.logDelete(id);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updateTitle(int id, String newName) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        titles.set(row, newName);
+        journal.logTitle(id, newName);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updateDescription(int id, String newDescription) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        descriptions.set(row, newDescription);
+        journal.logDescription(id, newDescription);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updateDate(int id, LocalDate newDate) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        epochDays[row] = Math.toIntExact(newDate.toEpochDay());
+        journal.logDueDate(id, newDate);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updatePriority(int id, Priority newPriority) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        priorities[row] = (byte) newPriority.ordinal();
+        journal.logPriority(id, newPriority);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean markCompleted(int id) {
+        return setCompleted(id, true);
+    }
+
+    public boolean markIncompleted(int id) {
+        return setCompleted(id, false);
+    }
+
+    private boolean setCompleted(int id, boolean value) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        completed.set(row, value);
+        journal.logCompleted(id, value);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public void sortByDueDate() {
+        sort(TaskSort.DUE_DATE);
+    }
+
+    public void sortByPriority() {
+        sort(TaskSort.PRIORITY);
+    }
+
+    public void sortById() {
+        sort(TaskSort.ID);
+    }
+
+    /**
+     * Sets order of query results, logged so a TaskManager opening the same files shows the same order
+     */
+    private void sort(TaskSort order) {
+        currentSort = order;
+        journal.logViewOrder(order);
+        checkpointIfNeeded();
+    }
+
+    public boolean isTaskListEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void deleteAllData() {
+        size = 0;
+        completed.clear();
+        titles.clear();
+        descriptions.clear();
+        structureVersion++;
+        nextId = 1;
+        currentSort = null; //Display order is stored with the data
+        journal.delete();
+        DataPersistence.deleteSavedData();
+    }
+
+    /**
+     * Writes all pending changes and stops the background writer
+     */
+    public void close() {
+        journal.close();
+    }
+
+    private void checkpointIfNeeded() {
+        journal.awaitDurability();
+        if (journal.needsCheckpoint()) {
+            journal.checkpoint(new RowList(), nextId);
+        }
+    }
+
+    /**
+     * All rows as a list of views, in ID order
+     */
+    private final class RowList extends AbstractList<Task> implements RandomAccess {
+        @Override
+        public Task get(int index) {
+            return new View(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
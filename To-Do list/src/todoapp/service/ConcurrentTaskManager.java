@@ -0,0 +1,382 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.File;
+import java.io.Serial;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe task manager for use from several worker threads
+ *
+ * Tasks live in a concurrent map keyed by ID and are never changed after they are stored:
+ * every update stores a changed copy, so reads need no locks and never see half-applied changes
+ * Writes are striped by ID - changes of different tasks run in parallel,
+ * changes of one task are applied and journaled in the same order
+ * IDs are always stable (no renumbering on removal) and keep growing after deleteAllData
+ *
+ * Tasks returned by this class are shared snapshots and must not be modified
+ * Stored snapshots keep their lowercase title and description, so text searches allocate nothing per task
+ * Uses the same data files as TaskManager, so only one of them may be open at a time
+ */
+public class ConcurrentTaskManager implements TaskOperations {
+    private static final int STRIPES = 64; //Power of two
+
+    private final ConcurrentHashMap<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final AtomicInteger nextId;
+    private final TaskJournal journal; //Guarded by its own monitor, always taken after a stripe lock
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     */
+    public ConcurrentTaskManager() {
+        this(Durability.BATCHED);
+    }
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     * With PER_OP durability threads waiting for the disk share one fsync per batch
+     *
+     * @param durability when journal records are forced to disk
+     */
+    public ConcurrentTaskManager(Durability durability) {
+        this.journal = new TaskJournal(new File(DataPersistence.JOURNAL_FILE), durability);
+
+        TaskSnapshot snapshot = DataPersistence.loadTasks(journal);
+        for (Task task : snapshot.getTasks()) {
+            tasks.put(task.getId(), copy(task));
+        }
+        snapshot.getTasks().clear(); //Releases the mapped file, Windows could not replace it on checkpoint
+        this.nextId = new AtomicInteger(snapshot.getNextId());
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Adds new task with the next ID from the counter
+     * The given task object gets the ID, a copy of it is stored
+     *
+     * @param task the task to add
+     */
+    public void addTask(Task task) {
+        int id = nextId.getAndIncrement();
+        task.setId(id);
+        Task stored = copy(task);
+
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            tasks.put(id, stored);
+            log(journal -> journal.logAdd(stored));
+        } finally {
+            lock.unlock();
+        }
+
+        checkpointIfNeeded();
+    }
+
+    /**
+     * Adds many tasks with one block of IDs, written as one journal record
+     * The given task objects get the IDs, copies of them are stored
+     *
+     * @param newTasks the tasks to add
+     * @return the number of added tasks
+     */
+    @Override
+    public int addTasks(List<Task> newTasks) {
+        int firstId = nextId.getAndAdd(newTasks.size());
+        List<Task> stored = new ArrayList<>(newTasks.size());
+        for (int i = 0; i < newTasks.size(); i++) {
+            Task task = newTasks.get(i);
+            task.setId(firstId + i);
+            stored.add(copy(task));
+        }
+
+        //New IDs are not in the map yet, so no other thread can change these tasks before they are logged
+        //The journal monitor is held until they are stored, so no checkpoint can miss them
+        synchronized (journal) {
+            journal.beginBatch();
+            for (Task task : stored) {
+                journal.logAdd(task);
+            }
+            journal.commitBatch();
+
+            for (Task task : stored) {
+                tasks.put(task.getId(), task);
+            }
+        }
+
+        checkpointIfNeeded();
+        return newTasks.size();
+    }
+
+    public Task findById(int id) {
+        return tasks.get(id);
+    }
+
+    public List<Task> findByTitle(String searchText) {
+        String searchTextLower = searchText.toLowerCase();
+        return select(task -> ((StoredTask) task).lowerTitle().contains(searchTextLower));
+    }
+
+    public List<Task> findByDescription(String searchText) {
+        if (TextIndex.isBlank(searchText)) {
+            return select(task -> TextIndex.isBlank(task.getDescription())); //Tasks with empty descriptions
+        }
+
+        String searchTextLower = searchText.toLowerCase();
+        return select(task -> ((StoredTask) task).lowerDescription().contains(searchTextLower));
+    }
+
+    public List<Task> findByPriority(Priority priority) {
+        return select(task -> task.getPriority() == priority);
+    }
+
+    public List<Task> findByDate(LocalDate date) {
+        return select(task -> task.getDueDate().equals(date));
+    }
+
+    public List<Task> getTasks(TaskFilter filter) {
+        LocalDate today = LocalDate.now();
+        return switch (filter) {
+            case ALL -> select(task -> true);
+            case COMPLETE -> select(Task::isCompleted);
+            case INCOMPLETE -> select(task -> !task.isCompleted());
+            case OVERDUE -> select(task -> !task.isCompleted() && task.getDueDate().isBefore(today));
+        };
+    }
+
+    /**
+     * Scans the map without locking, results are sorted by ID
+     * Concurrent changes may or may not be seen, but every returned task is a complete snapshot
+     */
+    private List<Task> select(Predicate<Task> predicate) {
+        List<Task> found = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            if (predicate.test(task)) {
+                found.add(task);
+            }
+        }
+
+        found.sort(TaskSort.ID.comparator());
+        return found;
+    }
+
+    public boolean removeTask(int id) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            if (tasks.remove(id) == null) {
+                return false;
+            }
+            log(journal -> journal.logDelete(id));
+        } finally {
+            lock.unlock();
+        }
+
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updateTitle(int id, String newName) {
+        return update(id, task -> task.setTitle(newName), journal -> journal.logTitle(id, newName));
+    }
+
+    public boolean updateDescription(int id, String newDescription) {
+        return update(id, task -> task.setDescription(newDescription), journal -> journal.logDescription(id, newDescription));
+    }
+
+    public boolean updateDate(int id, LocalDate newDate) {
+        return update(id, task -> task.setDueDate(newDate), journal -> journal.logDueDate(id, newDate));
+    }
+
+    public boolean updatePriority(int id, Priority newPriority) {
+        return update(id, task -> task.setPriority(newPriority), journal -> journal.logPriority(id, newPriority));
+    }
+
+    public boolean markCompleted(int id) {
+        return update(id, task -> task.setCompleted(true), journal -> journal.logCompleted(id, true));
+    }
+
+    public boolean markIncompleted(int id) {
+        return update(id, task -> task.setCompleted(false), journal -> journal.logCompleted(id, false));
+    }
+
+    /**
+     * Replaces a task with a changed copy and journals the change, both under the task's stripe lock
+     */
+    private boolean update(int id, Consumer<Task> change, Consumer<TaskJournal> record) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            Task current = tasks.get(id);
+            if (current == null) {
+                return false;
+            }
+
+            Task changed = copy(current);
+            change.accept(changed);
+            tasks.put(id, changed); //Readers see either the old or the new snapshot
+            log(record);
+        } finally {
+            lock.unlock();
+        }
+
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean isTaskListEmpty() {
+        return tasks.isEmpty();
+    }
+
+    /**
+     * Removes all tasks and deletes saved data
+     * ID counter is not reset, so tasks being added at the same time keep unique IDs
+     */
+    public void deleteAllData() {
+        lockAll();
+        try {
+            tasks.clear();
+            synchronized (journal) {
+                journal.delete();
+                DataPersistence.deleteSavedData();
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns number of stored tasks
+     *
+     * @return the task count
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Returns future completed when all changes made so far are written
+     *
+     * @return future of the last journal write
+     */
+    public CompletableFuture<Void> lastWrite() {
+        return journal.lastWrite();
+    }
+
+    /**
+     * Writes all pending changes and stops the background writer
+     */
+    public void close() {
+        synchronized (journal) {
+            journal.close();
+        }
+    }
+
+    private void log(Consumer<TaskJournal> record) {
+        synchronized (journal) {
+            record.accept(journal);
+        }
+    }
+
+    /**
+     * Writes a snapshot once enough changes were logged
+     * All stripes are held, so the snapshot matches the journal sequence exactly
+     */
+    private void checkpointIfNeeded() {
+        journal.awaitDurability(); //Outside of all locks, so concurrent writers share the fsync
+
+        synchronized (journal) {
+            if (!journal.needsCheckpoint()) {
+                return;
+            }
+        }
+
+        lockAll();
+        try {
+            synchronized (journal) {
+                if (journal.needsCheckpoint()) { //Another thread may have written it meanwhile
+                    List<Task> snapshot = new ArrayList<>(tasks.values());
+                    snapshot.sort(TaskSort.ID.comparator());
+                    journal.checkpoint(snapshot, nextId.get());
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    //Stripes are always taken in the same order, so two threads locking all of them cannot deadlock
+    private void lockAll() {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    private ReentrantLock stripe(int id) {
+        return stripes[(id * 0x9E3779B9 >>> 16) & (STRIPES - 1)];
+    }
+
+    private static Task copy(Task task) {
+        Task copy = new StoredTask(task.getTitle(), task.getDescription(), task.getDueDate(), task.getPriority());
+        copy.setId(task.getId());
+        copy.setCompleted(task.isCompleted());
+        return copy;
+    }
+
+    /**
+     * Stored snapshot with its lowercase texts, computed when the copy is written so searches only read them
+     * The copy is published through the concurrent map, readers see the texts set before it was stored
+     */
+    private static final class StoredTask extends Task {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private String lowerTitle;
+        private String lowerDescription;
+
+        StoredTask(String title, String description, LocalDate dueDate, Priority priority) {
+            super(title, description, dueDate, priority);
+            lowerTitle = title.toLowerCase();
+            lowerDescription = description.toLowerCase();
+        }
+
+        String lowerTitle() {
+            return lowerTitle;
+        }
+
+        String lowerDescription() {
+            return lowerDescription;
+        }
+
+        //Setters are only called on a fresh copy before it is stored
+        @Override
+        public void setTitle(String title) {
+            super.setTitle(title);
+            lowerTitle = title.toLowerCase();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            super.setDescription(description);
+            lowerDescription = description.toLowerCase();
+        }
+    }
+}
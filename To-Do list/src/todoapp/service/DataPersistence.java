@@ -2,46 +2,262 @@ package todoapp.service;
 
 import todoapp.model.Task;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Handles persistent storage of tasks using Java serialization
- * Saves and loads task data to/from binary file
+ * Handles persistent storage of tasks in the binary TaskCodec format
+ * Snapshot of the whole list lives in the data file, later changes are kept in the journal
  */
 public class DataPersistence {
-    private static final String DATA_FILE = "tasks.dat"; //Binary file name for storing tasks
+    static final String DATA_FILE = "tasks.dat"; //Binary file name for storing tasks
+    private static final String BACKUP_SUFFIX = ".bak"; //Previous snapshot, used if the current one is damaged
+    static final String JOURNAL_FILE = "tasks.log"; //Append-only log of changes made after the snapshot
 
     /**
-     * Saves task list to file using object serialization
-     * Uses try-with-resources for automatic stream cleanup
-     * Silently handles errors to prevent application crashes
+     * Saves task list snapshot to file through a buffered file channel
+     * Sequence number of the last journal record included in the snapshot is stored in the header
+     * Snapshot is written to a temporary file, forced to disk and then atomically renamed over the old one,
+     * so a crash leaves either the old or the new file, never a half-written one
+     * The old snapshot is kept as backup, a list still mapping it reads its records from memory from now on
+     * Records of lists that keep them encoded (never decoded from the old snapshot, off-heap store) are copied as raw bytes
+     *
+     * @param tasks the task list to save
+     * @param sequence the last journal sequence number contained in this snapshot
+     * @param nextId the next task ID to allocate, stored so deleted IDs are never reused
+     * @return true if the snapshot was written, false if an error occurred
      */
-    public static void saveTasks(List<Task> tasks) {
-        //Try-with-resources to automatically close the output stream
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(tasks); //Serialize and write entire task list to file
-        } catch (IOException e) {
+    public static boolean saveTasks(List<Task> tasks, long sequence, int nextId) {
+        return saveTasks(tasks, sequence, nextId, null);
+    }
+
+    /**
+     * Saves task list snapshot together with the display order chosen by the user
+     *
+     * @param tasks the task list to save
+     * @param sequence the last journal sequence number contained in this snapshot
+     * @param nextId the next task ID to allocate
+     * @param viewOrder the display order, null for list order
+     * @return true if the snapshot was written, false if an error occurred
+     */
+    public static boolean saveTasks(List<Task> tasks, long sequence, int nextId, TaskSort viewOrder) {
+        return saveTasks(Paths.get(DATA_FILE), tasks, sequence, nextId, viewOrder);
+    }
+
+    /**
+     * Saves task list snapshot to the given data file, used by task lists stored in their own directory
+     *
+     * @param path the data file, its backup and temporary file are kept next to it
+     * @param tasks the task list to save
+     * @param sequence the last journal sequence number contained in this snapshot
+     * @param nextId the next task ID to allocate
+     * @param viewOrder the display order, null for list order
+     * @return true if the snapshot was written, false if an error occurred
+     */
+    public static boolean saveTasks(Path path, List<Task> tasks, long sequence, int nextId, TaskSort viewOrder) {
+        long start = System.nanoTime();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Path backup = backupOf(path);
+
+        //Try-with-resources flushes the writer and then closes the channel
+        try {
+            long size;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 TaskCodec.Writer writer = new TaskCodec.Writer(channel)) {
+                writer.writeHeader(sequence, tasks.size(), nextId, TaskCodec.headerFlags(viewOrder));
+
+                EncodedTaskList encoded = tasks instanceof EncodedTaskList list ? list : null;
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (encoded != null && !encoded.isDecoded(i)) {
+                        writer.writeRaw(encoded.idAt(i), encoded.rawRecord(i));
+                    } else {
+                        writer.write(tasks.get(i));
+                    }
+                }
+
+                writer.writeIndex();
+                writer.flush();
+                channel.force(true); //Data must be on disk before the rename makes it the current snapshot
+                size = channel.size();
+            }
+
+            if (tasks instanceof EncodedTaskList encoded) {
+                encoded.unmap(); //Windows cannot rename or replace a mapped file
+            }
+            if (Files.exists(path)) {
+                Files.move(path, backup, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(path);
+            TaskMetrics.get().recordIo(TaskMetrics.Operation.SAVE, start, size);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            //IllegalStateException - damaged record of the mapped old snapshot, which is kept as it is
             System.out.println("Error saving tasks: " + e.getMessage()); //Handle any IO errors during the save operation
+            TaskMetrics.get().persistenceError("Save of " + path + ": " + e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Loads task list from serialized file
-     * Returns empty list if file doesn't exist or errors occur
-     * Suppresses unchecked cast warning for serialized List type
+     * Forces the renames to disk, not supported on every platform
      */
-    @SuppressWarnings("unchecked")
-    public static List<Task> loadTasks() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return new java.util.ArrayList<>(); //First run - no data file exists
+    private static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //Directories cannot be opened on Windows, renames are durable there anyway
         }
+    }
+
+    /**
+     * Loads task list from the snapshot file and replays the journal on top of it
+     * Snapshot is memory-mapped and tasks are decoded lazily on first access
+     * Files without record index are read sequentially (checksums are checked while reading),
+     * Java-serialized files are converted first
+     * Damaged snapshot is moved aside and the backup snapshot is loaded instead,
+     * the journal still holds the changes made since the backup
+     * Returns empty list if no file exists, or (with a warning) if no file can be read
+     *
+     * @param journal the journal to replay, positioned after the last record
+     * @return the restored task list with its ID index, ID counter and display order
+     */
+    public static TaskSnapshot loadTasks(TaskJournal journal) {
+        return loadTasks(Paths.get(DATA_FILE), journal);
+    }
 
-        //Try-with-resources to automatically close the output stream
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-            return (List<Task>) ois.readObject(); //Deserialize and cast to List<Task>
-        } catch (IOException | ClassNotFoundException e) {
-            return new java.util.ArrayList<>(); //Return empty list if file read fails or class not found during deserialization
+    /**
+     * Loads task list from the given data file (or its backup) and replays the journal on top of it
+     *
+     * @param dataFile the data file of the list
+     * @param journal the journal to replay, positioned after the last record
+     * @return the restored task list with its ID index, ID counter and display order
+     */
+    public static TaskSnapshot loadTasks(Path dataFile, TaskJournal journal) {
+        long start = System.nanoTime();
+        long size = 0; //Mapped snapshots are counted whole, although records are read on first access
+        List<Task> tasks = new ArrayList<>(); //First run - no data file exists
+        long sequence = 0;
+        int nextId = 0;
+        TaskSort viewOrder = null;
+        TaskIdIndex index = null;
+        int maxAddedId = 0;
+
+        for (Path path : new Path[] {dataFile, backupOf(dataFile)}) {
+            if (!path.toFile().exists()) {
+                continue; //Crash between the two renames of saveTasks leaves only the backup
+            }
+
+            MappedTaskStore store = null;
+            try {
+                if (TaskFileMigrator.needsMigration(path)) {
+                    TaskFileMigrator.migrate(path);
+                }
+
+                store = openMapped(path);
+                if (store != null) {
+                    tasks = new LazyTaskList(store);
+                    sequence = store.getSequence();
+                    nextId = store.getNextId();
+                    viewOrder = TaskCodec.viewOrder(store.getFlags());
+                } else {
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                        TaskCodec.Reader reader = new TaskCodec.Reader(channel, TaskCodec.Checksums.read(channel));
+                        reader.readHeader();
+                        sequence = reader.getSequence();
+                        nextId = reader.getNextId();
+                        viewOrder = TaskCodec.viewOrder(reader.getFlags());
+
+                        tasks = new ArrayList<>(reader.getCount());
+                        for (int i = 0; i < reader.getCount(); i++) {
+                            tasks.add(reader.read());
+                        }
+                        reader.finish();
+                    }
+                }
+
+                //Replay decodes the changed tasks, so a damaged record block is found here too
+                index = new TaskIdIndex();
+                index.rebuild(tasks);
+                maxAddedId = journal.replay(tasks, index, sequence, viewOrder);
+                size = Files.size(path);
+                break;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error loading tasks from " + path + ": " + e.getMessage());
+                TaskMetrics.get().persistenceError("Load of " + path + ": " + e.getMessage());
+                if (store != null) {
+                    store.close(); //Released before the file is moved
+                }
+                keepDamaged(path); //Never overwritten by the next save
+                tasks = new ArrayList<>();
+                sequence = 0;
+                nextId = 0;
+                viewOrder = null;
+                index = null;
+            }
+        }
+
+        if (index == null) {
+            //No snapshot, or none of them could be read
+            index = new TaskIdIndex();
+            maxAddedId = journal.replay(tasks, index, sequence, viewOrder);
+        }
+
+        if (nextId == 0) {
+            //Older files have no ID counter - continue after the highest ID
+            for (int i = 0; i < tasks.size(); i++) {
+                nextId = Math.max(nextId, LazyTaskList.peekId(tasks, i));
+            }
+            nextId++;
+        }
+
+        TaskMetrics.get().recordIo(TaskMetrics.Operation.LOAD, start, size);
+        return new TaskSnapshot(tasks, index, Math.max(nextId, maxAddedId + 1), journal.getViewOrder());
+
+    }
+
+    private static Path backupOf(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + BACKUP_SUFFIX);
+    }
+
+    /**
+     * Moves unreadable snapshot aside instead of letting the next save overwrite it
+     */
+    private static void keepDamaged(Path path) {
+        Path damaged = path.resolveSibling(path.getFileName() + ".damaged");
+        try {
+            Files.move(path, damaged, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Warning! Damaged file was kept as " + damaged);
+        } catch (IOException e) {
+            System.out.println("Warning! Could not move damaged file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Maps the current snapshot file, used by stores that read records straight from the file
+     *
+     * @return the mapped snapshot, or null if it cannot be mapped
+     */
+    static MappedTaskStore mapSnapshot() {
+        return openMapped(Paths.get(DATA_FILE));
+    }
+
+    /**
+     * Maps the snapshot file, returns null if it has to be read sequentially instead
+     * (older file version without record index or file too large to map)
+     */
+    private static MappedTaskStore openMapped(Path path) {
+        try {
+            return MappedTaskStore.open(path);
+        } catch (IOException e) {
+            return null;
         }
     }
 
@@ -51,12 +267,24 @@ public class DataPersistence {
      * Shows warning if file deletion fails unexpectedly
      */
     public static void deleteSavedData() {
-        File file = new File(DATA_FILE);
-        if (file.exists()) {
-            boolean deleted = file.delete(); //Attempt to delete file
-            if (!deleted) {
-                System.out.println("Warning! Could not delete data file");
+        deleteSavedData(Paths.get(DATA_FILE));
+    }
+
+    /**
+     * Deletes the given data file and its backup
+     *
+     * @param dataFile the data file of the list
+     */
+    public static void deleteSavedData(Path dataFile) {
+        for (Path path : new Path[] {dataFile, backupOf(dataFile)}) {
+            File file = path.toFile();
+            if (file.exists()) {
+                boolean deleted = file.delete(); //Attempt to delete file
+                if (!deleted) {
+                    System.out.println("Warning! Could not delete data file");
+                }
             }
         }
     }
+
 }
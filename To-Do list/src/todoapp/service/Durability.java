@@ -0,0 +1,11 @@
+package todoapp.service;
+
+/**
+ * When journal records are forced to disk
+ * Records are always written by the background journal writer in batches
+ */
+public enum Durability {
+    NONE, //Written in batches, left to the OS to reach the disk
+    BATCHED, //One fsync per batch, callers do not wait for it
+    PER_OP //One fsync per batch, every mutation waits until its record is on disk
+}
@@ -0,0 +1,34 @@
+package todoapp.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Task list that can return its elements as encoded TaskCodec records
+ * DataPersistence copies such records into a new snapshot without decoding them
+ */
+interface EncodedTaskList {
+
+    int idAt(int index);
+
+    /**
+     * Checks if an element has to be encoded from its task object
+     *
+     * @param index the element index
+     * @return true if rawRecord cannot be used for the element
+     */
+    boolean isDecoded(int index);
+
+    /**
+     * Returns the encoded bytes of an element that was not decoded
+     *
+     * @param index the element index
+     * @return a buffer positioned on the record bytes
+     */
+    ByteBuffer rawRecord(int index);
+
+    /**
+     * Copies records still read from a mapped snapshot file into memory and releases the mapping
+     * Called before the snapshot file is renamed or replaced
+     */
+    void unmap();
+}
@@ -0,0 +1,269 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Task list backed by a MappedTaskStore
+ * Each element is decoded from the mapped file the first time it is read
+ * Tasks added after loading are stored as regular objects
+ */
+public class LazyTaskList extends AbstractList<Task> implements RandomAccess, EncodedTaskList {
+
+    private static final int NOT_MAPPED = -1;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final MappedTaskStore store;
+    private Task[] added; //Tasks added or set after loading, null for mapped elements
+    private int[] records; //Record number in the store, NOT_MAPPED for added tasks
+    private int size;
+
+    public LazyTaskList(MappedTaskStore store) {
+        this.store = store;
+        this.size = store.size();
+        this.added = new Task[Math.max(size, 10)];
+        this.records = new int[added.length];
+
+        for (int i = 0; i < size; i++) {
+            records[i] = i;
+        }
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index);
+        int record = records[index];
+        return record == NOT_MAPPED ? added[index] : store.get(record); //Store decodes on first access
+    }
+
+    /**
+     * Returns task ID of an element without decoding it
+     * Decoded tasks may have been renumbered since loading, their ID is taken from the task
+     *
+     * @param index the element index
+     * @return the task ID
+     */
+    public int idAt(int index) {
+        return isDecoded(index) ? get(index).getId() : store.idAt(records[index]);
+    }
+
+    /**
+     * Returns task ID at the given position of any task list
+     * Lazy lists answer from the record index, so scanning IDs does not decode tasks
+     *
+     * @param tasks the task list
+     * @param index the element index
+     * @return the task ID
+     */
+    public static int peekId(List<Task> tasks, int index) {
+        return tasks instanceof LazyTaskList lazy ? lazy.idAt(index) : tasks.get(index).getId();
+    }
+
+    /**
+     * Finds list position of a task by ID without decoding other tasks
+     *
+     * @param tasks the task list
+     * @param id the task ID
+     * @return the position or -1 if there is no such task
+     */
+    public static int indexOfId(List<Task> tasks, int id) {
+        for (int i = 0; i < tasks.size(); i++) {
+            if (LazyTaskList.peekId(tasks, i) == id) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns due date of an element, read from the record if it was never decoded
+     *
+     * @param index the element index
+     * @return the due date
+     */
+    public LocalDate dueDateAt(int index) {
+        return isDecoded(index) ? get(index).getDueDate() : LocalDate.ofEpochDay(store.epochDayAt(records[index]));
+    }
+
+    /**
+     * Returns priority of an element, read from the record if it was never decoded
+     *
+     * @param index the element index
+     * @return the priority
+     */
+    public Priority priorityAt(int index) {
+        return isDecoded(index) ? get(index).getPriority() : PRIORITIES[store.priorityAt(records[index])];
+    }
+
+    /**
+     * Returns completed status of an element, read from the record if it was never decoded
+     *
+     * @param index the element index
+     * @return true if the task is completed
+     */
+    public boolean completedAt(int index) {
+        return isDecoded(index) ? get(index).isCompleted() : store.completedAt(records[index]);
+    }
+
+    /**
+     * Returns the record number of an element that is still backed by the store
+     *
+     * @param index the element index
+     * @return the record number, or -1 if the element was added after loading
+     */
+    public int recordAt(int index) {
+        checkIndex(index);
+        return records[index];
+    }
+
+    public MappedTaskStore getStore() {
+        return store;
+    }
+
+    /**
+     * Checks if an element was already decoded (or added after loading)
+     *
+     * @param index the element index
+     * @return true if the element exists as a task object
+     */
+    public boolean isDecoded(int index) {
+        checkIndex(index);
+        int record = records[index];
+        return record == NOT_MAPPED || store.isDecoded(record);
+    }
+
+    /**
+     * Returns encoded bytes of an element that was never decoded
+     * Untouched records cannot be modified, so the bytes are still up to date
+     *
+     * @param index the element index
+     * @return a buffer positioned on the record bytes
+     */
+    public ByteBuffer rawRecord(int index) {
+        if (isDecoded(index)) {
+            throw new IllegalStateException("Task at " + index + " was decoded, encode the task object instead");
+        }
+
+        return store.rawRecord(records[index]);
+    }
+
+    @Override
+    public void unmap() {
+        store.unmap();
+    }
+
+    @Override
+    public Task set(int index, Task task) {
+        Task previous = get(index);
+        added[index] = task;
+        records[index] = NOT_MAPPED;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Task task) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        if (size == added.length) {
+            added = Arrays.copyOf(added, size + (size >> 1));
+            records = Arrays.copyOf(records, added.length);
+        }
+
+        System.arraycopy(added, index, added, index + 1, size - index);
+        System.arraycopy(records, index, records, index + 1, size - index);
+        added[index] = task;
+        records[index] = NOT_MAPPED;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task task = get(index);
+
+        System.arraycopy(added, index + 1, added, index, size - index - 1);
+        System.arraycopy(records, index + 1, records, index, size - index - 1);
+        size--;
+        added[size] = null;
+        modCount++;
+        return task;
+    }
+
+    /**
+     * Removes the elements at the given positions in one pass, without decoding any of them
+     *
+     * @param positions the positions to remove
+     */
+    public void removePositions(BitSet positions) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!positions.get(i)) {
+                added[kept] = added[i];
+                records[kept] = records[i];
+                kept++;
+            }
+        }
+
+        Arrays.fill(added, kept, size, null);
+        size = kept;
+        modCount++;
+    }
+
+    /**
+     * Removes the elements at the given positions of any task list in one pass
+     * Lazy lists are compacted without decoding their elements
+     *
+     * @param tasks the task list
+     * @param positions the positions to remove
+     */
+    public static void removeAt(List<Task> tasks, BitSet positions) {
+        if (tasks instanceof LazyTaskList lazy) {
+            lazy.removePositions(positions);
+            return;
+        }
+
+        int kept = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            if (!positions.get(i)) {
+                if (kept != i) {
+                    tasks.set(kept, tasks.get(i));
+                }
+                kept++;
+            }
+        }
+        tasks.subList(kept, tasks.size()).clear();
+    }
+
+    /**
+     * Removes all elements and releases the mapped file, no element refers to it anymore
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(added, 0, size, null);
+        size = 0;
+        modCount++;
+        store.close();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
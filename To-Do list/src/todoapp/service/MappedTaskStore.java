@@ -0,0 +1,381 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.OptionalInt;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only view of a snapshot file mapped into memory
+ * Uses the fixed-size record index, so opening costs the same for any file size
+ * Tasks are decoded one by one when they are asked for and then reused
+ * Checksums of record blocks are checked on first access, so opening does not read the whole file
+ * Stores that will be read whole (index builds) can be checked and decoded up front in parallel chunks instead
+ * Windows cannot rename, replace or delete a mapped file, so the mapping is released before the file is replaced
+ */
+public class MappedTaskStore {
+    private static final int PARALLEL_RECORDS = 16_384; //Smaller stores are checked and decoded on the calling thread
+    private static final int CHUNK_RECORDS = 4_096; //Records decoded by one fork-join task
+    private static final MethodHandle INVOKE_CLEANER = findCleaner(); //Null if the JDK does not offer it
+
+    private ByteBuffer buffer; //Whole file, read-only
+    private MappedByteBuffer mapping; //Null once released by unmap or close
+    private final long sequence;
+    private final int count;
+    private final int nextId;
+    private final int indexOffset;
+    private final Task[] decoded; //Decoded tasks by record number, null until first access
+    private final TaskCodec.Checksums checksums; //Null for files written before version 4
+    private final BitSet verified = new BitSet(); //Blocks already checked
+
+    private MappedTaskStore(MappedByteBuffer buffer, long sequence, int count, int nextId, int indexOffset, TaskCodec.Checksums checksums) {
+        this.buffer = buffer;
+        this.mapping = buffer;
+        this.sequence = sequence;
+        this.count = count;
+        this.nextId = nextId;
+        this.indexOffset = indexOffset;
+        this.decoded = new Task[count];
+        this.checksums = checksums;
+    }
+
+    /**
+     * Maps the snapshot file and validates its header and record index
+     * Checksums of the header and index blocks are checked here, record blocks on first access
+     * Call unmap before the file is renamed or replaced, and close when the store is no longer used
+     *
+     * @param file the snapshot file
+     * @return the mapped store
+     * @throws IOException if the file cannot be mapped, has no record index or is damaged
+     */
+    public static MappedTaskStore open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        TaskCodec.Checksums checksums;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Task file is too large to map: " + size);
+            }
+            checksums = TaskCodec.Checksums.read(channel);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (buffer.limit() < TaskCodec.headerSize(2) + 4 || buffer.getInt(0) != TaskCodec.MAGIC) {
+            throw new IOException("Not a task snapshot file");
+        }
+
+        short version = buffer.getShort(4);
+        if (version < 2 || version > TaskCodec.VERSION) {
+            throw new IOException("Task file version " + version + " has no record index");
+        }
+
+        int headerSize = TaskCodec.headerSize(version);
+        long sequence = buffer.getLong(8);
+        int count = buffer.getInt(16);
+        int nextId = version >= 3 ? buffer.getInt(20) : 0;
+        int dataEnd = checksums != null ? (int) checksums.getDataLength() : buffer.limit(); //Index ends before the checksum trailer
+        long indexOffset = (long) dataEnd - 4 - (long) count * TaskCodec.INDEX_ENTRY_SIZE;
+
+        if (count < 0 || indexOffset < headerSize || buffer.getInt(dataEnd - 4) != TaskCodec.INDEX_MAGIC) {
+            throw new IOException("Task file record index is damaged");
+        }
+
+        MappedTaskStore store = new MappedTaskStore(buffer, sequence, count, nextId, (int) indexOffset, checksums);
+        try {
+            store.verify(0, headerSize);
+            store.verify((int) indexOffset, dataEnd);
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        return store;
+    }
+
+    /**
+     * Copies the file into direct memory and releases the mapping, records are read from the copy afterwards
+     * Called before the file is renamed or replaced, does nothing if it is not mapped anymore
+     */
+    public void unmap() {
+        if (mapping != null) {
+            ByteBuffer copy = ByteBuffer.allocateDirect(mapping.capacity());
+            copy.put(0, mapping, 0, mapping.capacity());
+            buffer = copy;
+            release();
+        }
+    }
+
+    /**
+     * Releases the mapping of a store that is no longer used, e.g. after its tasks were copied elsewhere
+     * Reading the store afterwards fails
+     */
+    public void close() {
+        buffer = ByteBuffer.allocate(0); //Reads fail with an exception instead of touching unmapped memory
+        if (mapping != null) {
+            release();
+        }
+    }
+
+    /**
+     * Checks if the store still reads from the mapped file
+     *
+     * @return false after unmap or close
+     */
+    public boolean isMapped() {
+        return mapping != null;
+    }
+
+    /**
+     * Unmaps the file right away, the garbage collector would do it only when the buffer is collected
+     * No view of the mapping may be used afterwards
+     */
+    private void release() {
+        MappedByteBuffer released = mapping;
+        mapping = null;
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+
+        try {
+            INVOKE_CLEANER.invokeExact(released);
+        } catch (Throwable e) {
+            System.out.println("Warning! Could not unmap task file: " + e.getMessage());
+        }
+    }
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field instance = unsafeClass.getDeclaredField("theUnsafe");
+            instance.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(instance.get(null))
+                    .asType(MethodType.methodType(void.class, MappedByteBuffer.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; //Mapping is released when the buffer is garbage collected
+        }
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns stored ID counter, 0 for older versions that did not store it
+     *
+     * @return the next task ID to allocate
+     */
+    public int getNextId() {
+        return nextId;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public short getFlags() {
+        return buffer.getShort(6);
+    }
+
+    /**
+     * Reads task ID of a record from the index without decoding the record
+     *
+     * @param record the record number
+     * @return the task ID
+     */
+    public int idAt(int record) {
+        return buffer.getInt(entry(record));
+    }
+
+    /**
+     * Reads due date of a record as epoch day without decoding the record
+     *
+     * @param record the record number
+     * @return the due date epoch day
+     */
+    public int epochDayAt(int record) {
+        return buffer.getInt(checkedRecord(record) + 4);
+    }
+
+    /**
+     * Reads priority ordinal of a record without decoding the record
+     *
+     * @param record the record number
+     * @return the priority ordinal
+     */
+    public int priorityAt(int record) {
+        return buffer.get(checkedRecord(record) + 8);
+    }
+
+    /**
+     * Reads completed flag of a record without decoding the record
+     *
+     * @param record the record number
+     * @return true if the task is completed
+     */
+    public boolean completedAt(int record) {
+        return TaskCodec.isCompleted(buffer.get(checkedRecord(record) + 9));
+    }
+
+    /**
+     * Returns the task of a record, decoding it on first access
+     * The same task object is returned for every later call
+     *
+     * @param record the record number
+     * @return the task stored in the record
+     */
+    public Task get(int record) {
+        Task task = decoded[record];
+        if (task == null) {
+            task = TaskCodec.decode(buffer, checkedRecord(record));
+            decoded[record] = task;
+        }
+
+        return task;
+    }
+
+    /**
+     * Checks if a record was already decoded
+     *
+     * @param record the record number
+     * @return true if a task object exists for the record
+     */
+    public boolean isDecoded(int record) {
+        return decoded[record] != null;
+    }
+
+    /**
+     * Checks the checksums of all blocks not checked yet
+     * Large files are checked on the common fork-join pool, the block checksums are independent of each other
+     *
+     * @throws IllegalStateException if a block does not match its checksum, the first damaged block is reported
+     */
+    public void verifyAll() {
+        if (checksums == null || verified.cardinality() == checksums.getBlockCount()) {
+            return;
+        }
+
+        IntStream blocks = IntStream.range(0, checksums.getBlockCount());
+        if (count >= PARALLEL_RECORDS) {
+            blocks = blocks.parallel(); //Workers only read the bitset, it is updated after the join
+        }
+
+        OptionalInt damaged = blocks.filter(block -> !verified.get(block) && !checksums.matches(buffer, block)).findFirst();
+        if (damaged.isPresent()) {
+            throw new IllegalStateException("Task file block " + damaged.getAsInt() + " is damaged");
+        }
+        verified.set(0, checksums.getBlockCount());
+    }
+
+    /**
+     * Decodes every record not decoded yet, after checking all checksums
+     * Large files are split into chunks of records decoded on the common fork-join pool, each record
+     * is decoded into its own slot, so the result is the same as decoding the records one by one
+     *
+     * @throws IllegalStateException if a block or record is damaged
+     */
+    public void decodeAll() {
+        verifyAll();
+
+        IntStream chunks = IntStream.range(0, (count + CHUNK_RECORDS - 1) / CHUNK_RECORDS);
+        if (count >= PARALLEL_RECORDS) {
+            chunks = chunks.parallel();
+        }
+
+        chunks.forEach(chunk -> {
+            int end = Math.min(count, (chunk + 1) * CHUNK_RECORDS);
+            for (int record = chunk * CHUNK_RECORDS; record < end; record++) {
+                if (decoded[record] == null) {
+                    decoded[record] = TaskCodec.decode(buffer, recordOffset(record)); //Checksums were checked above
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the encoded bytes of a record, used to copy untouched records into a new snapshot
+     *
+     * @param record the record number
+     * @return a buffer positioned on the record bytes
+     */
+    public ByteBuffer rawRecord(int record) {
+        int offset = checkedRecord(record);
+        return buffer.slice(offset, TaskCodec.recordSize(buffer, offset)); //Damaged records are never copied into a new snapshot
+    }
+
+    /**
+     * Returns the mapped file for reading records in place, together with offsetOf
+     *
+     * @return the whole file, read-only
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns file offset of a record, its checksums are checked first
+     *
+     * @param record the record number
+     * @return the record start offset
+     */
+    int offsetOf(int record) {
+        return checkedRecord(record);
+    }
+
+    /**
+     * Returns record offset after checking the checksums of all blocks the record lies in
+     *
+     * @throws IllegalStateException if a block does not match its checksum
+     */
+    private int checkedRecord(int record) {
+        int offset = recordOffset(record);
+        if (checksums != null) {
+            verify(offset, offset + TaskCodec.RECORD_FIXED_SIZE - 4); //Fixed fields and title length
+            verify(offset, offset + TaskCodec.recordSize(buffer, offset));
+        }
+
+        return offset;
+    }
+
+    private void verify(int from, int to) {
+        if (checksums == null) {
+            return;
+        }
+
+        for (int block = checksums.blockOf(from); block <= checksums.blockOf(to - 1); block++) {
+            if (!verified.get(block)) {
+                if (!checksums.matches(buffer, block)) {
+                    throw new IllegalStateException("Task file block " + block + " is damaged");
+                }
+                verified.set(block);
+            }
+        }
+    }
+
+    private int recordOffset(int record) {
+        long offset = buffer.getLong(entry(record) + 4);
+        if (offset < TaskCodec.headerSize(2) || offset >= indexOffset) {
+            throw new IllegalStateException("Corrupted record index entry: " + record);
+        }
+
+        return (int) offset;
+    }
+
+    private int entry(int record) {
+        if (record < 0 || record >= count) {
+            throw new IndexOutOfBoundsException("Record: " + record + ", count: " + count);
+        }
+
+        return indexOffset + record * TaskCodec.INDEX_ENTRY_SIZE;
+    }
+}
@@ -0,0 +1,627 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+
+/**
+ * Task manager that keeps all task data outside of the Java heap
+ * Records use the TaskCodec layout: untouched ones are read straight from the memory-mapped snapshot file,
+ * added and changed ones are written to an arena of direct memory
+ * The row table (ID and record location of every task) is a pair of direct buffers kept in ID order
+ * After every checkpoint the new snapshot is mapped and the arena emptied, so the file backs the records again
+ *
+ * Heap use does not grow with the task count, only the lists returned by queries live on the heap
+ * Returned tasks are decoded copies, changes have to go through the update methods
+ * Direct memory is limited by -XX:MaxDirectMemorySize (by default the maximum heap size)
+ * Uses the same data files as TaskManager, so only one of them may be open at a time
+ */
+public class OffHeapTaskStore implements TaskOperations {
+    private static final int INITIAL_ROWS = 1024;
+    private static final int INITIAL_ARENA = 64 * 1024;
+
+    private MappedTaskStore base; //Current snapshot, null if there is none or it cannot be mapped
+    private ByteBuffer arena = ByteBuffer.allocateDirect(INITIAL_ARENA); //Added and changed records
+    private int arenaUsed;
+    private IntBuffer ids = allocateInts(INITIAL_ROWS);
+    private LongBuffer locations = allocateLongs(INITIAL_ROWS); //Arena offset, or ~record for records of the snapshot
+    private int size;
+    private ByteBuffer current; //Buffer of the record last found by locate
+    private TaskSort currentSort; //Order of query results, rows themselves stay in ID order
+    private final TaskJournal journal;
+    private int nextId;
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     */
+    public OffHeapTaskStore() {
+        this(Durability.BATCHED);
+    }
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     * Records of the mapped snapshot are used in place, only tasks changed by the journal are copied to the arena
+     *
+     * @param durability when journal records are forced to disk
+     */
+    public OffHeapTaskStore(Durability durability) {
+        this.journal = new TaskJournal(new File(DataPersistence.JOURNAL_FILE), durability);
+
+        TaskSnapshot snapshot = DataPersistence.loadTasks(journal);
+        List<Task> tasks = snapshot.getTasks();
+        LazyTaskList lazy = tasks instanceof LazyTaskList list ? list : null;
+        this.base = lazy != null ? lazy.getStore() : null;
+        this.nextId = snapshot.getNextId();
+        this.currentSort = snapshot.getViewOrder();
+
+        ensureRows(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            if (lazy != null && !lazy.isDecoded(i)) {
+                ids.put(size, lazy.idAt(i));
+                locations.put(size, ~(long) lazy.recordAt(i));
+                size++;
+            } else {
+                appendRow(tasks.get(i)); //Changed by the journal or not mapped
+            }
+        }
+
+        sortRowsById(); //Snapshot may be sorted by a TaskManager
+    }
+
+    private static IntBuffer allocateInts(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private static LongBuffer allocateLongs(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private void ensureRows(int capacity) {
+        if (capacity <= ids.capacity()) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, ids.capacity() * 2);
+        IntBuffer newIds = allocateInts(newCapacity);
+        LongBuffer newLocations = allocateLongs(newCapacity);
+        newIds.put(0, ids, 0, size);
+        newLocations.put(0, locations, 0, size);
+        ids = newIds;
+        locations = newLocations;
+    }
+
+    /**
+     * Reserves space at the end of the arena, growing it when full
+     * Offsets of records already in the arena stay the same
+     *
+     * @return offset of the reserved space
+     */
+    private int allocate(int length) {
+        if (arenaUsed + length > arena.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(arena.capacity() * 2, arenaUsed + length));
+            grown.put(0, arena, 0, arenaUsed);
+            arena = grown;
+        }
+
+        int offset = arenaUsed;
+        arenaUsed += length;
+        return offset;
+    }
+
+    private int encode(Task task) {
+        byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+
+        int offset = allocate(TaskCodec.RECORD_FIXED_SIZE + title.length + description.length);
+        TaskCodec.encode(arena.position(offset), task, title, description);
+        return offset;
+    }
+
+    private void appendRow(Task task) {
+        ensureRows(size + 1);
+        ids.put(size, task.getId());
+        locations.put(size, encode(task));
+        size++;
+    }
+
+    /**
+     * Points current at the buffer holding the record of a row
+     *
+     * @return the record offset in current
+     */
+    private int locate(int row) {
+        long location = locations.get(row);
+        if (location >= 0) {
+            current = arena;
+            return (int) location;
+        }
+
+        current = base.buffer();
+        return base.offsetOf((int) ~location);
+    }
+
+    /**
+     * Moves the record of a row into the arena, snapshot records are read-only
+     *
+     * @return the record offset in the arena
+     */
+    private int writable(int row) {
+        long location = locations.get(row);
+        if (location >= 0) {
+            return (int) location;
+        }
+
+        int offset = locate(row);
+        int length = TaskCodec.recordSize(current, offset);
+        int target = allocate(length);
+        arena.put(target, current, offset, length);
+        locations.put(row, target);
+        return target;
+    }
+
+    private Task decode(int row) {
+        int offset = locate(row);
+        return TaskCodec.decode(current, offset);
+    }
+
+    private int rowOf(int id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = ids.get(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Heapsort of the row table by ID, done in place so no copy of the table is made on the heap
+     */
+    private void sortRowsById() {
+        boolean sorted = true;
+        for (int row = 1; row < size && sorted; row++) {
+            sorted = ids.get(row - 1) < ids.get(row);
+        }
+        if (sorted) {
+            return;
+        }
+
+        for (int root = size / 2 - 1; root >= 0; root--) {
+            siftDown(root, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swapRows(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(int root, int end) {
+        while (2 * root + 1 < end) {
+            int child = 2 * root + 1;
+            if (child + 1 < end && ids.get(child + 1) > ids.get(child)) {
+                child++;
+            }
+            if (ids.get(root) >= ids.get(child)) {
+                return;
+            }
+            swapRows(root, child);
+            root = child;
+        }
+    }
+
+    private void swapRows(int first, int second) {
+        int id = ids.get(first);
+        long location = locations.get(first);
+        ids.put(first, ids.get(second));
+        locations.put(first, locations.get(second));
+        ids.put(second, id);
+        locations.put(second, location);
+    }
+
+    /**
+     * Adds new task with the next ID from the counter
+     * The task is encoded into the arena, the object itself is not kept
+     *
+     * @param task the task to add
+     */
+    public void addTask(Task task) {
+        task.setId(nextId++);
+        appendRow(task); //IDs only grow, so rows stay in ID order
+        journal.logAdd(task);
+        checkpointIfNeeded();
+    }
+
+    public Task findById(int id) {
+        int row = rowOf(id);
+        return row < 0 ? null : decode(row);
+    }
+
+    public List<Task> findByTitle(String searchText) {
+        TextMatcher matcher = new TextMatcher(searchText);
+        return select(row -> matcher.matches(row, false));
+    }
+
+    public List<Task> findByDescription(String searchText) {
+        if (searchText.trim().isEmpty()) {
+            return select(this::isDescriptionBlank); //Tasks with empty descriptions
+        }
+
+        TextMatcher matcher = new TextMatcher(searchText);
+        return select(row -> matcher.matches(row, true));
+    }
+
+    public List<Task> findByPriority(Priority priority) {
+        int ordinal = priority.ordinal();
+        return select(row -> priorityAt(row) == ordinal);
+    }
+
+    public List<Task> findByDate(LocalDate date) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        return select(row -> epochDayAt(row) == epochDay);
+    }
+
+    public List<Task> getTasks(TaskFilter filter) {
+        int today = Math.toIntExact(LocalDate.now().toEpochDay());
+        return switch (filter) {
+            case ALL -> select(row -> true);
+            case COMPLETE -> select(this::isCompleted);
+            case INCOMPLETE -> select(row -> !isCompleted(row));
+            case OVERDUE -> select(row -> !isCompleted(row) && epochDayAt(row) < today);
+        };
+    }
+
+    //locate has to run before current is read, so these are never written as current.get(locate(row))
+    private int epochDayAt(int row) {
+        int offset = locate(row);
+        return current.getInt(offset + 4);
+    }
+
+    private int priorityAt(int row) {
+        int offset = locate(row);
+        return current.get(offset + 8);
+    }
+
+    private boolean isCompleted(int row) {
+        int offset = locate(row);
+        return TaskCodec.isCompleted(current.get(offset + 9));
+    }
+
+    //Same as String.trim().isEmpty() - every char up to ' ' is a single byte in UTF-8
+    private boolean isDescriptionBlank(int row) {
+        int offset = locate(row);
+        int lengthOffset = offset + TaskCodec.RECORD_FIXED_SIZE - 8;
+        lengthOffset += 4 + current.getInt(lengthOffset); //Skip the title
+        int start = lengthOffset + 4;
+        int end = start + current.getInt(lengthOffset);
+
+        for (int i = start; i < end; i++) {
+            if ((current.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Case-insensitive substring match on the UTF-8 bytes of a record
+     * ASCII text is compared in place, other text is decoded to get the same result as String.toLowerCase
+     */
+    private final class TextMatcher {
+        private final String lowerNeedle;
+        private final byte[] asciiNeedle; //Null if the needle is not pure ASCII
+
+        TextMatcher(String searchText) {
+            this.lowerNeedle = searchText.toLowerCase();
+            byte[] bytes = lowerNeedle.getBytes(StandardCharsets.UTF_8);
+            this.asciiNeedle = bytes.length == lowerNeedle.length() ? bytes : null;
+        }
+
+        boolean matches(int row, boolean description) {
+            int offset = locate(row);
+            int lengthOffset = offset + TaskCodec.RECORD_FIXED_SIZE - 8;
+            if (description) {
+                lengthOffset += 4 + current.getInt(lengthOffset);
+            }
+            int start = lengthOffset + 4;
+            int length = current.getInt(lengthOffset);
+
+            if (asciiNeedle != null && isAscii(start, length)) {
+                return containsAscii(start, length);
+            }
+
+            byte[] bytes = new byte[length];
+            current.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8).toLowerCase().contains(lowerNeedle);
+        }
+
+        private boolean isAscii(int start, int length) {
+            for (int i = start; i < start + length; i++) {
+                if (current.get(i) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean containsAscii(int start, int length) {
+            int last = start + length - asciiNeedle.length;
+            for (int from = start; from <= last; from++) {
+                int i = 0;
+                while (i < asciiNeedle.length && lower(current.get(from + i)) == asciiNeedle[i]) {
+                    i++;
+                }
+                if (i == asciiNeedle.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int lower(byte value) {
+            return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+        }
+    }
+
+    private List<Task> select(IntPredicate predicate) {
+        int[] rows = new int[16];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (predicate.test(row)) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = row;
+            }
+        }
+
+        return toTasks(rows, count);
+    }
+
+    /**
+     * Orders matching rows by the current sort and decodes them
+     * Sort key and row are packed into one long, so sorting is a primitive array sort
+     */
+    private List<Task> toTasks(int[] rows, int count) {
+        if (currentSort != null && currentSort != TaskSort.ID) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                long key = currentSort == TaskSort.DUE_DATE ? epochDayAt(row) : -priorityAt(row); //Priority HIGH to LOW
+
+                keys[i] = key << 32 | row; //Equal keys stay in ID order
+            }
+            Arrays.sort(keys);
+
+            for (int i = 0; i < count; i++) {
+                rows[i] = (int) keys[i];
+            }
+        }
+
+        List<Task> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(decode(rows[i]));
+        }
+        return result;
+    }
+
+    public boolean removeTask(int id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        ids.put(row, ids, row + 1, size - row - 1);
+        locations.put(row, locations, row + 1, size - row - 1);
+        size--; //Arena space of the record is reclaimed by the next checkpoint
+
+        journal.logDelete(id);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updateTitle(int id, String newName) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        Task task = decode(row);
+        task.setTitle(newName);
+        locations.put(row, encode(task)); //Length changes, so the record is written again
+        journal.logTitle(id, newName);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updateDescription(int id, String newDescription) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        Task task = decode(row);
+        task.setDescription(newDescription);
+        locations.put(row, encode(task));
+        journal.logDescription(id, newDescription);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updateDate(int id, LocalDate newDate) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        int offset = writable(row); //Can grow the arena, so it is read afterwards
+        arena.putInt(offset + 4, Math.toIntExact(newDate.toEpochDay()));
+        journal.logDueDate(id, newDate);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean updatePriority(int id, Priority newPriority) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        int offset = writable(row);
+        arena.put(offset + 8, (byte) newPriority.ordinal());
+        journal.logPriority(id, newPriority);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public boolean markCompleted(int id) {
+        return setCompleted(id, true);
+    }
+
+    public boolean markIncompleted(int id) {
+        return setCompleted(id, false);
+    }
+
+    private boolean setCompleted(int id, boolean completed) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+
+        int offset = writable(row);
+        arena.put(offset + 9, TaskCodec.withCompleted(arena.get(offset + 9), completed));
+        journal.logCompleted(id, completed);
+        checkpointIfNeeded();
+        return true;
+    }
+
+    public void sortByDueDate() {
+        sort(TaskSort.DUE_DATE);
+    }
+
+    public void sortByPriority() {
+        sort(TaskSort.PRIORITY);
+    }
+
+    public void sortById() {
+        sort(TaskSort.ID);
+    }
+
+    /**
+     * Sets order of query results, logged so a TaskManager opening the same files shows the same order
+     */
+    private void sort(TaskSort order) {
+        currentSort = order;
+        journal.logViewOrder(order);
+        checkpointIfNeeded();
+    }
+
+    public boolean isTaskListEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void deleteAllData() {
+        size = 0;
+        arenaUsed = 0;
+        if (base != null) {
+            base.close(); //Windows cannot delete a mapped file
+            base = null;
+        }
+        nextId = 1;
+        currentSort = null; //Display order is stored with the data
+        journal.delete();
+        DataPersistence.deleteSavedData();
+    }
+
+    /**
+     * Writes all pending changes and stops the background writer
+     */
+    public void close() {
+        journal.close();
+    }
+
+    /**
+     * Writes a snapshot once enough changes were logged and maps it as the new base
+     * Records are copied into the snapshot as raw bytes, tasks are never decoded for it
+     */
+    private void checkpointIfNeeded() {
+        journal.awaitDurability();
+        if (journal.needsCheckpoint() && journal.checkpoint(new RecordList(), nextId)) {
+            remap();
+        }
+    }
+
+    private void remap() {
+        MappedTaskStore snapshot = DataPersistence.mapSnapshot();
+        if (snapshot == null || snapshot.size() != size) {
+            return; //Keep reading from the old mapping and the arena
+        }
+
+        base = snapshot;
+        for (int row = 0; row < size; row++) {
+            locations.put(row, ~(long) row); //Snapshot was written in row order
+        }
+        arenaUsed = 0;
+    }
+
+    /**
+     * All rows in ID order, handed to the snapshot writer as encoded records
+     */
+    private final class RecordList extends AbstractList<Task> implements RandomAccess, EncodedTaskList {
+        @Override
+        public Task get(int index) {
+            return decode(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int idAt(int index) {
+            return ids.get(index);
+        }
+
+        @Override
+        public boolean isDecoded(int index) {
+            return false;
+        }
+
+        @Override
+        public ByteBuffer rawRecord(int index) {
+            int offset = locate(index);
+            return current.slice(offset, TaskCodec.recordSize(current, offset));
+        }
+
+        @Override
+        public void unmap() {
+            current = null; //May still point at the mapping
+            if (base != null) {
+                base.unmap(); //Read from memory until the new snapshot is mapped
+            }
+        }
+    }
+}
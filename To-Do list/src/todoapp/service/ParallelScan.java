@@ -0,0 +1,141 @@
+package todoapp.service;
+
+import java.io.Serial;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+/**
+ * Checks candidate task IDs against a predicate, split into chunks run on a fork-join pool
+ * Candidates below the threshold are checked on the calling thread, where forking costs more than it saves
+ * Matches are collected into a bitset, so the result is the same as the sequential loop whatever the chunk order
+ * The predicate is called from several threads at once and must only read shared state
+ */
+public final class ParallelScan {
+    public static final int DEFAULT_THRESHOLD = 16_384; //Fewer candidates are checked sequentially
+    private static final int CHUNK_SIZE = 4_096; //Candidates checked by one fork-join task
+
+    /**
+     * Mode that never forks
+     */
+    public static final ParallelScan SEQUENTIAL = new ParallelScan(null, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    private ParallelScan(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns mode running on the common fork-join pool, with one worker per core
+     *
+     * @return the parallel scan mode
+     */
+    public static ParallelScan commonPool() {
+        return new ParallelScan(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Returns mode running on its own pool, e.g. to compare results for 1 and N cores
+     * Pool threads are daemon threads, so the pool needs no shutdown
+     *
+     * @param threads the number of worker threads, 1 for sequential scans
+     * @param threshold the number of candidates from which scans are split
+     * @return the scan mode
+     * @throws IllegalArgumentException if threads or threshold is not positive
+     */
+    public static ParallelScan withThreads(int threads, int threshold) {
+        if (threads <= 0 || threshold <= 0) {
+            throw new IllegalArgumentException("Threads and threshold must be positive numbers: " + threads + ", " + threshold);
+        }
+
+        return threads == 1 ? SEQUENTIAL : new ParallelScan(new ForkJoinPool(threads), threshold);
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Returns the candidate IDs that match the predicate
+     *
+     * @param candidates the IDs to check, not modified
+     * @param matches the predicate, called once per candidate
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet filter(BitSet candidates, IntPredicate matches) {
+        int count = candidates.cardinality();
+        if (pool == null || count < threshold) {
+            BitSet found = new BitSet();
+            for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+                if (matches.test(id)) {
+                    found.set(id);
+                }
+            }
+            return found;
+        }
+
+        return filter(candidates.stream().toArray(), 0, count, matches);
+    }
+
+    /**
+     * Returns the IDs of a range of an ID array that match the predicate
+     *
+     * @param ids the IDs to check, not modified
+     * @param from the first position to check
+     * @param to the position after the last one to check
+     * @param matches the predicate, called once per candidate
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet filter(int[] ids, int from, int to, IntPredicate matches) {
+        if (pool == null || to - from < threshold) {
+            return new Chunk(ids, from, to, matches, false).compute();
+        }
+
+        return pool.invoke(new Chunk(ids, from, to, matches, true));
+    }
+
+    /**
+     * Range of candidates, split in halves until it fits one chunk
+     */
+    private static final class Chunk extends RecursiveTask<BitSet> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final int[] ids;
+        private final int from;
+        private final int to;
+        private final IntPredicate matches;
+        private final boolean split; //False when run on the calling thread
+
+        Chunk(int[] ids, int from, int to, IntPredicate matches, boolean split) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.matches = matches;
+            this.split = split;
+        }
+
+        @Override
+        protected BitSet compute() {
+            if (split && to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                Chunk left = new Chunk(ids, from, middle, matches, true);
+                left.fork();
+                BitSet found = new Chunk(ids, middle, to, matches, true).compute();
+                found.or(left.join());
+                return found;
+            }
+
+            BitSet found = new BitSet();
+            for (int i = from; i < to; i++) {
+                if (matches.test(ids[i])) {
+                    found.set(ids[i]);
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache of query results, kept as arrays of task IDs
+ *
+ * Every task field has a version counter, raised by each change of that field; adds, removals and resets raise
+ * the list version. A result remembers the versions it was computed at and is only used while the list version
+ * and the versions of the fields its query depends on are unchanged - renaming a task does not drop cached
+ * priority queries. Versions are read before the result is computed, so a result computed while another thread
+ * changed the tasks is stored as already outdated and never returned
+ *
+ * Least recently used results are evicted once there are more than maxEntries of them
+ * or they hold more than maxIds IDs together; a result larger than maxIds is not cached at all
+ */
+public class QueryCache implements TaskListener {
+    private static final TaskField[] FIELDS = TaskField.values();
+
+    private final int maxEntries;
+    private final long maxIds;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); //Access order, eldest first
+    private final long[] fieldVersions = new long[FIELDS.length];
+    private long listVersion;
+    private long cachedIds; //IDs held by all entries
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Cached result with the versions it was computed at
+     */
+    private static final class Entry {
+        private final int[] ids;
+        private final long listVersion;
+        private final long[] fieldVersions;
+        private final Set<TaskField> fields;
+
+        Entry(int[] ids, long listVersion, long[] fieldVersions, Set<TaskField> fields) {
+            this.ids = ids;
+            this.listVersion = listVersion;
+            this.fieldVersions = fieldVersions;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Creates an empty cache
+     *
+     * @param maxEntries the maximum number of cached results
+     * @param maxIds the maximum number of task IDs held by all results together
+     */
+    public QueryCache(int maxEntries, long maxIds) {
+        if (maxEntries <= 0 || maxIds <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive number: " + maxEntries + ", " + maxIds);
+        }
+        this.maxEntries = maxEntries;
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Returns the cached result of a query, or computes and caches it
+     *
+     * @param key the normalized query
+     * @param fields the task fields the result depends on
+     * @param compute computes the result IDs in result order, called without holding the cache lock
+     * @return the result IDs, must not be modified
+     */
+    public int[] get(String key, Set<TaskField> fields, Supplier<int[]> compute) {
+        long list;
+        long[] versions;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && isCurrent(entry)) {
+                hits++;
+                return entry.ids;
+            }
+            if (entry != null) {
+                remove(key);
+            }
+
+            misses++;
+            list = listVersion;
+            versions = fieldVersions.clone();
+        }
+
+        int[] ids = compute.get();
+
+        synchronized (this) {
+            if (ids.length <= maxIds) {
+                Entry previous = entries.put(key, new Entry(ids, list, versions, fields));
+                if (previous != null) {
+                    cachedIds -= previous.ids.length; //Filled by another thread meanwhile
+                }
+                cachedIds += ids.length;
+                evictOverLimit();
+            }
+        }
+
+        return ids;
+    }
+
+    private boolean isCurrent(Entry entry) {
+        if (entry.listVersion != listVersion) {
+            return false;
+        }
+        for (TaskField field : entry.fields) {
+            if (entry.fieldVersions[field.ordinal()] != fieldVersions[field.ordinal()]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            cachedIds -= removed.ids.length;
+        }
+    }
+
+    private void evictOverLimit() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || cachedIds > maxIds) && eldest.hasNext()) {
+            cachedIds -= eldest.next().getValue().ids.length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops all cached results, e.g. when results depend on state the cache does not see (display order)
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedIds = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryCache{entries=" + entries.size() + ", ids=" + cachedIds + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + "}";
+    }
+
+    @Override
+    public synchronized void taskAdded(Task task) {
+        listVersion++;
+    }
+
+    @Override
+    public synchronized void taskRemoved(Task task) {
+        listVersion++;
+    }
+
+    @Override
+    public synchronized void taskUpdated(Task task, TaskField field, Object oldValue) {
+        fieldVersions[field.ordinal()]++;
+    }
+
+    @Override
+    public synchronized void tasksReset(List<Task> tasks) {
+        listVersion++;
+        clear(); //IDs may have been renumbered, no entry can be current
+    }
+}
@@ -0,0 +1,424 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Executes TaskQuery against the task indexes
+ *
+ * Bitset predicates (priority, due date range, status) are cheap and their exact size is known,
+ * text predicates are estimated from their rarest gram posting list
+ * The most selective predicate produces the candidates, the others are intersected with them
+ * or checked per candidate when that is cheaper
+ * Offset and limit are pushed down: unsorted results stop after the page, sorted results keep only the top tasks in a heap
+ * Results sorted by one key are read from its sort index instead when most tasks match
+ */
+public class QueryPlanner {
+    private static final int WALK_PAGE_SIZE = 256; //Sort index keys read at once
+
+    private final List<Task> tasks;
+    private final TaskIdIndex index;
+    private final SecondaryIndex secondaryIndex;
+    private final TextIndex textIndex;
+    private final Map<TaskSort, SortIndex> sortIndexes;
+    private long scannedRows; //Tasks and index entries read by all executed queries
+    private ParallelScan scan = ParallelScan.SEQUENTIAL; //Per-candidate checks of many candidates are split across cores
+
+    public QueryPlanner(List<Task> tasks, TaskIdIndex index, SecondaryIndex secondaryIndex, TextIndex textIndex,
+                        Map<TaskSort, SortIndex> sortIndexes) {
+        this.tasks = tasks;
+        this.index = index;
+        this.secondaryIndex = secondaryIndex;
+        this.textIndex = textIndex;
+        this.sortIndexes = sortIndexes;
+    }
+
+    /**
+     * Sets how candidates are checked against text predicates, results are the same in every mode
+     *
+     * @param scan the scan mode
+     */
+    public void setScan(ParallelScan scan) {
+        this.scan = scan;
+    }
+
+    /**
+     * Runs the query
+     * Unfiltered and unsorted queries return tasks in list order, others in sort key order with ID as the last key
+     *
+     * @param query the query to run
+     * @return list of matching tasks
+     */
+    public List<Task> execute(TaskQuery query) {
+        if (query.isUnfiltered() && query.getSortKeys().isEmpty()) {
+            int from = Math.min(query.getOffset(), tasks.size());
+            int to = Math.min(window(from, query.getLimit()), tasks.size());
+            scannedRows += to - from;
+            return new ArrayList<>(tasks.subList(from, to));
+        }
+
+        return resolve(candidates(query), query.getSortKeys(), query.getOffset(), query.getLimit());
+    }
+
+    /**
+     * Runs the query lazily, tasks are resolved (and decoded) only when the iterator reaches them
+     * Results read in ID or sort index order are never collected into a list
+     * Task list must not be changed while the iterator is used
+     *
+     * @param query the query to run
+     * @param skip tasks of the query result to skip, on top of the query offset
+     * @param maxTasks the maximum number of tasks, on top of the query limit
+     * @return iterator over matching tasks in query order
+     */
+    public Iterator<Task> iterator(TaskQuery query, int skip, int maxTasks) {
+        if (skip < 0 || maxTasks < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative: " + skip + ", " + maxTasks);
+        }
+
+        int offset = window(query.getOffset(), skip);
+        int limit = Math.min(Math.max(0, query.getLimit() - skip), maxTasks);
+
+        if (query.isUnfiltered() && query.getSortKeys().isEmpty()) {
+            int from = Math.min(offset, tasks.size());
+            return tasks.subList(from, Math.min(window(from, limit), tasks.size())).iterator();
+        }
+
+        BitSet ids = candidates(query);
+        Iterator<Task> lazy = lazyIterator(ids, query.getSortKeys(), offset, limit);
+        return lazy != null ? lazy : sorted(ids, query.getSortKeys(), offset, limit).iterator();
+    }
+
+    /**
+     * Describes how the query would be executed, for diagnostics
+     *
+     * @param query the query to describe
+     * @return the chosen plan, most selective step first
+     */
+    public String explain(TaskQuery query) {
+        if (query.isUnfiltered() && query.getSortKeys().isEmpty()) {
+            return "list scan, offset " + query.getOffset() + ", limit " + query.getLimit();
+        }
+
+        StringBuilder plan = new StringBuilder();
+        int candidates = tasks.size();
+        for (Step step : plan(query)) {
+            plan.append(step.name).append(" (~").append(step.estimate).append(") -> ");
+            candidates = Math.min(candidates, step.estimate);
+        }
+
+        if (query.getSortKeys().isEmpty()) {
+            plan.append("ID order");
+        } else if (sortIndexFor(query) != null && walkIsCheaper(candidates, window(query.getOffset(), query.getLimit()))) {
+            plan.append("sort index by ").append(query.getSortKeys().get(0));
+        } else {
+            plan.append("top-k by ").append(query.getSortKeys());
+        }
+        plan.append(", offset ").append(query.getOffset()).append(", limit ").append(query.getLimit());
+
+        return plan.toString();
+    }
+
+    /**
+     * One predicate of the plan with its estimated number of matching tasks
+     */
+    private static class Step {
+        private final String name;
+        private final int estimate;
+        private final BitSet ids; //Known result for bitset predicates, null for text predicates
+        private final String text;
+        private final boolean title;
+
+        private Step(String name, BitSet ids) {
+            this.name = name;
+            this.estimate = ids.cardinality();
+            this.ids = ids;
+            this.text = null;
+            this.title = false;
+        }
+
+        private Step(String name, int estimate, String text, boolean title) {
+            this.name = name;
+            this.estimate = estimate;
+            this.ids = null;
+            this.text = text;
+            this.title = title;
+        }
+    }
+
+    /**
+     * Collects predicate steps ordered from the most to the least selective
+     */
+    private List<Step> plan(TaskQuery query) {
+        List<Step> steps = new ArrayList<>();
+
+        if (query.getPriorities() != null) {
+            BitSet ids = new BitSet();
+            for (Priority priority : query.getPriorities()) {
+                ids.or(secondaryIndex.withPriority(priority));
+            }
+            steps.add(new Step("priority " + query.getPriorities(), ids));
+        }
+
+        if (query.getDueFrom() != null || query.getDueTo() != null) {
+            BitSet ids;
+            if (query.getDueFrom() == null) {
+                ids = secondaryIndex.dueBefore(query.getDueTo());
+            } else if (query.getDueTo() == null) {
+                ids = secondaryIndex.dueFrom(query.getDueFrom());
+            } else {
+                ids = secondaryIndex.dueBetween(query.getDueFrom(), query.getDueTo());
+            }
+            steps.add(new Step("due date range", ids));
+        }
+
+        if (query.getCompleted() != null) {
+            steps.add(new Step(query.getCompleted() ? "completed" : "incomplete", secondaryIndex.withCompleted(query.getCompleted())));
+        }
+
+        if (query.getTitleText() != null) {
+            steps.add(new Step("title text", textIndex.estimateTitle(query.getTitleText()), query.getTitleText(), true));
+        }
+
+        if (query.getDescriptionText() != null) {
+            steps.add(new Step("description text", textIndex.estimateDescription(query.getDescriptionText()), query.getDescriptionText(), false));
+        }
+
+        steps.sort(Comparator.comparingInt(step -> step.estimate));
+        return steps;
+    }
+
+    /**
+     * Computes IDs matching all predicates, starting from the most selective one
+     */
+    private BitSet candidates(TaskQuery query) {
+        List<Step> steps = plan(query);
+        if (steps.isEmpty()) {
+            scannedRows += tasks.size();
+            return (BitSet) secondaryIndex.all().clone();
+        }
+
+        BitSet ids = null;
+        for (Step step : steps) {
+            if (ids == null) {
+                ids = step.ids != null ? (BitSet) step.ids.clone() : textMatches(step);
+                scannedRows += step.estimate;
+            } else if (step.ids != null) {
+                ids.and(step.ids);
+                scannedRows += step.estimate;
+            } else if (ids.cardinality() < step.estimate) {
+                //Fewer candidates than postings - check remaining candidates one by one
+                scannedRows += ids.cardinality();
+                ids = scan.filter(ids, step.title ? textIndex.titleMatcher(step.text) : textIndex.descriptionMatcher(step.text));
+            } else {
+                ids.and(textMatches(step));
+                scannedRows += step.estimate;
+            }
+
+            if (ids.isEmpty()) {
+                break; //Nothing left to intersect
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns the number of tasks and index entries read by all queries run so far, for metrics
+     * Bitset and posting list steps count their estimated size, per-candidate checks count the candidates
+     *
+     * @return the cumulative number of scanned rows
+     */
+    public long getScannedRows() {
+        return scannedRows;
+    }
+
+    private BitSet textMatches(Step step) {
+        return step.title ? textIndex.titleContains(step.text) : textIndex.descriptionContains(step.text);
+    }
+
+    /**
+     * Turns candidate IDs into tasks, applying sort keys, offset and limit
+     */
+    private List<Task> resolve(BitSet ids, List<TaskSort> sortKeys, int offset, int limit) {
+        Iterator<Task> lazy = lazyIterator(ids, sortKeys, offset, limit);
+        if (lazy == null) {
+            return sorted(ids, sortKeys, offset, limit);
+        }
+
+        List<Task> found = new ArrayList<>(Math.min(limit, ids.cardinality()));
+        lazy.forEachRemaining(found::add);
+        return found;
+    }
+
+    /**
+     * Returns iterator that resolves tasks one by one when the result can be read in order,
+     * null when the candidates have to be sorted first
+     */
+    private Iterator<Task> lazyIterator(BitSet ids, List<TaskSort> sortKeys, int offset, int limit) {
+        if (sortKeys.isEmpty()) {
+            return new TaskIterator(ids, null, offset, limit); //IDs come out of the bitset in order
+        }
+
+        SortIndex sortIndex = sortKeys.size() == 1 ? sortIndexes.get(sortKeys.get(0)) : null;
+        if (sortIndex != null && walkIsCheaper(ids.cardinality(), window(offset, limit))) {
+            return new TaskIterator(ids, sortIndex, offset, limit);
+        }
+
+        return null;
+    }
+
+    /**
+     * Sorts the candidates, only the top offset + limit tasks are kept when that is fewer
+     */
+    private List<Task> sorted(BitSet ids, List<TaskSort> sortKeys, int offset, int limit) {
+        int window = window(offset, limit);
+        List<Task> found = new ArrayList<>(Math.min(window, ids.cardinality()));
+        Comparator<Task> order = comparator(sortKeys);
+
+        if (window >= ids.cardinality()) {
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                found.add(index.get(id));
+            }
+            found.sort(order);
+        } else if (window > 0) {
+            //Top-k: heap keeps the window best tasks with the worst one on top
+            PriorityQueue<Task> best = new PriorityQueue<>(window, order.reversed());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                Task task = index.get(id);
+                if (best.size() < window) {
+                    best.add(task);
+                } else if (order.compare(task, best.peek()) < 0) {
+                    best.poll();
+                    best.add(task);
+                }
+            }
+
+            found.addAll(best);
+            found.sort(order);
+        }
+
+        return offset == 0 ? found : new ArrayList<>(found.subList(Math.min(offset, found.size()), found.size()));
+    }
+
+    /**
+     * Sorts tasks found by an index lookup in the given order
+     *
+     * @param ids the task IDs, not modified
+     * @param order the sort order
+     * @return the tasks in sort order
+     */
+    List<Task> resolve(BitSet ids, TaskSort order) {
+        return resolve(ids, List.of(order), 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns sort index that gives the query order, null if the query has several sort keys
+     */
+    private SortIndex sortIndexFor(TaskQuery query) {
+        return query.getSortKeys().size() == 1 ? sortIndexes.get(query.getSortKeys().get(0)) : null;
+    }
+
+    /**
+     * Compares reading the sort index until limit candidates are found with sorting the candidates
+     * The walk reads about limit * n / candidates keys, sorting costs about candidates * log(limit) comparisons
+     */
+    private boolean walkIsCheaper(int candidates, int limit) {
+        if (candidates == 0) {
+            return false;
+        }
+
+        long wanted = Math.min(candidates, limit);
+        long walked = Math.min(tasks.size(), wanted * tasks.size() / candidates);
+        long compared = (long) candidates * (64 - Long.numberOfLeadingZeros(wanted));
+        return walked <= compared;
+    }
+
+    /**
+     * Number of tasks up to the end of the page, without int overflow
+     */
+    private static int window(int offset, int limit) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    }
+
+    /**
+     * Resolves candidate IDs to tasks one by one, in ID order or in sort index order
+     * Tasks before the offset are skipped on IDs, so they are never decoded
+     */
+    private class TaskIterator implements Iterator<Task> {
+        private final BitSet ids;
+        private final SortIndex sortIndex; //Null for ID order
+        private int remaining;
+        private int nextId; //-1 at the end
+        private long[] keys = new long[0]; //Current page of the sort index
+        private int position;
+        private long cursor = SortIndex.FIRST;
+
+        private TaskIterator(BitSet ids, SortIndex sortIndex, int offset, int limit) {
+            this.ids = ids;
+            this.sortIndex = sortIndex;
+            this.remaining = limit;
+            this.nextId = findNext(-1);
+
+            for (int i = 0; i < offset && nextId >= 0; i++) {
+                nextId = findNext(nextId);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 && nextId >= 0;
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Task task = index.get(nextId);
+            remaining--;
+            nextId = remaining > 0 ? findNext(nextId) : -1;
+            return task;
+        }
+
+        private int findNext(int lastId) {
+            if (sortIndex == null) {
+                return ids.nextSetBit(lastId + 1);
+            }
+
+            while (true) {
+                if (position == keys.length) {
+                    keys = sortIndex.page(cursor, WALK_PAGE_SIZE);
+                    position = 0;
+                    if (keys.length == 0) {
+                        return -1;
+                    }
+                    cursor = keys[keys.length - 1];
+                }
+
+                int id = SortIndex.idOf(keys[position++]);
+                if (ids.get(id)) {
+                    return id;
+                }
+            }
+        }
+    }
+
+    private static Comparator<Task> comparator(List<TaskSort> sortKeys) {
+        Comparator<Task> order = sortKeys.get(0).comparator();
+        for (int i = 1; i < sortKeys.size(); i++) {
+            order = order.thenComparing(sortKeys.get(i).comparator());
+        }
+
+        return order.thenComparing(TaskSort.ID.comparator());
+    }
+}
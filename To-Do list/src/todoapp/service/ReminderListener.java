@@ -0,0 +1,27 @@
+package todoapp.service;
+
+import java.time.LocalDate;
+
+/**
+ * Receives deadline events from ReminderScheduler
+ * Called on the scheduler thread when a day begins, or on the thread that changed a task due today
+ * Must not call back into a TaskManager that is not thread-safe, tasks are identified by ID only
+ */
+public interface ReminderListener {
+
+    /**
+     * Called on the due date of an incomplete task
+     *
+     * @param id the task ID
+     * @param dueDate the due date, today
+     */
+    void taskDue(int id, LocalDate dueDate);
+
+    /**
+     * Called on the day after the due date of a task that is still incomplete
+     *
+     * @param id the task ID
+     * @param dueDate the missed due date
+     */
+    void taskOverdue(int id, LocalDate dueDate);
+}
@@ -0,0 +1,450 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports incomplete tasks on the day they become due and on the day they become overdue
+ *
+ * Deadlines are kept in a hierarchical timer wheel that ticks once per day: level 0 has a slot for each of
+ * the next 64 days, level 1 for each of the next 64 blocks of 64 days, level 2 for blocks of 4096 days,
+ * later deadlines wait in an overflow list. When a block of a higher level begins, its slot is moved one level
+ * down, then the level 0 slot of the day fires. Scheduling and cancelling are O(1) and a deadline is moved
+ * at most once per level, so ticks cost O(1) amortized however many deadlines are pending
+ *
+ * Kept in sync as a TaskManager listener: adds, removals, due date and completion changes update single deadlines
+ * Deadlines that passed before a task was scheduled are not reported, deadlines of the current day are reported at once
+ * Each deadline is reported once, also when a reset or renumbering of the list schedules its task again the same day
+ * All methods are thread-safe, reminder listeners are called without holding the scheduler lock
+ */
+public class ReminderScheduler implements TaskListener, AutoCloseable {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 3;
+    private static final int OVERFLOW = LEVELS; //Level number of the overflow list
+    private static final long TICK_SECONDS = 60; //Day change is noticed within a minute, also after clock changes
+
+    private final Clock clock;
+    private final List<ReminderListener> listeners = new CopyOnWriteArrayList<>();
+    private final Deadline[][] wheel = new Deadline[LEVELS][SLOTS]; //Heads of doubly linked deadline lists
+    private Deadline overflow; //Deadlines beyond the last level
+    private final Map<Integer, Deadline> deadlines = new HashMap<>(); //Pending deadline of every scheduled task
+    private BitSet reportedDue = new BitSet(); //IDs reported due today, with today as due day
+    private BitSet reportedOverdue = new BitSet(); //IDs reported overdue today, with yesterday as due day
+    private long today; //Epoch day of the last tick
+    private ScheduledExecutorService timer;
+
+    /**
+     * Next deadline of one task, linked into a wheel slot
+     */
+    private static final class Deadline {
+        private final int id;
+        private final long dueDay;
+        private boolean overdue; //False while waiting for the due day, true while waiting for the day after it
+        private int level;
+        private int slot;
+        private Deadline previous;
+        private Deadline next;
+
+        Deadline(int id, long dueDay) {
+            this.id = id;
+            this.dueDay = dueDay;
+        }
+
+        long day() {
+            return overdue ? dueDay + 1 : dueDay;
+        }
+    }
+
+    /**
+     * Reported deadline, delivered after the scheduler lock is released
+     */
+    private static final class Reminder {
+        private final int id;
+        private final long dueDay;
+        private final boolean overdue;
+
+        Reminder(Deadline deadline) {
+            this.id = deadline.id;
+            this.dueDay = deadline.dueDay;
+            this.overdue = deadline.overdue;
+        }
+    }
+
+    /**
+     * Creates scheduler for the system clock, the timer is started separately
+     */
+    public ReminderScheduler() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates scheduler for the given clock, days change at midnight of the clock's time zone
+     *
+     * @param clock the clock that decides the current day
+     */
+    public ReminderScheduler(Clock clock) {
+        this.clock = clock;
+        this.today = LocalDate.now(clock).toEpochDay();
+    }
+
+    public void addListener(ReminderListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ReminderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts the background timer that moves the wheel to the current day, does nothing if already started
+     */
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void tick() {
+        try {
+            advanceTo(LocalDate.now(clock));
+        } catch (RuntimeException e) {
+            //Thrown by a listener, the timer must keep running
+            System.out.println("Error in task reminder: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the wheel day by day up to the given date and reports the deadlines of those days
+     * Called by the timer, a date before the current day is ignored
+     *
+     * @param date the new current day
+     */
+    public void advanceTo(LocalDate date) {
+        List<Reminder> reminders = new ArrayList<>();
+        synchronized (this) {
+            long target = date.toEpochDay();
+            if (deadlines.isEmpty()) {
+                today = Math.max(today, target); //Nothing to move
+            }
+
+            while (today < target) {
+                today++;
+                reportedDue.clear();
+                reportedOverdue.clear();
+                cascade();
+                fire(reminders);
+            }
+        }
+
+        deliver(reminders);
+    }
+
+    /**
+     * Schedules the deadlines of all incomplete tasks, e.g. of a task list just loaded
+     * Deadlines of the current day are reported before this returns
+     * Records of a LazyTaskList are scheduled without decoding them
+     *
+     * @param tasks the tasks to schedule, replacing their pending deadlines
+     */
+    public void scheduleAll(List<Task> tasks) {
+        List<Reminder> reminders = new ArrayList<>();
+        synchronized (this) {
+            scheduleList(tasks, reminders);
+        }
+
+        deliver(reminders);
+    }
+
+    /**
+     * Returns the number of tasks waiting for a deadline
+     *
+     * @return the pending task count
+     */
+    public synchronized int getPendingCount() {
+        return deadlines.size();
+    }
+
+    /**
+     * Stops the timer, pending deadlines are kept
+     */
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        if (!task.isCompleted()) {
+            reschedule(task.getId(), task.getDueDate());
+        }
+    }
+
+    @Override
+    public synchronized void taskRemoved(Task task) {
+        cancel(task.getId());
+        reportedDue.clear(task.getId()); //The ID may be given to a new task, e.g. after a rollback restored the ID counter
+        reportedOverdue.clear(task.getId());
+    }
+
+    @Override
+    public void taskUpdated(Task task, TaskField field, Object oldValue) {
+        if (field != TaskField.DUE_DATE && field != TaskField.COMPLETED) {
+            return;
+        }
+
+        if (task.isCompleted()) {
+            synchronized (this) {
+                cancel(task.getId());
+            }
+        } else {
+            reschedule(task.getId(), task.getDueDate());
+        }
+    }
+
+    @Override
+    public void tasksReset(List<Task> tasks) {
+        reset(tasks, null);
+    }
+
+    @Override
+    public void tasksRenumbered(List<Task> tasks, int[] oldIds) {
+        reset(tasks, oldIds);
+    }
+
+    /**
+     * Schedules the list again, reminders reported today stay reported for tasks still in the list
+     *
+     * @param oldIds the previous ID of each task by list position, null if the IDs did not change
+     */
+    private void reset(List<Task> tasks, int[] oldIds) {
+        List<Reminder> reminders = new ArrayList<>();
+        synchronized (this) {
+            deadlines.clear();
+            for (Deadline[] level : wheel) {
+                Arrays.fill(level, null);
+            }
+            overflow = null;
+            reportedDue = renumber(reportedDue, tasks, oldIds);
+            reportedOverdue = renumber(reportedOverdue, tasks, oldIds);
+
+            scheduleList(tasks, reminders);
+        }
+
+        deliver(reminders);
+    }
+
+    /**
+     * Moves reported IDs to the current IDs of their tasks, IDs of tasks no longer in the list are dropped
+     */
+    private static BitSet renumber(BitSet reported, List<Task> tasks, int[] oldIds) {
+        BitSet renumbered = new BitSet();
+        if (reported.isEmpty()) {
+            return renumbered;
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            int id = LazyTaskList.peekId(tasks, i);
+            int oldId = oldIds != null ? oldIds[i] : id;
+            if (oldId > 0 && reported.get(oldId)) {
+                renumbered.set(id);
+            }
+        }
+        return renumbered;
+    }
+
+    private void scheduleList(List<Task> tasks, List<Reminder> reminders) {
+        if (tasks instanceof LazyTaskList lazy) {
+            for (int i = 0; i < lazy.size(); i++) {
+                //Fixed-size record fields are read without decoding title and description
+                if (!lazy.completedAt(i)) {
+                    schedule(lazy.idAt(i), lazy.dueDateAt(i).toEpochDay(), reminders);
+                }
+            }
+        } else {
+            for (Task task : tasks) {
+                if (!task.isCompleted()) {
+                    schedule(task.getId(), task.getDueDate().toEpochDay(), reminders);
+                }
+            }
+        }
+    }
+
+    private void reschedule(int id, LocalDate dueDate) {
+        List<Reminder> reminders = new ArrayList<>(1);
+        synchronized (this) {
+            schedule(id, dueDate.toEpochDay(), reminders);
+        }
+        deliver(reminders);
+    }
+
+    /**
+     * Replaces the pending deadline of a task, passed deadlines are skipped
+     * A deadline of today is reported unless it was already reported today
+     */
+    private void schedule(int id, long dueDay, List<Reminder> reminders) {
+        cancel(id);
+        if (dueDay + 1 < today) {
+            return; //Already overdue before today
+        }
+
+        Deadline deadline = new Deadline(id, dueDay);
+        deadline.overdue = dueDay < today;
+        if (deadline.day() == today) {
+            report(deadline, reminders);
+            if (deadline.overdue) {
+                return; //Nothing left to report
+            }
+            deadline.overdue = true;
+        }
+
+        deadlines.put(id, deadline);
+        insert(deadline);
+    }
+
+    private void cancel(int id) {
+        Deadline deadline = deadlines.remove(id);
+        if (deadline != null) {
+            unlink(deadline);
+        }
+    }
+
+    /**
+     * Moves down the slots of all levels whose block begins today, highest level first
+     */
+    private void cascade() {
+        if (today % (1L << (SLOT_BITS * LEVELS)) == 0) {
+            Deadline list = overflow;
+            overflow = null;
+            reinsert(list);
+        }
+
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            if (today % (1L << (SLOT_BITS * level)) == 0) {
+                int slot = slotOf(today, level);
+                Deadline list = wheel[level][slot];
+                wheel[level][slot] = null;
+                reinsert(list);
+            }
+        }
+    }
+
+    private void reinsert(Deadline list) {
+        while (list != null) {
+            Deadline next = list.next;
+            insert(list);
+            list = next;
+        }
+    }
+
+    /**
+     * Reports all deadlines of today, due tasks wait for tomorrow to become overdue
+     */
+    private void fire(List<Reminder> reminders) {
+        int slot = slotOf(today, 0);
+        Deadline list = wheel[0][slot];
+        wheel[0][slot] = null;
+
+        while (list != null) {
+            Deadline next = list.next;
+            report(list, reminders);
+            if (list.overdue) {
+                deadlines.remove(list.id);
+            } else {
+                list.overdue = true;
+                insert(list);
+            }
+            list = next;
+        }
+    }
+
+    /**
+     * Adds reminder for a deadline of today, once per task, due day and kind
+     */
+    private void report(Deadline deadline, List<Reminder> reminders) {
+        BitSet reported = deadline.overdue ? reportedOverdue : reportedDue;
+        if (!reported.get(deadline.id)) {
+            reported.set(deadline.id);
+            reminders.add(new Reminder(deadline));
+        }
+    }
+
+    /**
+     * Links deadline into the lowest level whose range covers it, deadlines of today go to the slot fired next
+     */
+    private void insert(Deadline deadline) {
+        long delta = deadline.day() - today;
+        int level = 0;
+        while (level < LEVELS && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+
+        deadline.level = level;
+        deadline.previous = null;
+        if (level == OVERFLOW) {
+            deadline.next = overflow;
+            overflow = deadline;
+        } else {
+            deadline.slot = slotOf(deadline.day(), level);
+            deadline.next = wheel[level][deadline.slot];
+            wheel[level][deadline.slot] = deadline;
+        }
+
+        if (deadline.next != null) {
+            deadline.next.previous = deadline;
+        }
+    }
+
+    private void unlink(Deadline deadline) {
+        if (deadline.previous != null) {
+            deadline.previous.next = deadline.next;
+        } else if (deadline.level == OVERFLOW) {
+            overflow = deadline.next;
+        } else {
+            wheel[deadline.level][deadline.slot] = deadline.next;
+        }
+
+        if (deadline.next != null) {
+            deadline.next.previous = deadline.previous;
+        }
+    }
+
+    private static int slotOf(long day, int level) {
+        return (int) ((day >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+
+    private void deliver(List<Reminder> reminders) {
+        for (Reminder reminder : reminders) {
+            LocalDate dueDate = LocalDate.ofEpochDay(reminder.dueDay);
+            for (ReminderListener listener : listeners) {
+                if (reminder.overdue) {
+                    listener.taskOverdue(reminder.id, dueDate);
+                } else {
+                    listener.taskDue(reminder.id, dueDate);
+                }
+            }
+        }
+    }
+}
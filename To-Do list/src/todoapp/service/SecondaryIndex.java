@@ -0,0 +1,239 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over priority, completion status and due date
+ * Each index is a bitset of task IDs, due dates are kept in a sorted map for range queries
+ * Built on first query and then maintained incrementally from TaskManager changes
+ */
+public class SecondaryIndex implements TaskListener {
+    private final List<Task> tasks;
+    private final BitSet all = new BitSet(); //IDs of all tasks
+    private final BitSet completed = new BitSet();
+    private final EnumMap<Priority, BitSet> byPriority = new EnumMap<>(Priority.class);
+    private final NavigableMap<LocalDate, BitSet> byDueDate = new TreeMap<>();
+    private boolean built; //Changes before the first query are picked up by the build
+
+    public SecondaryIndex(List<Task> tasks) {
+        this.tasks = tasks;
+
+        for (Priority priority : Priority.values()) {
+            byPriority.put(priority, new BitSet());
+        }
+    }
+
+    /**
+     * Returns IDs of all tasks
+     * Returned bitset belongs to the index and must not be modified
+     *
+     * @return IDs of all indexed tasks
+     */
+    public BitSet all() {
+        ensureBuilt();
+        return all;
+    }
+
+    /**
+     * Returns IDs of tasks with the given priority
+     * Returned bitset belongs to the index and must not be modified
+     *
+     * @param priority the priority to look up
+     * @return IDs of matching tasks
+     */
+    public BitSet withPriority(Priority priority) {
+        ensureBuilt();
+        return byPriority.get(priority);
+    }
+
+    /**
+     * Returns IDs of tasks due on the given date
+     * Returned bitset belongs to the index and must not be modified
+     *
+     * @param date the due date
+     * @return IDs of matching tasks
+     */
+    public BitSet dueOn(LocalDate date) {
+        ensureBuilt();
+        BitSet ids = byDueDate.get(date);
+        return ids != null ? ids : new BitSet();
+    }
+
+    /**
+     * Returns IDs of tasks due in the given date range
+     *
+     * @param from the first date, inclusive
+     * @param to the last date, exclusive
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet dueBetween(LocalDate from, LocalDate to) {
+        ensureBuilt();
+        BitSet ids = new BitSet();
+        if (from.isBefore(to)) {
+            for (BitSet dateIds : byDueDate.subMap(from, true, to, false).values()) {
+                ids.or(dateIds);
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns IDs of tasks due on or after the given date
+     *
+     * @param date the first date, inclusive
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet dueFrom(LocalDate date) {
+        ensureBuilt();
+        BitSet ids = new BitSet();
+        for (BitSet dateIds : byDueDate.tailMap(date, true).values()) {
+            ids.or(dateIds);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns IDs of tasks due before the given date
+     *
+     * @param date the first date that is not included
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet dueBefore(LocalDate date) {
+        ensureBuilt();
+        BitSet ids = new BitSet();
+        for (BitSet dateIds : byDueDate.headMap(date, false).values()) {
+            ids.or(dateIds);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns IDs of completed or incomplete tasks
+     *
+     * @param isCompleted true for completed tasks, false for incomplete ones
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet withCompleted(boolean isCompleted) {
+        ensureBuilt();
+        BitSet ids = (BitSet) all.clone();
+        if (isCompleted) {
+            ids.and(completed);
+        } else {
+            ids.andNot(completed);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns IDs of incomplete tasks due before the given day
+     * Range query over the date index intersected with the incomplete set
+     *
+     * @param today the current date
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet overdue(LocalDate today) {
+        BitSet ids = dueBefore(today);
+        ids.andNot(completed);
+        return ids;
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        if (built) {
+            add(task.getId(), task.getPriority(), task.getDueDate(), task.isCompleted());
+        }
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        if (built) {
+            int id = task.getId();
+            all.clear(id);
+            completed.clear(id);
+            byPriority.get(task.getPriority()).clear(id);
+            removeDate(task.getDueDate(), id);
+        }
+    }
+
+    @Override
+    public void taskUpdated(Task task, TaskField field, Object oldValue) {
+        if (!built) {
+            return;
+        }
+
+        int id = task.getId();
+        switch (field) {
+            case PRIORITY -> {
+                byPriority.get((Priority) oldValue).clear(id);
+                byPriority.get(task.getPriority()).set(id);
+            }
+            case DUE_DATE -> {
+                removeDate((LocalDate) oldValue, id);
+                byDueDate.computeIfAbsent(task.getDueDate(), date -> new BitSet()).set(id);
+            }
+            case COMPLETED -> completed.set(id, task.isCompleted());
+            default -> {
+                //Title and description are not indexed here
+            }
+        }
+    }
+
+    @Override
+    public void tasksReset(List<Task> tasks) {
+        built = false; //IDs changed - rebuild on next query
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+
+        all.clear();
+        completed.clear();
+        byPriority.values().forEach(BitSet::clear);
+        byDueDate.clear();
+
+        if (tasks instanceof LazyTaskList lazy) {
+            lazy.getStore().verifyAll(); //Every record is read, check all blocks in parallel first
+            for (int i = 0; i < lazy.size(); i++) {
+                //Fixed-size record fields are read without decoding title and description
+                add(lazy.idAt(i), lazy.priorityAt(i), lazy.dueDateAt(i), lazy.completedAt(i));
+            }
+        } else {
+            for (Task task : tasks) {
+                add(task.getId(), task.getPriority(), task.getDueDate(), task.isCompleted());
+            }
+        }
+
+        built = true;
+    }
+
+    private void add(int id, Priority priority, LocalDate dueDate, boolean isCompleted) {
+        all.set(id);
+        completed.set(id, isCompleted);
+        byPriority.get(priority).set(id);
+        byDueDate.computeIfAbsent(dueDate, date -> new BitSet()).set(id);
+    }
+
+    private void removeDate(LocalDate date, int id) {
+        BitSet ids = byDueDate.get(date);
+        if (ids != null) {
+            ids.clear(id);
+            if (ids.isEmpty()) {
+                byDueDate.remove(date);
+            }
+        }
+    }
+}
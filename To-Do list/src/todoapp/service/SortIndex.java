@@ -0,0 +1,261 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Task IDs kept in one sort order, so sorted views never sort the list
+ * Every task is one long key - sort key in the high half, task ID in the low half -
+ * so tasks with equal sort keys stay in ID order and every key is unique
+ *
+ * Keys are stored in a two-level B+tree: sorted leaves of up to LEAF_SIZE keys and a directory of leaves
+ * Insert, update and removal search the directory and one leaf and move at most one leaf, O(log n)
+ * Built on first use and then maintained incrementally from TaskManager changes
+ */
+public class SortIndex implements TaskListener {
+    public static final long FIRST = Long.MIN_VALUE; //Cursor of the first page, smaller than any key
+
+    private static final int LEAF_SIZE = 512; //Keys per leaf, a full leaf is split in two
+    private static final int BUILD_FILL = LEAF_SIZE * 3 / 4; //Room for inserts after a build
+
+    private final List<Task> tasks;
+    private final TaskSort order;
+    private final List<long[]> leaves = new ArrayList<>();
+    private int[] leafSizes = new int[16];
+    private int size;
+    private boolean built; //Changes before the first use are picked up by the build
+
+    public SortIndex(List<Task> tasks, TaskSort order) {
+        this.tasks = tasks;
+        this.order = order;
+    }
+
+    /**
+     * Packs sort key and task ID into one index key
+     *
+     * @param order the sort order
+     * @param id the task ID
+     * @param dueDate the task due date
+     * @param priority the task priority
+     * @return the index key
+     */
+    public static long key(TaskSort order, int id, LocalDate dueDate, Priority priority) {
+        return (long) order.sortKey(dueDate, priority) << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the task ID stored in an index key
+     *
+     * @param key the index key
+     * @return the task ID
+     */
+    public static int idOf(long key) {
+        return (int) key;
+    }
+
+    public TaskSort getOrder() {
+        return order;
+    }
+
+    public int size() {
+        ensureBuilt();
+        return size;
+    }
+
+    /**
+     * Returns keys of the tasks following the cursor in sort order
+     * Cursor is a key, so pages stay consistent while tasks before it are added or removed
+     *
+     * @param cursor the last key of the previous page, FIRST for the first page
+     * @param limit the maximum number of keys
+     * @return the keys, fewer than limit at the end of the order
+     */
+    public long[] page(long cursor, int limit) {
+        ensureBuilt();
+        long[] keys = new long[Math.min(limit, size)];
+        int count = 0;
+
+        int leaf = leafOf(cursor);
+        if (leaf < 0) {
+            return keys;
+        }
+
+        int position = positionAfter(leaves.get(leaf), leafSizes[leaf], cursor);
+        while (count < keys.length && leaf < leaves.size()) {
+            int length = Math.min(leafSizes[leaf] - position, keys.length - count);
+            System.arraycopy(leaves.get(leaf), position, keys, count, length);
+            count += length;
+            leaf++;
+            position = 0;
+        }
+
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        if (built) {
+            insert(key(order, task.getId(), task.getDueDate(), task.getPriority()));
+        }
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        if (built) {
+            delete(key(order, task.getId(), task.getDueDate(), task.getPriority()));
+        }
+    }
+
+    @Override
+    public void taskUpdated(Task task, TaskField field, Object oldValue) {
+        if (!built) {
+            return;
+        }
+
+        int id = task.getId();
+        if (field == TaskField.DUE_DATE && order == TaskSort.DUE_DATE) {
+            delete(key(order, id, (LocalDate) oldValue, task.getPriority()));
+            insert(key(order, id, task.getDueDate(), task.getPriority()));
+        } else if (field == TaskField.PRIORITY && order == TaskSort.PRIORITY) {
+            delete(key(order, id, task.getDueDate(), (Priority) oldValue));
+            insert(key(order, id, task.getDueDate(), task.getPriority()));
+        }
+    }
+
+    @Override
+    public void tasksReset(List<Task> tasks) {
+        built = false; //IDs changed - rebuild on next use
+        leaves.clear();
+        size = 0;
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+
+        long[] keys = new long[tasks.size()];
+        if (tasks instanceof LazyTaskList lazy) {
+            lazy.getStore().verifyAll(); //Every record is read, check all blocks in parallel first
+            for (int i = 0; i < keys.length; i++) {
+                //Fixed-size record fields are read without decoding title and description
+                keys[i] = key(order, lazy.idAt(i), lazy.dueDateAt(i), lazy.priorityAt(i));
+            }
+        } else {
+            for (int i = 0; i < keys.length; i++) {
+                Task task = tasks.get(i);
+                keys[i] = key(order, task.getId(), task.getDueDate(), task.getPriority());
+            }
+        }
+        Arrays.parallelSort(keys); //Primitive sort, no comparator calls, split across cores for large lists
+
+        leaves.clear();
+        leafSizes = new int[Math.max(16, keys.length / BUILD_FILL + 1)];
+        for (int from = 0; from < keys.length; from += BUILD_FILL) {
+            int length = Math.min(BUILD_FILL, keys.length - from);
+            long[] leaf = new long[LEAF_SIZE];
+            System.arraycopy(keys, from, leaf, 0, length);
+            leafSizes[leaves.size()] = length;
+            leaves.add(leaf);
+        }
+
+        size = keys.length;
+        built = true;
+    }
+
+    private void insert(long key) {
+        if (leaves.isEmpty()) {
+            leaves.add(new long[LEAF_SIZE]);
+            leafSizes[0] = 0;
+        }
+
+        int leaf = Math.max(0, leafOf(key));
+        long[] keys = leaves.get(leaf);
+        int position = positionAfter(keys, leafSizes[leaf], key);
+        System.arraycopy(keys, position, keys, position + 1, leafSizes[leaf] - position);
+        keys[position] = key;
+        leafSizes[leaf]++;
+        size++;
+
+        if (leafSizes[leaf] == LEAF_SIZE) {
+            split(leaf);
+        }
+    }
+
+    private void delete(long key) {
+        int leaf = leafOf(key);
+        if (leaf < 0) {
+            return;
+        }
+
+        long[] keys = leaves.get(leaf);
+        int position = Arrays.binarySearch(keys, 0, leafSizes[leaf], key);
+        if (position < 0) {
+            return;
+        }
+
+        System.arraycopy(keys, position + 1, keys, position, leafSizes[leaf] - position - 1);
+        leafSizes[leaf]--;
+        size--;
+
+        if (leafSizes[leaf] == 0) {
+            leaves.remove(leaf);
+            System.arraycopy(leafSizes, leaf + 1, leafSizes, leaf, leaves.size() - leaf);
+        }
+    }
+
+    /**
+     * Moves the upper half of a full leaf into a new leaf after it
+     */
+    private void split(int leaf) {
+        long[] keys = leaves.get(leaf);
+        long[] upper = new long[LEAF_SIZE];
+        int half = LEAF_SIZE / 2;
+        System.arraycopy(keys, half, upper, 0, LEAF_SIZE - half);
+
+        if (leaves.size() == leafSizes.length) {
+            leafSizes = Arrays.copyOf(leafSizes, leafSizes.length * 2);
+        }
+        leaves.add(leaf + 1, upper);
+        System.arraycopy(leafSizes, leaf + 1, leafSizes, leaf + 2, leaves.size() - leaf - 2);
+        leafSizes[leaf] = half;
+        leafSizes[leaf + 1] = LEAF_SIZE - half;
+    }
+
+    /**
+     * Finds the last leaf whose first key is not greater than the key, binary search over the directory
+     *
+     * @return the leaf number, 0 for keys before the first leaf, -1 if the index is empty
+     */
+    private int leafOf(long key) {
+        int low = 0;
+        int high = leaves.size() - 1;
+        if (high < 0) {
+            return -1;
+        }
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (leaves.get(middle)[0] <= key) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns position of the first key greater than the given one
+     */
+    private static int positionAfter(long[] keys, int length, long key) {
+        int position = Arrays.binarySearch(keys, 0, length, key);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+}
@@ -0,0 +1,61 @@
+package todoapp.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Group of TaskManager changes saved together, returned by TaskManager.beginBatch
+ * Changes made through the manager while the batch is open are visible right away,
+ * but reach the journal only on commit - as one record, so a crash keeps all of them or none
+ * Closing a batch that was not committed rolls its changes back
+ */
+public class TaskBatch implements AutoCloseable {
+    private final TaskManager manager;
+    private boolean open = true;
+
+    TaskBatch(TaskManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Writes all changes of the batch with a single journal write
+     *
+     * @return future completed when the batch is written (and on disk unless durability is NONE)
+     * @throws IllegalStateException if the batch was already committed or rolled back
+     */
+    public CompletableFuture<Void> commit() {
+        checkOpen();
+        open = false;
+        return manager.commitBatch();
+    }
+
+    /**
+     * Undoes all changes of the batch, nothing of it is written
+     *
+     * @throws IllegalStateException if the batch was already committed or rolled back
+     */
+    public void rollback() {
+        checkOpen();
+        open = false;
+        manager.rollbackBatch();
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Rolls the batch back unless it was committed
+     */
+    @Override
+    public void close() {
+        if (open) {
+            rollback();
+        }
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("Batch is already closed");
+        }
+    }
+}
@@ -0,0 +1,654 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact versioned binary format for the task snapshot file
+ *
+ * Header: magic (int), version (short), flags (short, bits 0-2 = view order ordinal + 1), journal sequence (long), task count (int),
+ * next task ID (int, version 3)
+ * Task record: id (int), due date as epoch day (int), priority (byte), flags (byte, bit 0 = completed),
+ * title and description as length-prefixed UTF-8 (int length + bytes)
+ * Record index (version 2): one fixed-size entry per record - id (int), file offset (long) - followed by index magic (int)
+ * Checksum trailer (version 4): CRC32C of every 64KB block before the trailer (int each), block size (int),
+ * block count (int), CRC32C of the trailer fields before it (int), checksum magic (int)
+ */
+public final class TaskCodec {
+    public static final int MAGIC = 0x54444C53; //"TDLS"
+    public static final short VERSION = 4;
+    public static final int HEADER_SIZE = 4 + 2 + 2 + 8 + 4 + 4;
+    public static final int RECORD_FIXED_SIZE = 4 + 4 + 1 + 1 + 4 + 4; //Record size without string bytes
+    public static final int INDEX_MAGIC = 0x54444C49; //"TDLI"
+    public static final int INDEX_ENTRY_SIZE = 4 + 8;
+    public static final int CHECKSUM_MAGIC = 0x54444C43; //"TDLC"
+    public static final int CHECKSUM_BLOCK_SIZE = 64 * 1024;
+    public static final int CHECKSUM_FOOTER_SIZE = 4 + 4 + 4 + 4; //Block size, block count, trailer CRC, magic
+
+    private static final int COMPLETED_FLAG = 1;
+    private static final int VIEW_ORDER_MASK = 7; //Header flags bits of the view order
+    private static final TaskSort[] SORTS = TaskSort.values();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private TaskCodec() {
+    }
+
+    /**
+     * Checks if the file starts like a Java serialization stream (0xACED)
+     * Such files were written before the binary format and have to be migrated
+     *
+     * @param firstBytes the first bytes of the file
+     * @return true if the bytes belong to an ObjectOutputStream file
+     */
+    public static boolean isJavaSerialized(byte[] firstBytes) {
+        return firstBytes.length >= 2 && (firstBytes[0] & 0xFF) == 0xAC && (firstBytes[1] & 0xFF) == 0xED;
+    }
+
+    /**
+     * Returns header length of the given file version
+     *
+     * @param version the file version
+     * @return the header length in bytes
+     */
+    public static int headerSize(int version) {
+        return version >= 3 ? HEADER_SIZE : HEADER_SIZE - 4; //Older versions have no next ID field
+    }
+
+    /**
+     * Decodes the task record starting at the given absolute offset
+     * Used by MappedTaskStore to decode records straight from the mapped file
+     *
+     * @param buffer the buffer holding the whole file
+     * @param offset the record start offset
+     * @return the decoded task
+     * @throws IllegalStateException if the record does not fit into the buffer
+     */
+    public static Task decode(ByteBuffer buffer, int offset) {
+        int titleLength = stringLength(buffer, offset + RECORD_FIXED_SIZE - 8);
+        int descriptionOffset = offset + RECORD_FIXED_SIZE - 4 + titleLength;
+        int descriptionLength = stringLength(buffer, descriptionOffset);
+
+        byte[] title = new byte[titleLength];
+        byte[] description = new byte[descriptionLength];
+        buffer.get(offset + RECORD_FIXED_SIZE - 4, title);
+        buffer.get(descriptionOffset + 4, description);
+
+        int priority = buffer.get(offset + 8);
+        if (priority < 0 || priority >= PRIORITIES.length) {
+            throw new IllegalStateException("Unknown priority: " + priority);
+        }
+
+        return newTask(buffer.getInt(offset), buffer.getInt(offset + 4), PRIORITIES[priority], buffer.get(offset + 9),
+                new String(title, StandardCharsets.UTF_8), new String(description, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the encoded size of the record starting at the given absolute offset
+     *
+     * @param buffer the buffer holding the whole file
+     * @param offset the record start offset
+     * @return the record length in bytes
+     */
+    public static int recordSize(ByteBuffer buffer, int offset) {
+        int titleLength = stringLength(buffer, offset + RECORD_FIXED_SIZE - 8);
+        int descriptionLength = stringLength(buffer, offset + RECORD_FIXED_SIZE - 4 + titleLength);
+        return RECORD_FIXED_SIZE + titleLength + descriptionLength;
+    }
+
+    private static int stringLength(ByteBuffer buffer, int lengthOffset) {
+        int length = buffer.getInt(lengthOffset);
+        if (length < 0 || length > buffer.limit() - lengthOffset - 4) {
+            throw new IllegalStateException("Corrupted task record at offset " + lengthOffset);
+        }
+
+        return length;
+    }
+
+    /**
+     * Encodes the display order into header flags
+     *
+     * @param viewOrder the order, null for list order
+     * @return the header flags
+     */
+    public static short headerFlags(TaskSort viewOrder) {
+        return (short) (viewOrder != null ? viewOrder.ordinal() + 1 : 0);
+    }
+
+    /**
+     * Decodes the display order from header flags, files written before it was stored have 0
+     *
+     * @param flags the header flags
+     * @return the order, null for list order or unknown values
+     */
+    public static TaskSort viewOrder(int flags) {
+        int order = (flags & VIEW_ORDER_MASK) - 1;
+        return order >= 0 && order < SORTS.length ? SORTS[order] : null;
+    }
+
+    /**
+     * Checks the completed bit of a record flags byte
+     *
+     * @param flags the record flags
+     * @return true if the task is completed
+     */
+    public static boolean isCompleted(int flags) {
+        return (flags & COMPLETED_FLAG) != 0;
+    }
+
+    /**
+     * Writes one task record at the buffer position
+     *
+     * @param buffer the target buffer with at least RECORD_FIXED_SIZE + string bytes remaining
+     * @param task the task to encode
+     * @param title the title as UTF-8
+     * @param description the description as UTF-8
+     */
+    public static void encode(ByteBuffer buffer, Task task, byte[] title, byte[] description) {
+        buffer.putInt(task.getId())
+                .putInt(Math.toIntExact(task.getDueDate().toEpochDay()))
+                .put((byte) task.getPriority().ordinal())
+                .put((byte) (task.isCompleted() ? COMPLETED_FLAG : 0))
+                .putInt(title.length)
+                .put(title)
+                .putInt(description.length)
+                .put(description);
+    }
+
+    /**
+     * Returns flags byte with the completed bit set or cleared
+     *
+     * @param flags the record flags
+     * @param completed the new completed status
+     * @return the changed flags
+     */
+    public static byte withCompleted(int flags, boolean completed) {
+        return (byte) (completed ? flags | COMPLETED_FLAG : flags & ~COMPLETED_FLAG);
+    }
+
+    private static Task newTask(int id, int epochDay, Priority priority, int flags, String title, String description) {
+        Task task = new Task(title, description, LocalDate.ofEpochDay(epochDay), priority);
+        task.setId(id);
+        task.setCompleted((flags & COMPLETED_FLAG) != 0);
+        return task;
+    }
+
+    /**
+     * Buffered writer of the snapshot header, task records and record index over an NIO channel
+     */
+    public static class Writer implements Closeable {
+        private final WritableByteChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long flushed; //Bytes already written to the channel
+        private int[] ids = new int[16]; //Record index collected while writing
+        private long[] offsets = new long[16];
+        private int records;
+        private final CRC32C crc = new CRC32C(); //Checksum of the current block
+        private int blockFill; //Bytes of the current block already checksummed
+        private int[] checksums = new int[16];
+        private int blocks;
+        private boolean checksumming = true; //Turned off for the trailer itself
+
+        public Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        public void writeHeader(long sequence, int count, int nextId) throws IOException {
+            writeHeader(sequence, count, nextId, (short) 0);
+        }
+
+        public void writeHeader(long sequence, int count, int nextId, short flags) throws IOException {
+            ensure(HEADER_SIZE);
+            buffer.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort(flags)
+                    .putLong(sequence)
+                    .putInt(count)
+                    .putInt(nextId);
+        }
+
+        public void write(Task task) throws IOException {
+            byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+            byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+
+            ensure(RECORD_FIXED_SIZE + title.length + description.length);
+            addIndexEntry(task.getId());
+            encode(buffer, task, title, description);
+        }
+
+        /**
+         * Copies an already encoded record without decoding it
+         *
+         * @param id the task ID stored in the record
+         * @param record the encoded record, from position to limit
+         */
+        public void writeRaw(int id, ByteBuffer record) throws IOException {
+            ensure(record.remaining());
+            addIndexEntry(id);
+            buffer.put(record);
+        }
+
+        private void addIndexEntry(int id) {
+            if (records == ids.length) {
+                ids = Arrays.copyOf(ids, records * 2);
+                offsets = Arrays.copyOf(offsets, records * 2);
+            }
+
+            ids[records] = id;
+            offsets[records] = flushed + buffer.position();
+            records++;
+        }
+
+        /**
+         * Writes the fixed-size record index after the last record
+         * Must be called once, after all records were written
+         */
+        public void writeIndex() throws IOException {
+            for (int i = 0; i < records; i++) {
+                ensure(INDEX_ENTRY_SIZE);
+                buffer.putInt(ids[i]).putLong(offsets[i]);
+            }
+
+            ensure(4);
+            buffer.putInt(INDEX_MAGIC);
+
+            writeChecksums();
+        }
+
+        /**
+         * Writes the checksum trailer covering everything written before it
+         */
+        private void writeChecksums() throws IOException {
+            flush();
+            if (blockFill > 0) {
+                addChecksum(); //Last, shorter block
+            }
+            checksumming = false;
+
+            ByteBuffer table = ByteBuffer.allocate(blocks * 4 + 8);
+            for (int i = 0; i < blocks; i++) {
+                table.putInt(checksums[i]);
+            }
+            table.putInt(CHECKSUM_BLOCK_SIZE).putInt(blocks);
+
+            CRC32C tableCrc = new CRC32C();
+            tableCrc.update(table.array());
+
+            ensure(table.capacity() + 8);
+            buffer.put(table.array())
+                    .putInt((int) tableCrc.getValue())
+                    .putInt(CHECKSUM_MAGIC);
+        }
+
+        /**
+         * Feeds bytes on their way to the channel into the block checksums
+         */
+        private void checksum(byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                int part = Math.min(length, CHECKSUM_BLOCK_SIZE - blockFill);
+                crc.update(bytes, offset, part);
+                blockFill += part;
+                offset += part;
+                length -= part;
+
+                if (blockFill == CHECKSUM_BLOCK_SIZE) {
+                    addChecksum();
+                }
+            }
+        }
+
+        private void addChecksum() {
+            if (blocks == checksums.length) {
+                checksums = Arrays.copyOf(checksums, blocks * 2);
+            }
+
+            checksums[blocks++] = (int) crc.getValue();
+            crc.reset();
+            blockFill = 0;
+        }
+
+        /**
+         * Makes room for the next record, growing the buffer for records larger than it
+         */
+        private void ensure(int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+
+            flush();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size);
+            }
+        }
+
+        public void flush() throws IOException {
+            if (checksumming) {
+                checksum(buffer.array(), 0, buffer.position());
+            }
+
+            flushed += buffer.position();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Flushes buffered records, the channel itself is closed by its owner
+         */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * CRC32C checksums of the fixed-size blocks of a version 4 file
+     * Blocks can be checked one by one (mapped file) or while the file is streamed (sequential reader)
+     */
+    public static final class Checksums {
+        private final int blockSize;
+        private final int[] crcs;
+        private final long dataLength; //Bytes covered by checksums, the trailer starts here
+        private final CRC32C crc = new CRC32C(); //State of streaming verification
+        private long streamed;
+
+        private Checksums(int blockSize, int[] crcs, long dataLength) {
+            this.blockSize = blockSize;
+            this.crcs = crcs;
+            this.dataLength = dataLength;
+        }
+
+        /**
+         * Reads the checksum trailer of a snapshot file without changing the channel position
+         *
+         * @param channel the snapshot file
+         * @return the checksums, or null for older file versions that have none
+         * @throws IOException if the trailer is missing or damaged
+         */
+        public static Checksums read(FileChannel channel) throws IOException {
+            ByteBuffer start = ByteBuffer.allocate(6);
+            if (!readFully(channel, start, 0) || start.getInt(0) != MAGIC || start.getShort(4) < 4) {
+                return null;
+            }
+
+            long size = channel.size();
+            ByteBuffer footer = ByteBuffer.allocate(CHECKSUM_FOOTER_SIZE);
+            if (size < HEADER_SIZE + CHECKSUM_FOOTER_SIZE || !readFully(channel, footer, size - CHECKSUM_FOOTER_SIZE)
+                    || footer.getInt(12) != CHECKSUM_MAGIC) {
+                throw new IOException("Task file checksums are missing");
+            }
+
+            int blockSize = footer.getInt(0);
+            int blockCount = footer.getInt(4);
+            long dataLength = size - CHECKSUM_FOOTER_SIZE - 4L * blockCount;
+            if (blockSize <= 0 || blockCount <= 0 || dataLength < HEADER_SIZE
+                    || (dataLength + blockSize - 1) / blockSize != blockCount) {
+                throw new IOException("Task file checksums are damaged");
+            }
+
+            ByteBuffer table = ByteBuffer.allocate(blockCount * 4 + 8); //Block checksums, block size and count
+            readFully(channel, table, dataLength);
+            CRC32C tableCrc = new CRC32C();
+            tableCrc.update(table.array());
+            if ((int) tableCrc.getValue() != footer.getInt(8)) {
+                throw new IOException("Task file checksums are damaged");
+            }
+
+            int[] crcs = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                crcs[i] = table.getInt(i * 4);
+            }
+
+            return new Checksums(blockSize, crcs, dataLength);
+        }
+
+        private static boolean readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position + target.position());
+                if (read < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns number of bytes covered by the checksums
+         * Everything after them belongs to the trailer
+         *
+         * @return the file length without the trailer
+         */
+        public long getDataLength() {
+            return dataLength;
+        }
+
+        public int getBlockCount() {
+            return crcs.length;
+        }
+
+        public int blockOf(long offset) {
+            return (int) (offset / blockSize);
+        }
+
+        /**
+         * Checks one block of a file held in memory
+         *
+         * @param file the buffer holding the whole file
+         * @param block the block number
+         * @return true if the block matches its checksum
+         */
+        public boolean matches(ByteBuffer file, int block) {
+            long start = (long) block * blockSize;
+            int length = (int) Math.min(blockSize, dataLength - start);
+
+            CRC32C blockCrc = new CRC32C();
+            blockCrc.update(file.slice((int) start, length));
+            return (int) blockCrc.getValue() == crcs[block];
+        }
+
+        /**
+         * Checks bytes read in file order, every block is compared as soon as it is complete
+         * Bytes after the covered data are ignored
+         *
+         * @throws IOException if a completed block does not match its checksum
+         */
+        void update(byte[] bytes, int offset, int length) throws IOException {
+            length = (int) Math.min(length, dataLength - streamed);
+            while (length > 0) {
+                int blockEnd = (int) Math.min(blockSize - streamed % blockSize, dataLength - streamed);
+                int part = Math.min(length, blockEnd);
+                crc.update(bytes, offset, part);
+                streamed += part;
+                offset += part;
+                length -= part;
+
+                if (streamed % blockSize == 0 || streamed == dataLength) {
+                    int block = blockOf(streamed - 1);
+                    if ((int) crc.getValue() != crcs[block]) {
+                        throw new IOException("Task file block " + block + " is damaged");
+                    }
+                    crc.reset();
+                }
+            }
+        }
+
+        boolean isComplete() {
+            return streamed == dataLength;
+        }
+    }
+
+    /**
+     * Buffered sequential reader of the snapshot header and task records over an NIO channel
+     * The record index is not needed for sequential reading and is only read by finish to check its checksum
+     * The channel itself is closed by its owner
+     */
+    public static class Reader {
+        private final ReadableByteChannel channel;
+        private final Checksums checksums; //Null if the file has none
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        private long sequence;
+        private int count;
+        private int nextId;
+        private short version;
+        private short flags;
+
+        public Reader(ReadableByteChannel channel) {
+            this(channel, null);
+        }
+
+        /**
+         * Creates reader that checks block checksums while the file is read
+         *
+         * @param channel the channel positioned at the start of the file
+         * @param checksums the checksums of the file, from Checksums.read
+         */
+        public Reader(ReadableByteChannel channel, Checksums checksums) {
+            this.channel = channel;
+            this.checksums = checksums;
+        }
+
+        /**
+         * Reads and validates the header
+         *
+         * @throws IOException if the magic number or version is not supported
+         */
+        public void readHeader() throws IOException {
+            ensure(headerSize(1));
+
+            int magic = buffer.getInt();
+            if (magic != MAGIC) {
+                throw new IOException("Not a task snapshot file");
+            }
+
+            version = buffer.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported task file version: " + version);
+            }
+
+            flags = buffer.getShort();
+            sequence = buffer.getLong();
+            count = buffer.getInt();
+
+            if (count < 0) {
+                throw new IOException("Negative task count: " + count);
+            }
+
+            if (version >= 3) {
+                ensure(4);
+                nextId = buffer.getInt();
+            }
+
+            if (version >= 4 && checksums == null) {
+                throw new IOException("Task file checksums are missing");
+            }
+        }
+
+        /**
+         * Reads the rest of the checksummed data, so the blocks after the last record are checked too
+         * Must be called after all records were read
+         *
+         * @throws IOException if a block does not match its checksum
+         */
+        public void finish() throws IOException {
+            if (checksums == null || version < 4) {
+                return;
+            }
+
+            while (!checksums.isComplete()) {
+                buffer.position(buffer.limit()); //Skip what is left in the buffer
+                ensure(1);
+            }
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public short getFlags() {
+            return flags;
+        }
+
+        /**
+         * Returns stored ID counter, 0 for older versions that did not store it
+         *
+         * @return the next task ID to allocate
+         */
+        public int getNextId() {
+            return nextId;
+        }
+
+        public Task read() throws IOException {
+            ensure(RECORD_FIXED_SIZE - 8); //Fixed fields before the strings
+            int id = buffer.getInt();
+            int epochDay = buffer.getInt();
+            int priority = buffer.get();
+            int flags = buffer.get();
+
+            if (priority < 0 || priority >= PRIORITIES.length) {
+                throw new IOException("Unknown priority: " + priority);
+            }
+
+            String title = readString();
+            String description = readString();
+
+            return newTask(id, epochDay, PRIORITIES[priority], flags, title, description);
+        }
+
+        private String readString() throws IOException {
+            ensure(4);
+            int length = buffer.getInt();
+            if (length < 0) {
+                throw new IOException("Negative string length: " + length);
+            }
+
+            ensure(length);
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        /**
+         * Refills the buffer until the next size bytes are available
+         */
+        private void ensure(int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size).put(buffer);
+            } else {
+                buffer.compact();
+            }
+
+            int start = buffer.position();
+            while (buffer.position() < size) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Task file ends in the middle of a record");
+                }
+            }
+
+            if (checksums != null) {
+                checksums.update(buffer.array(), start, buffer.position() - start); //Every byte is checked once, as it arrives
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+
+/**
+ * One-time conversion of Java-serialized task files to the binary TaskCodec format
+ * Runs automatically on load, can also be started by hand: TaskFileMigrator [file]
+ */
+public final class TaskFileMigrator {
+
+    private TaskFileMigrator() {
+    }
+
+    /**
+     * Checks if the file was written by ObjectOutputStream
+     *
+     * @param file the task file to check
+     * @return true if the file still has to be converted
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean needsMigration(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return TaskCodec.isJavaSerialized(in.readNBytes(2));
+        }
+    }
+
+    /**
+     * Converts a serialized task list (and its journal sequence, if present) to the binary format
+     * New file is written next to the old one and then moved over it, so a failed run keeps the original
+     *
+     * @param file the serialized task file
+     * @throws IOException if the file cannot be read or written
+     */
+    @SuppressWarnings("unchecked")
+    public static void migrate(Path file) throws IOException {
+        List<Task> tasks;
+        long sequence;
+
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            tasks = (List<Task>) ois.readObject();
+            sequence = readSequence(ois);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in task file: " + e.getMessage(), e);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             TaskCodec.Writer writer = new TaskCodec.Writer(channel)) {
+            int maxId = 0;
+            for (Task task : tasks) {
+                maxId = Math.max(maxId, task.getId());
+            }
+
+            writer.writeHeader(sequence, tasks.size(), maxId + 1);
+            for (Task task : tasks) {
+                writer.write(task);
+            }
+            writer.writeIndex();
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads snapshot sequence number, files written before the journal existed have none
+     */
+    private static long readSequence(ObjectInputStream ois) throws IOException {
+        try {
+            return ois.readLong();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        Path file = Paths.get(args.length > 0 ? args[0] : "tasks.dat");
+
+        try {
+            if (needsMigration(file)) {
+                migrate(file);
+                System.out.println("Converted " + file + " to binary format");
+            } else {
+                System.out.println(file + " is already in binary format");
+            }
+        } catch (IOException e) {
+            System.out.println("Error converting " + file + ": " + e.getMessage());
+        }
+    }
+}
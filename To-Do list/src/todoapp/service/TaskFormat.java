@@ -0,0 +1,435 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Text formats for importing and exporting tasks, one record per task
+ *
+ * CSV: header line, then id,title,description,due_date,priority,completed - RFC 4180 quoting,
+ * so quoted fields may contain commas, quotes and line breaks
+ * JSON_LINES: one JSON object per line with keys id, title, description, dueDate, priority, completed
+ * Dates are ISO (yyyy-MM-dd), priorities are enum names, IDs are written for reference and ignored on import
+ */
+public enum TaskFormat {
+    CSV {
+        @Override
+        public String header() {
+            return "id,title,description,due_date,priority,completed";
+        }
+
+        @Override
+        public void write(Task task, StringBuilder out) {
+            out.append(task.getId()).append(',');
+            appendCsv(out, task.getTitle());
+            out.append(',');
+            appendCsv(out, task.getDescription());
+            out.append(',').append(task.getDueDate())
+                    .append(',').append(task.getPriority().name())
+                    .append(',').append(task.isCompleted());
+        }
+
+        @Override
+        public boolean quotesLineBreaks() {
+            return true;
+        }
+
+        @Override
+        public Task parse(String record) {
+            String[] fields = new String[6];
+            int count = 0;
+            int i = 0;
+            StringBuilder field = new StringBuilder();
+
+            while (true) {
+                field.setLength(0);
+                if (i < record.length() && record.charAt(i) == '"') {
+                    i++;
+                    while (true) {
+                        if (i >= record.length()) {
+                            throw new IllegalArgumentException("Unclosed quote");
+                        }
+                        char c = record.charAt(i++);
+                        if (c == '"') {
+                            if (i < record.length() && record.charAt(i) == '"') {
+                                field.append('"'); //Doubled quote inside a quoted field
+                                i++;
+                            } else {
+                                break;
+                            }
+                        } else {
+                            field.append(c);
+                        }
+                    }
+                } else {
+                    while (i < record.length() && record.charAt(i) != ',') {
+                        field.append(record.charAt(i++));
+                    }
+                }
+
+                if (count == fields.length) {
+                    throw new IllegalArgumentException("Too many fields, expected " + fields.length);
+                }
+                fields[count++] = field.toString();
+
+                if (i >= record.length()) {
+                    break;
+                }
+                if (record.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected character after quoted field: " + record.charAt(i));
+                }
+                i++;
+            }
+
+            if (count != fields.length) {
+                throw new IllegalArgumentException("Expected " + fields.length + " fields, found " + count);
+            }
+            return newTask(fields[1], fields[2], fields[3], fields[4], fields[5]);
+        }
+    },
+
+    JSON_LINES {
+        @Override
+        public String header() {
+            return null;
+        }
+
+        @Override
+        public void write(Task task, StringBuilder out) {
+            out.append("{\"id\":").append(task.getId()).append(",\"title\":");
+            appendJson(out, task.getTitle());
+            out.append(",\"description\":");
+            appendJson(out, task.getDescription());
+            out.append(",\"dueDate\":\"").append(task.getDueDate())
+                    .append("\",\"priority\":\"").append(task.getPriority().name())
+                    .append("\",\"completed\":").append(task.isCompleted())
+                    .append('}');
+        }
+
+        @Override
+        public boolean quotesLineBreaks() {
+            return false; //Line breaks inside strings are always escaped
+        }
+
+        @Override
+        public Task parse(String record) {
+            //Other keys (id, fields of other systems) are ignored
+            Map<String, String> fields = readObject(record);
+            String description = fields.get("description");
+            String completed = fields.get("completed");
+            return newTask(fields.get("title"), description == null ? "" : description, fields.get("dueDate"),
+                    fields.get("priority"), completed == null ? "false" : completed);
+        }
+    };
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    /**
+     * Returns the line written before the first record, null if the format has none
+     *
+     * @return the header line
+     */
+    public abstract String header();
+
+    /**
+     * Appends one task as a record, without line separator
+     *
+     * @param task the task to write
+     * @param out the buffer to append to
+     */
+    public abstract void write(Task task, StringBuilder out);
+
+    /**
+     * Checks if quoted fields may contain line breaks, so a record continues in the next line while a quote is open
+     *
+     * @return true if only line breaks outside quotes end a record
+     */
+    public abstract boolean quotesLineBreaks();
+
+    /**
+     * Parses one record into a new task without ID
+     *
+     * @param record the record text, without line separator
+     * @return the parsed task
+     * @throws IllegalArgumentException if the record is malformed or a value is invalid
+     */
+    public abstract Task parse(String record);
+
+    /**
+     * Checks if a record is the header line of the format
+     *
+     * @param record the first record of a file
+     * @return true if the record is the header and has to be skipped
+     */
+    public boolean isHeader(String record) {
+        String header = header();
+        return header != null && header.equalsIgnoreCase(record.trim());
+    }
+
+    /**
+     * Finds the format of a file by its extension (.csv, .jsonl, .json)
+     *
+     * @param fileName the file name
+     * @return the format, null if the extension is unknown
+     */
+    public static TaskFormat forFileName(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return JSON_LINES;
+        }
+        return null;
+    }
+
+    /**
+     * Parses one flat JSON object, as written by JSON_LINES
+     * Values are returned as text, JSON null as null, nested objects and arrays are not supported
+     *
+     * @param json the object text
+     * @return the values by key, in the order of the text
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    public static Map<String, String> readObject(String json) {
+        JsonReader reader = new JsonReader(json);
+        Map<String, String> fields = new LinkedHashMap<>();
+
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                String key = reader.readString();
+                reader.expect(':');
+                fields.put(key, reader.readValue());
+            } while (reader.consume(','));
+            reader.expect('}');
+        }
+        reader.expectEnd();
+
+        return fields;
+    }
+
+    /**
+     * Parses a priority name, ignoring case
+     *
+     * @param value the priority name
+     * @return the priority
+     * @throws IllegalArgumentException if the name is not a priority
+     */
+    public static Priority parsePriority(String value) {
+        for (Priority priority : PRIORITIES) {
+            if (priority.name().equalsIgnoreCase(value.trim())) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Wrong priority '" + value + "', expected HIGH, MEDIUM or LOW");
+    }
+
+    /**
+     * Parses an ISO date (yyyy-MM-dd)
+     *
+     * @param value the date text
+     * @return the date
+     * @throws IllegalArgumentException if the text is not a date
+     */
+    public static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Wrong date '" + value + "', expected yyyy-MM-dd");
+        }
+    }
+
+    /**
+     * Parses true or false, ignoring case, empty text is false
+     *
+     * @param value the text
+     * @return the value
+     * @throws IllegalArgumentException if the text is neither true nor false
+     */
+    public static boolean parseBoolean(String value) {
+        String text = value.trim();
+        if (text.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (text.equalsIgnoreCase("false") || text.isEmpty()) {
+            return false;
+        }
+        throw new IllegalArgumentException("Wrong completed value '" + value + "', expected true or false");
+    }
+
+    private static Task newTask(String title, String description, String dueDate, String priority, String completed) {
+        if (title == null || title.trim().isEmpty()) {
+            throw new IllegalArgumentException("Title cannot be empty");
+        }
+        if (dueDate == null) {
+            throw new IllegalArgumentException("Due date is missing");
+        }
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority is missing");
+        }
+
+        Task task = new Task(title, description, parseDate(dueDate), parsePriority(priority));
+        task.setCompleted(parseBoolean(completed));
+        return task;
+    }
+
+    private static void appendCsv(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quoted) {
+            out.append(value);
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void appendJson(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Reader of one flat JSON object, values are returned as text (null for JSON null)
+     */
+    private static final class JsonReader {
+        private final String text;
+        private int position;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at position " + position);
+            }
+        }
+
+        boolean consume(char c) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (position < text.length()) {
+                throw new IllegalArgumentException("Unexpected text after object at position " + position);
+            }
+        }
+
+        String readValue() {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == '"') {
+                return readString();
+            }
+
+            int start = position;
+            while (position < text.length() && ",}] \t".indexOf(text.charAt(position)) < 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+                throw new IllegalArgumentException("Nested values are not supported, at position " + start);
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    throw new IllegalArgumentException("Unclosed string");
+                }
+
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+
+                if (position >= text.length()) {
+                    throw new IllegalArgumentException("Unclosed string");
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Wrong unicode escape at position " + position);
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Wrong unicode escape at position " + position);
+                        }
+                        position += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Wrong escape '\\" + escaped + "' at position " + position);
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
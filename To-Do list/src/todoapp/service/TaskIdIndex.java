@@ -0,0 +1,201 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.util.List;
+
+/**
+ * Hash index from task ID to task with primitive int keys (no Integer boxing)
+ * Open addressing with linear probing, deletions shift entries back instead of leaving tombstones
+ * Tasks of a lazily loaded list are kept as record numbers and decoded on first lookup
+ */
+public class TaskIdIndex {
+    private static final int EMPTY = 0; //Task IDs are always positive, 0 marks a free slot
+    private static final int NOT_MAPPED = -1;
+
+    private int[] keys;
+    private Task[] values; //Null while the task is only known by its record number
+    private int[] records;
+    private MappedTaskStore store; //Store of the lazily loaded list, if any
+    private int size;
+
+    public TaskIdIndex() {
+        allocate(16);
+    }
+
+    /**
+     * Replaces index contents with the tasks of the list
+     * IDs of a lazy list are read from the record index without decoding tasks
+     *
+     * @param tasks the task list to index
+     */
+    public void rebuild(List<Task> tasks) {
+        allocate(capacityFor(tasks.size()));
+        store = null;
+
+        if (tasks instanceof LazyTaskList lazy) {
+            store = lazy.getStore();
+            for (int i = 0; i < lazy.size(); i++) {
+                int record = lazy.recordAt(i);
+                if (record == NOT_MAPPED || store.isDecoded(record)) {
+                    put(lazy.get(i));
+                } else {
+                    insert(lazy.idAt(i), null, record);
+                }
+            }
+        } else {
+            for (Task task : tasks) {
+                put(task);
+            }
+        }
+    }
+
+    /**
+     * Finds task by ID
+     *
+     * @param id the task ID
+     * @return the task or null if no task has this ID
+     */
+    public Task get(int id) {
+        int slot = find(id);
+        if (slot < 0) {
+            return null;
+        }
+
+        Task task = values[slot];
+        if (task == null) {
+            task = store.get(records[slot]); //Same object the lazy list returns for this record
+            values[slot] = task;
+        }
+
+        return task;
+    }
+
+    public boolean contains(int id) {
+        return find(id) >= 0;
+    }
+
+    /**
+     * Adds task or replaces the task with the same ID
+     *
+     * @param task the task to index, its ID must be set
+     */
+    public void put(Task task) {
+        insert(task.getId(), task, NOT_MAPPED);
+    }
+
+    /**
+     * Removes task with the given ID
+     *
+     * @param id the task ID
+     * @return true if the ID was indexed
+     */
+    public boolean remove(int id) {
+        int slot = find(id);
+        if (slot < 0) {
+            return false;
+        }
+
+        //Shift following entries of the probe chain back into the freed slot
+        int mask = keys.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                records[free] = records[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        keys[free] = EMPTY;
+        values[free] = null;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(16);
+        store = null;
+    }
+
+    private void insert(int id, Task task, int record) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Task ID must be positive number: " + id);
+        }
+
+        if ((size + 1) * 4 > keys.length * 3) { //Keep load factor under 0.75
+            grow();
+        }
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (keys[slot] == EMPTY) {
+            keys[slot] = id;
+            size++;
+        }
+        values[slot] = task;
+        records[slot] = record;
+    }
+
+    private int find(int id) {
+        if (id <= 0) {
+            return -1;
+        }
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Task[] oldValues = values;
+        int[] oldRecords = records;
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                insert(oldKeys[i], oldValues[i], oldRecords[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Task[capacity];
+        records = new int[capacity];
+        size = 0;
+    }
+
+    private static int capacityFor(int count) {
+        int capacity = 16;
+        while (capacity * 3 < count * 4) {
+            capacity <<= 1;
+        }
+        return capacity << 1;
+    }
+
+    //Sequential IDs would cluster in neighbouring slots without mixing
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,742 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Append-only write-ahead log of task mutations
+ * Every change is appended as a small record instead of rewriting the whole task file
+ * The log is folded into a snapshot (checkpoint) every few records and then kept as the previous log,
+ * which together with the backup snapshot can rebuild the state if the current snapshot is damaged
+ *
+ * Records are encoded on the caller's thread and queued for a background writer
+ * The writer takes everything queued so far as one batch: one write and, unless durability is NONE, one fsync
+ * Under load more records share a batch, so the disk cost per mutation goes down instead of up
+ * Records of an explicit batch (beginBatch, commitBatch) are written as one record, replayed all or nothing
+ */
+public class TaskJournal {
+    //Record types
+    private static final byte ADD = 1;
+    private static final byte TITLE = 2;
+    private static final byte DESCRIPTION = 3;
+    private static final byte DUE_DATE = 4;
+    private static final byte PRIORITY = 5;
+    private static final byte COMPLETED = 6;
+    private static final byte REMOVE = 7;
+    private static final byte SORT = 8; //Sorted the list, written by older versions
+    private static final byte DELETE = 9; //Removal that keeps IDs of other tasks
+    private static final byte VIEW_ORDER = 10; //Display order, the list itself is not sorted
+    private static final byte BATCH = 11; //Records of one committed batch, applied all or nothing
+
+    static final int DEFAULT_CHECKPOINT_INTERVAL = 1000; //Records appended before the log is compacted
+
+    private static final PendingWrite STOP = new PendingWrite(null); //Queued by close to end the writer thread
+
+    private final File logFile;
+    private final File previousLogFile; //Records between the backup snapshot and the current one
+    private final Path dataFile; //Snapshot written by checkpoint
+    private final int checkpointInterval;
+    private final Durability durability;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Object ioLock = new Object(); //Held by the writer while a batch is written
+    private Thread writer; //Started lazily on first append
+    private FileOutputStream out; //Opened lazily by the writer, only used under ioLock
+    private volatile CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    private long sequence; //Sequence number of the last record (continues across checkpoints)
+    private TaskSort viewOrder; //Last logged display order, stored in the snapshot header
+    private ByteArrayOutputStream batch; //Records of the open batch, null outside of a batch
+    private CompletableFuture<Void> batchWrite; //Completed when the open batch is written
+    private long batchSequence; //Sequence, record count and view order before the batch, restored by rollback
+    private int batchRecordsSinceCheckpoint;
+    private TaskSort batchViewOrder;
+    private int recordsSinceCheckpoint;
+
+    public TaskJournal(File logFile) {
+        this(logFile, DEFAULT_CHECKPOINT_INTERVAL, Durability.BATCHED);
+    }
+
+    public TaskJournal(File logFile, Durability durability) {
+        this(logFile, DEFAULT_CHECKPOINT_INTERVAL, durability);
+    }
+
+    public TaskJournal(File logFile, int checkpointInterval, Durability durability) {
+        this(logFile, Paths.get(DataPersistence.DATA_FILE), checkpointInterval, durability);
+    }
+
+    /**
+     * Creates journal of a task list stored outside of the working directory
+     *
+     * @param logFile the log file
+     * @param dataFile the snapshot file written by checkpoint
+     * @param checkpointInterval the records appended before the log is compacted
+     * @param durability when records are forced to disk
+     */
+    public TaskJournal(File logFile, Path dataFile, int checkpointInterval, Durability durability) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive number: " + checkpointInterval);
+        }
+
+        this.logFile = logFile;
+        this.previousLogFile = new File(logFile.getPath() + ".prev");
+        this.dataFile = dataFile;
+        this.checkpointInterval = checkpointInterval;
+        this.durability = durability;
+    }
+
+    /**
+     * Encoded record waiting for the background writer
+     */
+    private static class PendingWrite {
+        final byte[] data;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * Body of a single log record, written after the sequence number and record type
+     */
+    @FunctionalInterface
+    private interface RecordBody {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    public CompletableFuture<Void> logAdd(Task task) {
+        return append(ADD, out -> {
+            out.writeInt(task.getId());
+            writeString(out, task.getTitle());
+            writeString(out, task.getDescription());
+            out.writeLong(task.getDueDate().toEpochDay());
+            out.writeByte(task.getPriority().ordinal());
+        });
+    }
+
+    public CompletableFuture<Void> logTitle(int id, String title) {
+        return append(TITLE, out -> {
+            out.writeInt(id);
+            writeString(out, title);
+        });
+    }
+
+    public CompletableFuture<Void> logDescription(int id, String description) {
+        return append(DESCRIPTION, out -> {
+            out.writeInt(id);
+            writeString(out, description);
+        });
+    }
+
+    public CompletableFuture<Void> logDueDate(int id, LocalDate dueDate) {
+        return append(DUE_DATE, out -> {
+            out.writeInt(id);
+            out.writeLong(dueDate.toEpochDay());
+        });
+    }
+
+    public CompletableFuture<Void> logPriority(int id, Priority priority) {
+        return append(PRIORITY, out -> {
+            out.writeInt(id);
+            out.writeByte(priority.ordinal());
+        });
+    }
+
+    public CompletableFuture<Void> logCompleted(int id, boolean completed) {
+        return append(COMPLETED, out -> {
+            out.writeInt(id);
+            out.writeBoolean(completed);
+        });
+    }
+
+    /**
+     * Logs removal followed by renumbering of the remaining tasks
+     */
+    public CompletableFuture<Void> logRemove(int id) {
+        return append(REMOVE, out -> out.writeInt(id));
+    }
+
+    /**
+     * Logs removal that keeps IDs of the remaining tasks
+     */
+    public CompletableFuture<Void> logDelete(int id) {
+        return append(DELETE, out -> out.writeInt(id));
+    }
+
+    /**
+     * Logs the order tasks are displayed in
+     */
+    public CompletableFuture<Void> logViewOrder(TaskSort order) {
+        viewOrder = order;
+        return append(VIEW_ORDER, out -> out.writeByte(order.ordinal()));
+    }
+
+    /**
+     * Returns the display order restored from the snapshot and the log
+     *
+     * @return the order, null if tasks are shown in list order
+     */
+    public TaskSort getViewOrder() {
+        return viewOrder;
+    }
+
+    /**
+     * Starts collecting records in memory instead of queueing them one by one
+     * Collected records are written by commitBatch as one record, with one write and one fsync,
+     * and replay applies either all of them or none
+     *
+     * @throws IllegalStateException if a batch is already open
+     */
+    public void beginBatch() {
+        if (batch != null) {
+            throw new IllegalStateException("Batch is already open");
+        }
+
+        batch = new ByteArrayOutputStream(1024);
+        batchWrite = new CompletableFuture<>();
+        batchSequence = sequence;
+        batchRecordsSinceCheckpoint = recordsSinceCheckpoint;
+        batchViewOrder = viewOrder;
+    }
+
+    public boolean isBatchOpen() {
+        return batch != null;
+    }
+
+    /**
+     * Queues the records of the open batch as a single record
+     *
+     * @return future completed when the batch is written (and forced to disk unless durability is NONE)
+     * @throws IllegalStateException if no batch is open
+     */
+    public CompletableFuture<Void> commitBatch() {
+        if (batch == null) {
+            throw new IllegalStateException("No batch is open");
+        }
+
+        ByteArrayOutputStream records = batch;
+        CompletableFuture<Void> done = batchWrite;
+        batch = null;
+        batchWrite = null;
+
+        if (records.size() == 0) {
+            done.complete(null);
+            return done;
+        }
+
+        append(BATCH, out -> {
+            out.writeInt(records.size());
+            records.writeTo(out);
+        }).whenComplete((result, error) -> {
+            if (error == null) {
+                done.complete(null);
+            } else {
+                done.completeExceptionally(error);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Drops the records of the open batch, nothing of it reaches the file
+     *
+     * @throws IllegalStateException if no batch is open
+     */
+    public void rollbackBatch() {
+        if (batch == null) {
+            throw new IllegalStateException("No batch is open");
+        }
+
+        batchWrite.cancel(false);
+        batch = null;
+        batchWrite = null;
+        sequence = batchSequence;
+        recordsSinceCheckpoint = batchRecordsSinceCheckpoint;
+        viewOrder = batchViewOrder;
+    }
+
+    /**
+     * Encodes one record and queues it for the background writer, or adds it to the open batch
+     * Records reach the file in the order they were appended
+     *
+     * @return future completed when the record is written (and forced to disk unless durability is NONE)
+     */
+    private CompletableFuture<Void> append(byte type, RecordBody body) {
+        ByteArrayOutputStream bytes = batch != null ? batch : new ByteArrayOutputStream(64); //Batch records are encoded in place
+        try {
+            DataOutputStream record = new DataOutputStream(bytes);
+            record.writeLong(sequence + 1);
+            record.writeByte(type);
+            body.writeTo(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //Not thrown by in-memory streams
+        }
+
+        sequence++;
+        recordsSinceCheckpoint++;
+
+        if (batch != null) {
+            return batchWrite;
+        }
+
+        if (writer == null) {
+            writer = new Thread(this::writeLoop, "task-journal-writer");
+            writer.setDaemon(true); //close() drains the queue on normal exit
+            writer.start();
+        }
+
+        PendingWrite write = new PendingWrite(bytes.toByteArray());
+        lastWrite = write.done;
+        queue.add(write);
+        return write.done;
+    }
+
+    /**
+     * Background writer - group commit of everything queued since the previous batch
+     */
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        boolean running = true;
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+
+            if (batch.get(batch.size() - 1) == STOP) {
+                batch.remove(batch.size() - 1); //STOP is always the last record queued
+                running = false;
+            }
+
+            IOException error = null;
+            synchronized (ioLock) {
+                try {
+                    writeBatch(batch);
+                } catch (IOException e) {
+                    error = e;
+                    closeStream(); //Reopen on the next batch
+                }
+            }
+
+            if (error != null) {
+                System.out.println("Error saving tasks: " + error.getMessage());
+                TaskMetrics.get().persistenceError("Journal write: " + error.getMessage());
+            }
+            for (PendingWrite write : batch) {
+                if (error == null) {
+                    write.done.complete(null);
+                } else {
+                    write.done.completeExceptionally(error);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (out == null) {
+            out = new FileOutputStream(logFile, true);
+        }
+
+        int length = 0;
+        for (PendingWrite write : batch) {
+            length += write.data.length;
+        }
+
+        byte[] data = new byte[length]; //Whole batch in a single write call
+        int position = 0;
+        for (PendingWrite write : batch) {
+            System.arraycopy(write.data, 0, data, position, write.data.length);
+            position += write.data.length;
+        }
+        out.write(data);
+
+        if (durability != Durability.NONE) {
+            out.getChannel().force(false); //One fsync for the whole batch
+        }
+        TaskMetrics.get().recordIo(TaskMetrics.Operation.JOURNAL_WRITE, start, length);
+    }
+
+    /**
+     * Returns future of the last appended record
+     * Records are written in order, so it completes once everything appended before is written
+     *
+     * @return future completed when the last record is written
+     */
+    public CompletableFuture<Void> lastWrite() {
+        return lastWrite;
+    }
+
+    /**
+     * Blocks until the last appended record is on disk when durability is PER_OP
+     * Called by task managers after a change, outside of their own locks so other writers can join the batch
+     */
+    public void awaitDurability() {
+        if (durability == Durability.PER_OP) {
+            awaitWrites();
+        }
+    }
+
+    private void awaitWrites() {
+        try {
+            lastWrite.join();
+        } catch (RuntimeException e) {
+            //Already reported by the writer
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Checks if enough records were appended to compact the log into a snapshot
+     * Never during a batch, the snapshot would contain changes that may still be rolled back
+     *
+     * @return true if checkpoint should be written
+     */
+    public boolean needsCheckpoint() {
+        return batch == null && recordsSinceCheckpoint >= checkpointInterval;
+    }
+
+    /**
+     * Writes a full snapshot of the task list and starts a new log
+     * The snapshot remembers the last sequence number, so records are never applied twice
+     *
+     * @param tasks the current task list
+     * @param nextId the next task ID to allocate
+     * @return true if the snapshot was written
+     */
+    public boolean checkpoint(List<Task> tasks, int nextId) {
+        long start = System.nanoTime();
+        awaitWrites(); //Snapshot must not be older than the log it replaces
+        synchronized (ioLock) {
+            closeStream();
+        }
+
+        if (!DataPersistence.saveTasks(dataFile, tasks, sequence, nextId, viewOrder)) {
+            return false; //Keep the log - it is still needed to rebuild the state
+        }
+
+        try {
+            if (logFile.exists()) {
+                Files.move(logFile.toPath(), previousLogFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            System.out.println("Warning! Could not rotate journal file: " + e.getMessage());
+        }
+
+        recordsSinceCheckpoint = 0;
+        TaskMetrics.get().record(TaskMetrics.Operation.CHECKPOINT, start);
+        return true;
+    }
+
+    /**
+     * Replays records newer than the snapshot on top of the loaded task list
+     * Previous log is replayed first - its records are only newer when the backup snapshot was loaded
+     * A torn record at the end of the log (crash mid-append) is cut off so new appends stay readable
+     *
+     * @param tasks the task list loaded from the snapshot
+     * @param index the ID index of the list, kept up to date while replaying
+     * @param snapshotSequence the sequence number stored in the snapshot
+     * @param snapshotOrder the display order stored in the snapshot, null for list order
+     * @return the highest task ID added by the replayed records, 0 if none
+     */
+    public int replay(List<Task> tasks, TaskIdIndex index, long snapshotSequence, TaskSort snapshotOrder) {
+        sequence = snapshotSequence;
+        viewOrder = snapshotOrder;
+        recordsSinceCheckpoint = 0; //Replay is started again if the snapshot turns out to be damaged
+
+        int maxAddedId = replay(previousLogFile, tasks, index, snapshotSequence);
+        return Math.max(maxAddedId, replay(logFile, tasks, index, snapshotSequence));
+    }
+
+    private int replay(File file, List<Task> tasks, TaskIdIndex index, long snapshotSequence) {
+        if (!file.exists()) {
+            return 0; //Nothing was changed since the last snapshot
+        }
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            System.out.println("Error loading journal: " + e.getMessage());
+            TaskMetrics.get().persistenceError("Journal load: " + e.getMessage());
+            return 0;
+        }
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        int validLength = 0;
+        int maxAddedId = 0;
+
+        try {
+            while (bytes.available() > 0) {
+                maxAddedId = Math.max(maxAddedId, replayRecord(in, tasks, index, snapshotSequence));
+                validLength = data.length - bytes.available();
+            }
+        } catch (IOException e) {
+            truncate(file, validLength); //Incomplete or unknown record - drop the tail
+        }
+
+        return maxAddedId;
+    }
+
+    /**
+     * Reads one record with its sequence number and applies it when it is newer than the snapshot
+     * A batch is read completely before its records are applied, so a batch cut off by a crash is dropped as a whole
+     *
+     * @return the highest task ID added by the record, 0 if none
+     */
+    private int replayRecord(DataInputStream in, List<Task> tasks, TaskIdIndex index, long snapshotSequence) throws IOException {
+        long recordSequence = in.readLong();
+        byte type = in.readByte();
+        int maxAddedId = 0;
+
+        if (type == BATCH) {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Negative batch length: " + length);
+            }
+
+            byte[] records = in.readNBytes(length);
+            if (records.length != length) {
+                throw new EOFException();
+            }
+
+            ByteArrayInputStream batchBytes = new ByteArrayInputStream(records);
+            DataInputStream batchIn = new DataInputStream(batchBytes);
+            while (batchBytes.available() > 0) {
+                maxAddedId = Math.max(maxAddedId, replayRecord(batchIn, tasks, index, snapshotSequence));
+            }
+        } else {
+            boolean apply = recordSequence > snapshotSequence;
+            maxAddedId = readRecord(type, in, tasks, index, apply);
+            if (apply) {
+                recordsSinceCheckpoint++;
+            }
+        }
+
+        sequence = Math.max(sequence, recordSequence);
+        return maxAddedId;
+    }
+
+    /**
+     * Reads one record body and applies it to the list when it is newer than the snapshot
+     *
+     * @return ID of the task added by the record, 0 for other records
+     */
+    private int readRecord(byte type, DataInputStream in, List<Task> tasks, TaskIdIndex index, boolean apply) throws IOException {
+        switch (type) {
+            case ADD -> {
+                int id = in.readInt();
+                String title = readString(in);
+                String description = readString(in);
+                LocalDate dueDate = LocalDate.ofEpochDay(in.readLong());
+                Priority priority = readPriority(in);
+
+                if (apply) {
+                    Task task = new Task(title, description, dueDate, priority);
+                    task.setId(id);
+                    tasks.add(task);
+                    index.put(task);
+                }
+                return id;
+            }
+            case TITLE -> {
+                int id = in.readInt();
+                String title = readString(in);
+                Task task = apply ? index.get(id) : null; //Skipped records must not decode tasks
+                if (task != null) {
+                    task.setTitle(title);
+                }
+            }
+            case DESCRIPTION -> {
+                int id = in.readInt();
+                String description = readString(in);
+                Task task = apply ? index.get(id) : null; //Skipped records must not decode tasks
+                if (task != null) {
+                    task.setDescription(description);
+                }
+            }
+            case DUE_DATE -> {
+                int id = in.readInt();
+                LocalDate dueDate = LocalDate.ofEpochDay(in.readLong());
+                Task task = apply ? index.get(id) : null; //Skipped records must not decode tasks
+                if (task != null) {
+                    task.setDueDate(dueDate);
+                }
+            }
+            case PRIORITY -> {
+                int id = in.readInt();
+                Priority priority = readPriority(in);
+                Task task = apply ? index.get(id) : null; //Skipped records must not decode tasks
+                if (task != null) {
+                    task.setPriority(priority);
+                }
+            }
+            case COMPLETED -> {
+                int id = in.readInt();
+                boolean completed = in.readBoolean();
+                Task task = apply ? index.get(id) : null; //Skipped records must not decode tasks
+                if (task != null) {
+                    task.setCompleted(completed);
+                }
+            }
+            case REMOVE -> {
+                int id = in.readInt();
+                if (apply && index.contains(id)) {
+                    tasks.remove(LazyTaskList.indexOfId(tasks, id));
+                    for (int i = 0; i < tasks.size(); i++) {
+                        tasks.get(i).reassignId(i + 1); //Same renumbering as TaskManager.reassignTaskId
+                    }
+                    index.rebuild(tasks);
+                }
+            }
+            case DELETE -> {
+                int id = in.readInt();
+                if (apply && index.remove(id)) {
+                    tasks.remove(LazyTaskList.indexOfId(tasks, id));
+                }
+            }
+            case SORT -> {
+                TaskSort sort = readSort(in);
+                if (apply) {
+                    tasks.sort(sort.comparator()); //Older logs - later REMOVE records renumber in sorted order
+                    viewOrder = sort;
+                }
+            }
+            case VIEW_ORDER -> {
+                TaskSort order = readSort(in);
+                if (apply) {
+                    viewOrder = order;
+                }
+            }
+            default -> throw new IOException("Unknown journal record type: " + type);
+        }
+
+        return 0;
+    }
+
+    private static TaskSort readSort(DataInputStream in) throws IOException {
+        TaskSort[] sorts = TaskSort.values();
+        int sort = in.readByte();
+        if (sort < 0 || sort >= sorts.length) {
+            throw new IOException("Unknown sort order: " + sort);
+        }
+
+        return sorts[sort];
+    }
+
+    private static Priority readPriority(DataInputStream in) throws IOException {
+        Priority[] priorities = Priority.values();
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= priorities.length) {
+            throw new IOException("Unknown priority: " + ordinal);
+        }
+
+        return priorities[ordinal];
+    }
+
+    //Length-prefixed UTF-8, unlike writeUTF it has no 64KB limit
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length: " + length);
+        }
+
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void truncate(File file, int length) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        } catch (IOException e) {
+            System.out.println("Error repairing journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes all queued records, stops the background writer and closes the log file
+     * The journal can still be used afterwards, the writer is started again on the next append
+     */
+    public void close() {
+        if (writer != null) {
+            queue.add(STOP);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+
+        synchronized (ioLock) {
+            closeStream();
+        }
+    }
+
+    private void closeStream() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.out.println("Error closing journal: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Deletes the log file and restarts sequence numbering
+     * Used together with DataPersistence.deleteSavedData
+     */
+    public void delete() {
+        awaitWrites();
+        synchronized (ioLock) {
+            closeStream();
+        }
+
+        for (File file : new File[] {logFile, previousLogFile}) {
+            if (file.exists() && !file.delete()) {
+                System.out.println("Warning! Could not delete journal file");
+            }
+        }
+
+        sequence = 0;
+        viewOrder = null;
+        recordsSinceCheckpoint = 0;
+    }
+}
@@ -0,0 +1,284 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Named task lists (projects), each stored as its own shard: a directory with its own data and journal files
+ * Lists are opened on first use and only the lists a call touches are loaded
+ * At most maxOpen lists stay open, the least recently used one is closed (its journal written) when another is opened
+ * Queries over all lists run on every list in parallel
+ *
+ * One list is used by one thread at a time, different lists are used in parallel
+ * A TaskManager passed to withList must not be kept after the call, it may be closed right after it
+ */
+public class TaskListStore implements AutoCloseable {
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}"); //Safe as a directory name on every platform
+
+    private final Path root;
+    private final int maxOpen;
+    private final Durability durability;
+    private final ConcurrentHashMap<String, ReentrantLock> locks = new ConcurrentHashMap<>(); //Held while a list is used, opened or closed
+    private final LinkedHashMap<String, TaskManager> open = new LinkedHashMap<>(16, 0.75f, true); //Access order, eldest first, guarded by itself
+    private final ExecutorService fanOut;
+
+    /**
+     * Opens the store, lists are kept in subdirectories of the root
+     *
+     * @param root the directory of the store, created if missing
+     * @param maxOpen the number of lists kept open
+     * @param durability when journal records of every list are forced to disk
+     * @throws IOException if the root directory cannot be created
+     */
+    public TaskListStore(Path root, int maxOpen, Durability durability) throws IOException {
+        if (maxOpen <= 0) {
+            throw new IllegalArgumentException("Open list count must be positive number: " + maxOpen);
+        }
+
+        this.root = Files.createDirectories(root);
+        this.maxOpen = maxOpen;
+        this.durability = durability;
+        this.fanOut = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "task-list-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns names of all stored lists, sorted
+     *
+     * @return the list names
+     */
+    public List<String> listNames() {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> lists = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path list : lists) {
+                String name = list.getFileName().toString();
+                if (NAME.matcher(name).matches()) {
+                    names.add(name);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read task lists in " + root, e);
+        }
+
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Runs an action on one list, the list is created if it does not exist
+     * Other threads using the same list wait until the action is done
+     *
+     * @param name the list name: letters, digits, '_' and '-'
+     * @param action the action, must not keep the manager or call this store
+     * @return the result of the action
+     */
+    public <T> T withList(String name, Function<TaskManager, T> action) {
+        checkName(name);
+
+        ReentrantLock lock = lockOf(name);
+        lock.lock();
+        try {
+            TaskManager manager;
+            synchronized (open) {
+                manager = open.get(name); //Marks the list as recently used
+            }
+
+            if (manager == null) {
+                Path directory = root.resolve(name);
+                try {
+                    Files.createDirectories(directory);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot create task list " + name, e);
+                }
+                manager = new TaskManager(directory, true, durability); //Stable IDs, references to tasks of a list stay valid
+
+                synchronized (open) {
+                    open.put(name, manager);
+                }
+            }
+
+            return action.apply(manager);
+        } finally {
+            lock.unlock();
+            closeIdle(); //Never while holding a list lock, so two threads closing lists cannot wait for each other
+        }
+    }
+
+    /**
+     * Runs a query on every list in parallel
+     * Offset, limit and sort keys of the query apply to each list separately
+     *
+     * @param query the query, it is only read
+     * @return matching tasks by list name, in name order, lists without matches are left out
+     */
+    public Map<String, List<Task>> find(TaskQuery query) {
+        List<String> names = listNames();
+        List<Future<List<Task>>> results = new ArrayList<>(names.size());
+        for (String name : names) {
+            results.add(fanOut.submit(() -> withList(name, manager -> manager.find(query))));
+        }
+
+        Map<String, List<Task>> found = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < names.size(); i++) {
+                List<Task> tasks = results.get(i).get();
+                if (!tasks.isEmpty()) {
+                    found.put(names.get(i), tasks);
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Query interrupted", e);
+        } finally {
+            for (Future<List<Task>> result : results) {
+                result.cancel(false); //Lists not reached yet after a failure are skipped
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Deletes a list with all its files
+     *
+     * @param name the list name
+     * @return true if the list existed
+     */
+    public boolean deleteList(String name) {
+        checkName(name);
+
+        Path directory = root.resolve(name);
+        ReentrantLock lock = lockOf(name);
+        lock.lock();
+        try {
+            TaskManager manager;
+            synchronized (open) {
+                manager = open.remove(name);
+            }
+            if (manager != null) {
+                manager.deleteAllData(); //Releases the mapped snapshot, Windows cannot delete a mapped file
+                manager.close();
+            }
+
+            if (!Files.isDirectory(directory)) {
+                return false;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete task list " + name, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of lists currently open
+     *
+     * @return the open list count, at most maxOpen once no call is running
+     */
+    public int openCount() {
+        synchronized (open) {
+            return open.size();
+        }
+    }
+
+    /**
+     * Closes least recently used lists until at most maxOpen are open
+     * A list in use is closed once its action is done
+     */
+    private void closeIdle() {
+        while (true) {
+            String eldest;
+            synchronized (open) {
+                if (open.size() <= maxOpen) {
+                    return;
+                }
+                eldest = open.keySet().iterator().next();
+            }
+
+            ReentrantLock lock = lockOf(eldest);
+            lock.lock();
+            try {
+                TaskManager manager;
+                synchronized (open) {
+                    if (open.size() <= maxOpen || !eldest.equals(open.keySet().iterator().next())) {
+                        continue; //Closed by another thread or used again meanwhile
+                    }
+                    manager = open.remove(eldest);
+                }
+                manager.close(); //Writes pending journal records
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes every open list and stops the query threads
+     */
+    @Override
+    public void close() {
+        fanOut.shutdownNow();
+
+        List<String> names;
+        synchronized (open) {
+            names = new ArrayList<>(open.keySet());
+        }
+        for (String name : names) {
+            ReentrantLock lock = lockOf(name);
+            lock.lock();
+            try {
+                TaskManager manager;
+                synchronized (open) {
+                    manager = open.remove(name);
+                }
+                if (manager != null) {
+                    manager.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private ReentrantLock lockOf(String name) {
+        return locks.computeIfAbsent(name, key -> new ReentrantLock());
+    }
+
+    private static void checkName(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Wrong list name '" + name + "', use up to 64 letters, digits, '_' or '-'");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.util.List;
+
+/**
+ * Receives task changes made through TaskManager
+ * Used to keep indexes and other derived data in sync with the task list
+ */
+public interface TaskListener {
+
+    /**
+     * Called after a task was added, its ID is already set
+     *
+     * @param task the added task
+     */
+    void taskAdded(Task task);
+
+    /**
+     * Called after a task was removed from the list
+     *
+     * @param task the removed task
+     */
+    void taskRemoved(Task task);
+
+    /**
+     * Called after a single field of a task was changed
+     *
+     * @param task the updated task, already holding the new value
+     * @param field the changed field
+     * @param oldValue the value before the change (String, LocalDate, Priority or Boolean)
+     */
+    void taskUpdated(Task task, TaskField field, Object oldValue);
+
+    /**
+     * Called when the whole list changed at once (all data deleted, or IDs renumbered - see tasksRenumbered)
+     *
+     * @param tasks the current task list
+     */
+    void tasksReset(List<Task> tasks);
+
+    /**
+     * Called when the IDs of the list were renumbered, by default handled as a reset
+     * Listeners keeping state per task ID override it to move that state to the new IDs
+     *
+     * @param tasks the current task list
+     * @param oldIds the ID of every task before the renumbering, by list position, 0 for tasks that were not in the list
+     */
+    default void tasksRenumbered(List<Task> tasks, int[] oldIds) {
+        tasksReset(tasks);
+    }
+}
@@ -2,47 +2,349 @@ package todoapp.service;
 
 import todoapp.model.Priority;
 import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
-
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * TaskManager class handles all task operations and data persistence
  */
 
-public class TaskManager {
+public class TaskManager implements TaskOperations {
+    private static final int QUERY_CACHE_ENTRIES = 256; //Results of distinct queries kept
+    private static final long QUERY_CACHE_IDS = 1_000_000; //Task IDs kept by all cached results together
 
     private List<Task> tasks; //Main task storage
+    private final TaskIdIndex index; //ID to task lookup
+    private final SecondaryIndex secondaryIndex; //Priority, status and due date lookup
+    private final TextIndex textIndex; //Title and description search
+    private final QueryPlanner planner; //Runs TaskQuery over the indexes
+    private final QueryCache queryCache = new QueryCache(QUERY_CACHE_ENTRIES, QUERY_CACHE_IDS); //Results of repeated queries
+    private final TaskMetrics metrics = TaskMetrics.get(); //Latency and row counters of every operation
+    private long missScannedRows; //Rows scanned by the last query computed on a cache miss, for metrics
+    private final EnumMap<TaskSort, SortIndex> sortIndexes = new EnumMap<>(TaskSort.class); //Sorted views, the list keeps insertion order
+    private final List<TaskListener> listeners = new ArrayList<>();
+    private TaskSort currentSort; //Order last chosen by the user, applied to displayed tasks and index query results
+    private final TaskJournal journal; //Write-ahead log of changes since the last snapshot
+    private final Path dataFile; //Snapshot file, the journal is kept next to it
+    private final boolean stableIds; //Keep IDs on removal instead of renumbering
+    private int nextId; //Monotonic ID counter, persisted with the snapshot
+    private List<Runnable> undoLog; //Inverse of every change of the open batch, null outside of a batch
 
     /**
      * Loads tasks from persistent storage on initialization
+     * Removed tasks free their ID and the remaining tasks are renumbered
      */
     public TaskManager() {
-        this.tasks = DataPersistence.loadTasks();
+        this(false);
+    }
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     * Latest snapshot is read first, then the journal is replayed on top of it
+     *
+     * @param stableIds true to keep task IDs unchanged when other tasks are removed
+     */
+    public TaskManager(boolean stableIds) {
+        this(stableIds, Durability.BATCHED);
+    }
+
+    /**
+     * Loads tasks from persistent storage on initialization
+     * Changes are written to disk by a background writer, durability controls when they are forced to disk
+     *
+     * @param stableIds true to keep task IDs unchanged when other tasks are removed
+     * @param durability when journal records are forced to disk
+     */
+    public TaskManager(boolean stableIds, Durability durability) {
+        this(Paths.get(""), stableIds, durability);
+    }
+
+    /**
+     * Loads the task list stored in the given directory, used for lists kept apart from the working directory
+     *
+     * @param directory the directory with the data and journal files, must exist
+     * @param stableIds true to keep task IDs unchanged when other tasks are removed
+     * @param durability when journal records are forced to disk
+     */
+    public TaskManager(Path directory, boolean stableIds, Durability durability) {
+        this.stableIds = stableIds;
+        this.dataFile = directory.resolve(DataPersistence.DATA_FILE);
+        this.journal = new TaskJournal(directory.resolve(DataPersistence.JOURNAL_FILE).toFile(), dataFile,
+                TaskJournal.DEFAULT_CHECKPOINT_INTERVAL, durability);
+
+        TaskSnapshot snapshot = DataPersistence.loadTasks(dataFile, journal);
+        this.tasks = snapshot.getTasks();
+        this.index = snapshot.getIndex();
+        this.nextId = snapshot.getNextId();
+        this.currentSort = snapshot.getViewOrder();
+
+        if (!stableIds) {
+            //Renumbering keeps IDs at 1..n, so the counter always continues after the highest ID
+            int maxId = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                maxId = Math.max(maxId, LazyTaskList.peekId(tasks, i)); //IDs are read without decoding tasks
+            }
+            this.nextId = maxId + 1;
+        }
+
+        this.secondaryIndex = new SecondaryIndex(tasks);
+        this.textIndex = new TextIndex(tasks);
+        listeners.add(secondaryIndex);
+        listeners.add(textIndex);
+        listeners.add(queryCache);
+        for (TaskSort order : TaskSort.values()) {
+            SortIndex sortIndex = new SortIndex(tasks, order); //Built on first use of the order
+            sortIndexes.put(order, sortIndex);
+            listeners.add(sortIndex);
+        }
+        this.planner = new QueryPlanner(tasks, index, secondaryIndex, textIndex, sortIndexes);
+        setParallelScan(ParallelScan.commonPool()); //Large scans only, smaller ones stay on the calling thread
+    }
+
+    /**
+     * Sets how text searches and query filters check many candidates, results and their order are the same in every mode
+     *
+     * @param scan ParallelScan.SEQUENTIAL, the common pool or a pool with a fixed number of threads
+     */
+    public void setParallelScan(ParallelScan scan) {
+        textIndex.setScan(scan);
+        planner.setScan(scan);
+    }
+
+    /**
+     * Registers a listener for task changes made through this manager
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(TaskListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TaskListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireAdded(Task task) {
+        for (TaskListener listener : listeners) {
+            listener.taskAdded(task);
+        }
+    }
+
+    private void fireRemoved(Task task) {
+        for (TaskListener listener : listeners) {
+            listener.taskRemoved(task);
+        }
+    }
+
+    private void fireUpdated(Task task, TaskField field, Object oldValue) {
+        for (TaskListener listener : listeners) {
+            listener.taskUpdated(task, field, oldValue);
+        }
+    }
+
+    private void fireReset() {
+        for (TaskListener listener : listeners) {
+            listener.tasksReset(tasks);
+        }
+    }
+
+    private void fireRenumbered(int[] oldIds) {
+        for (TaskListener listener : listeners) {
+            listener.tasksRenumbered(tasks, oldIds);
+        }
     }
 
     /**
      * Clears all tasks from memory and deletes data file
+     *
+     * @throws IllegalStateException if a batch is open, deleted files cannot be rolled back
      */
     public void deleteAllData() {
-        tasks.clear();
-        DataPersistence.deleteSavedData();
+        if (undoLog != null) {
+            throw new IllegalStateException("Cannot delete all data while a batch is open");
+        }
+
+        tasks.clear(); //Also releases a mapped snapshot, so its file can be deleted
+        index.clear();
+        nextId = 1;
+        currentSort = null; //Display order is stored with the data
+        fireReset();
+        journal.delete();
+        DataPersistence.deleteSavedData(dataFile);
+    }
+
+    /**
+     * Returns future completed when all changes made so far are written
+     * With BATCHED durability this also means they are on disk
+     *
+     * @return future of the last journal write
+     */
+    public CompletableFuture<Void> lastWrite() {
+        return journal.lastWrite();
+    }
+
+    /**
+     * Writes all pending changes and stops the background writer
+     * Should be called before the program exits
+     */
+    public void close() {
+        journal.close();
+    }
+
+    /**
+     * Starts a batch: changes made through this manager are applied in memory right away,
+     * but written only when the batch is committed - as one journal record, with one write and one fsync
+     * Replay after a crash applies the whole batch or nothing of it
+     * Use with try-with-resources, a batch closed without commit is rolled back
+     *
+     * @return the open batch
+     * @throws IllegalStateException if a batch is already open
+     */
+    public TaskBatch beginBatch() {
+        journal.beginBatch();
+        undoLog = new ArrayList<>();
+        return new TaskBatch(this);
+    }
+
+    /**
+     * Writes the changes of the open batch, called by TaskBatch.commit
+     */
+    CompletableFuture<Void> commitBatch() {
+        undoLog = null;
+        CompletableFuture<Void> written = journal.commitBatch();
+        checkpointIfNeeded();
+        return written;
+    }
+
+    /**
+     * Undoes the changes of the open batch in reverse order, called by TaskBatch.rollback
+     */
+    void rollbackBatch() {
+        List<Runnable> undo = undoLog;
+        undoLog = null;
+        for (int i = undo.size() - 1; i >= 0; i--) {
+            undo.get(i).run();
+        }
+        journal.rollbackBatch();
+    }
+
+    private void recordUndo(Runnable undo) {
+        if (undoLog != null) {
+            undoLog.add(undo);
+        }
+    }
+
+    /**
+     * Runs a bulk change in its own batch, or as part of the batch already open
+     */
+    private int inBatch(IntSupplier change) {
+        if (undoLog != null) {
+            return change.getAsInt();
+        }
+
+        try (TaskBatch batch = beginBatch()) {
+            int changed = change.getAsInt();
+            batch.commit();
+            return changed;
+        }
+    }
+
+    /**
+     * Compacts the journal into a new snapshot once enough changes were logged
+     * Called after every logged change instead of rewriting the whole file
+     */
+    private void checkpointIfNeeded() {
+        if (undoLog != null) {
+            return; //Batch is written and checkpointed on commit
+        }
+
+        journal.awaitDurability();
+        if (journal.needsCheckpoint()) {
+            journal.checkpoint(tasks, nextId);
+        }
     }
 
     /**
-     * Adds new task with auto-generated ID (max existing ID + 1)
+     * Adds new task with auto-generated ID from the ID counter
      *
      * @param task the task to add to the task list
      */
     public void addTask(Task task) {
-        int maxId = tasks.stream()
-                .mapToInt(Task::getId)
-                .max()
-                .orElse(0); //Start from 1 if list is empty
-        task.setId(maxId + 1);
+        long start = System.nanoTime();
+        int previousNextId = nextId;
+        task.setId(nextId++);
         tasks.add(task);
-        DataPersistence.saveTasks(tasks); //Auto-save after changes
+        index.put(task);
+        fireAdded(task);
+        journal.logAdd(task); //Auto-save after changes
+        recordUndo(() -> {
+            tasks.remove(tasks.size() - 1); //Undone in reverse order, so the task is still the last one
+            index.remove(task.getId());
+            fireRemoved(task);
+            nextId = previousNextId;
+        });
+        checkpointIfNeeded();
+        metrics.record(TaskMetrics.Operation.ADD, start);
+    }
+
+    /**
+     * Adds many tasks as one batch, or as part of the batch already open
+     * IDs are taken from the counter as one block and all tasks are written as one journal record
+     *
+     * @param newTasks the tasks to add, their IDs are set by this call
+     * @return the number of added tasks
+     * @throws IllegalArgumentException if a task already has an ID
+     */
+    @Override
+    public int addTasks(List<Task> newTasks) {
+        for (Task task : newTasks) {
+            if (task.getId() != 0) {
+                throw new IllegalArgumentException("Task already has ID " + task.getId());
+            }
+        }
+
+        long start = System.nanoTime();
+        int added = inBatch(() -> {
+            int firstId = nextId;
+            int firstPosition = tasks.size();
+            nextId += newTasks.size(); //One block of IDs for the whole list
+
+            for (int i = 0; i < newTasks.size(); i++) {
+                Task task = newTasks.get(i);
+                task.setId(firstId + i);
+                tasks.add(task);
+                index.put(task);
+                fireAdded(task);
+                journal.logAdd(task);
+            }
+
+            recordUndo(() -> {
+                BitSet positions = new BitSet();
+                positions.set(firstPosition, firstPosition + newTasks.size());
+                LazyTaskList.removeAt(tasks, positions);
+                for (Task task : newTasks) {
+                    index.remove(task.getId());
+                    fireRemoved(task);
+                }
+                nextId = firstId;
+            });
+            return newTasks.size();
+        });
+        metrics.record(TaskMetrics.Operation.ADD_BATCH, start);
+        return added;
     }
 
     /**
@@ -51,43 +353,101 @@ public class TaskManager {
      * @param filter the filter criteria to apply when displaying tasks
      */
     public void viewTasks(TaskFilter filter) {
-        System.out.println("\n ========= To-Do List ========\n");
+        viewTasks(filter, 0, Integer.MAX_VALUE);
+    }
 
-        List<Task> filteredTasks = new ArrayList<>();
+    /**
+     * Displays one page of tasks filtered by completion status and due date
+     * Tasks are streamed from the indexes into a buffered printer, no result list is built
+     *
+     * @param filter the filter criteria to apply when displaying tasks
+     * @param offset the number of tasks before the page
+     * @param limit the maximum number of tasks on the page
+     * @return true if more tasks follow the page
+     */
+    public boolean viewTasks(TaskFilter filter, int offset, int limit) {
+        return printPage(displayQuery(filter), offset, limit, "\n ========= To-Do List ========\n");
+    }
 
-        switch (filter) {
-            case ALL -> filteredTasks.addAll(tasks);
-            case COMPLETE -> {
-                for (Task task : tasks) {
-                    if (task.isCompleted()) {
-                        filteredTasks.add(task);
-                    }
-                }
-            }
-            case INCOMPLETE -> {
-                for (Task task : tasks) {
-                    if (!task.isCompleted()) {
-                        filteredTasks.add(task);
-                    }
-                }
-            }
-            case OVERDUE -> {
-                LocalDate today = LocalDate.now();
-                for (Task task : tasks) {
-                    if (!task.isCompleted() && task.getDueDate().isBefore(today)) {
-                        filteredTasks.add(task);
-                    }
-                }
-            }
+    /**
+     * Displays one page of query results
+     *
+     * @param query the query to run, its own offset and limit are applied first
+     * @param offset the number of result tasks before the page
+     * @param limit the maximum number of tasks on the page
+     * @return true if more tasks follow the page
+     */
+    public boolean viewTasks(TaskQuery query, int offset, int limit) {
+        return printPage(query, offset, limit, null);
+    }
+
+    private boolean printPage(TaskQuery query, int offset, int limit, String header) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page size must be positive number: " + limit);
         }
 
-        if (filteredTasks.isEmpty()) {
-            System.out.println("!No tasks found!");
+        long start = System.nanoTime();
+        long scannedBefore = planner.getScannedRows();
+        missScannedRows = 0;
+        Iterator<Task> found;
+        if (query.isUnfiltered()) {
+            int fetched = limit == Integer.MAX_VALUE ? limit : limit + 1; //One more task tells if there is a next page
+            found = planner.iterator(query, offset, fetched); //List or sort index walk, already as cheap as a cached page
         } else {
-            for (Task task : filteredTasks) {
-                System.out.println(task);
-            }
+            found = page(cachedIds(query), offset);
+        }
+
+        TaskPrinter printer = new TaskPrinter(System.out);
+        if (header != null && offset == 0) {
+            printer.println(header);
+        }
+
+        int printed = 0;
+        while (printed < limit && found.hasNext()) {
+            printer.print(found.next());
+            printed++;
+        }
+
+        if (printed == 0 && offset == 0) {
+            printer.println("!No tasks found!");
         }
+        printer.flush();
+        long scanned = query.isUnfiltered() ? planner.getScannedRows() - scannedBefore + printed : missScannedRows;
+        metrics.recordFind(TaskMetrics.Operation.VIEW, start, printed, scanned);
+        return found.hasNext();
+    }
+
+    /**
+     * Iterates over tasks matching the query without building a result list
+     * Tasks are decoded only when the iterator reaches them, the list must not be changed meanwhile
+     *
+     * @param query the query with predicates, sort keys, offset and limit
+     * @return iterator over matching tasks in query order
+     */
+    public Iterator<Task> iterate(TaskQuery query) {
+        return planner.iterator(query, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Iterates over cached result IDs from the given position, tasks are looked up as the iterator reaches them
+     */
+    private Iterator<Task> page(int[] ids, int offset) {
+        return new Iterator<>() {
+            private int position = Math.min(offset, ids.length);
+
+            @Override
+            public boolean hasNext() {
+                return position < ids.length;
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return index.get(ids[position++]);
+            }
+        };
     }
 
     /**
@@ -97,13 +457,202 @@ public class TaskManager {
      * @return the found task or null if not found
      */
     public Task findById(int id) {
-        for (Task task : tasks) {
-            if (task.getId() == id) {
-                return task;
+        long start = System.nanoTime();
+        Task task = index.get(id);
+        metrics.recordFind(TaskMetrics.Operation.FIND_BY_ID, start, task != null ? 1 : 0, 1);
+        return task;
+    }
+
+    /**
+     * Finds tasks by a range of IDs, e.g. one chunk of the IDs returned by findIds
+     * IDs of tasks removed meanwhile are skipped
+     *
+     * @param ids the task IDs
+     * @param from the first position in ids, inclusive
+     * @param to the last position in ids, exclusive
+     * @return list of found tasks in the order of the IDs
+     */
+    public List<Task> findByIds(int[] ids, int from, int to) {
+        long start = System.nanoTime();
+        List<Task> found = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Task task = index.get(ids[i]);
+            if (task != null) {
+                found.add(task);
             }
         }
+        metrics.recordFind(TaskMetrics.Operation.FIND_BY_ID, start, found.size(), to - from);
+        return found;
+    }
 
-        return null;
+    /**
+     * Returns tasks selected by a display filter without printing them
+     *
+     * @param filter the filter criteria to apply
+     * @return list of matching tasks
+     */
+    public List<Task> getTasks(TaskFilter filter) {
+        return find(displayQuery(filter));
+    }
+
+    /**
+     * Builds query of a display filter in the current display order
+     */
+    private TaskQuery displayQuery(TaskFilter filter) {
+        TaskQuery query = TaskQuery.of(filter, LocalDate.now()); //OVERDUE is a date range query, no full scan
+        if (currentSort != null) {
+            query.sortBy(currentSort); //Read from the sort index, the list is never sorted
+        }
+
+        return query;
+    }
+
+    /**
+     * Returns one page of all tasks in the given order
+     * Pages are read from the sort index, so no page costs a sort of the list
+     *
+     * @param order the sort order
+     * @param cursor the cursor of the previous page, SortIndex.FIRST for the first page
+     * @param pageSize the maximum number of tasks on the page
+     * @return the page with the cursor of the next one
+     */
+    public TaskPage getPage(TaskSort order, long cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive number: " + pageSize);
+        }
+
+        long[] keys = sortIndexes.get(order).page(cursor, pageSize + 1); //One more key tells if there is a next page
+        int count = Math.min(keys.length, pageSize);
+        List<Task> page = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            page.add(index.get(SortIndex.idOf(keys[i])));
+        }
+
+        return new TaskPage(page, count > 0 ? keys[count - 1] : cursor, keys.length > pageSize);
+    }
+
+    /**
+     * Finds tasks matching all predicates of the query
+     *
+     * @param query the query with predicates, sort keys and limit
+     * @return list of matching tasks in query order
+     */
+    public List<Task> find(TaskQuery query) {
+        long start = System.nanoTime();
+        missScannedRows = 0;
+        List<Task> found = toTasks(cachedIds(query));
+        metrics.recordFind(TaskMetrics.Operation.FIND, start, found.size(), missScannedRows);
+        return found;
+    }
+
+    /**
+     * Finds IDs of the tasks matching the query, so a large result can be resolved once and read in chunks
+     *
+     * @param query the query with predicates, sort keys and limit
+     * @return the IDs in query order, shared with the query cache and must not be changed
+     */
+    public int[] findIds(TaskQuery query) {
+        long start = System.nanoTime();
+        missScannedRows = 0;
+        int[] ids = cachedIds(query);
+        metrics.recordFind(TaskMetrics.Operation.FIND, start, ids.length, missScannedRows);
+        return ids;
+    }
+
+    /**
+     * Returns the result IDs of a query from the query cache, running the query on a miss
+     * Rows scanned on a miss are left in missScannedRows
+     */
+    private int[] cachedIds(TaskQuery query) {
+        return queryCache.get(query.cacheKey(), query.dependsOn(), () -> {
+            long scannedBefore = planner.getScannedRows();
+            int[] ids = idsOf(planner.execute(query));
+            missScannedRows = planner.getScannedRows() - scannedBefore;
+            return ids;
+        });
+    }
+
+    /**
+     * Runs one of the find methods through the query cache
+     * The key is the equivalent query in the current display order, marked with the method name
+     * A miss reads one index entry per found task, a hit reads none
+     */
+    private List<Task> findCached(TaskMetrics.Operation operation, String method, TaskQuery equivalent, Supplier<List<Task>> find) {
+        long start = System.nanoTime();
+        if (currentSort != null) {
+            equivalent.sortBy(currentSort);
+        }
+
+        missScannedRows = 0;
+        List<Task> found = toTasks(queryCache.get(method + ":" + equivalent.cacheKey(), equivalent.dependsOn(), () -> {
+            int[] ids = idsOf(find.get());
+            missScannedRows = ids.length;
+            return ids;
+        }));
+        metrics.recordFind(operation, start, found.size(), missScannedRows);
+        return found;
+    }
+
+    private static int[] idsOf(List<Task> found) {
+        int[] ids = new int[found.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = found.get(i).getId();
+        }
+        return ids;
+    }
+
+    private List<Task> toTasks(int[] ids) {
+        List<Task> found = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            found.add(index.get(id));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the task list itself, e.g. for ReminderScheduler.scheduleAll to start in sync with it
+     * Loaded tasks stay encoded until they are read, the caller must not change the list
+     *
+     * @return the live task list in insertion order
+     */
+    public List<Task> getTaskList() {
+        return tasks;
+    }
+
+    /**
+     * Returns the query result cache with its hit and miss counters
+     *
+     * @return the cache used by the find methods
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Describes which indexes the query would use, most selective first
+     *
+     * @param query the query to describe
+     * @return the query plan as text
+     */
+    public String explain(TaskQuery query) {
+        return planner.explain(query);
+    }
+
+    /**
+     * Resolves IDs found by an index query to tasks
+     * Tasks come in ID order, or in the order last chosen with one of the sort methods
+     */
+    private List<Task> toTasks(BitSet ids) {
+        if (currentSort != null) {
+            return planner.resolve(ids, currentSort); //Sort index or sort, whichever is cheaper
+        }
+
+        List<Task> found = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            found.add(index.get(id));
+        }
+
+        return found;
     }
 
     /**
@@ -113,16 +662,7 @@ public class TaskManager {
      * @return list of tasks containing the search text in their title
      */
     public List<Task> findByTitle(String searchText) {
-        List<Task> foundTasks = new ArrayList<>();
-        String searchTextLower = searchText.toLowerCase();
-
-        for (Task task : tasks) {
-            if (task.getTitle().toLowerCase().contains(searchTextLower)) {
-                foundTasks.add(task);
-            }
-        }
-
-        return foundTasks;
+        return findCached(TaskMetrics.Operation.FIND_BY_TITLE, "title", new TaskQuery().titleContains(searchText), () -> toTasks(textIndex.titleContains(searchText)));
     }
 
     /**
@@ -133,31 +673,26 @@ public class TaskManager {
      * @return list of tasks matching the description criteria
      */
     public List<Task> findByDescription(String searchText) {
-        List<Task> foundTasks = new ArrayList<>();
-        String searchTextLow = searchText.toLowerCase();
-
-        //Special case: find tasks with empty descriptions
-        if (searchText.trim().isEmpty()) {
-            for (Task task : tasks) {
-                String description = task.getDescription();
-
-                if (description.trim().isEmpty()) {
-                    foundTasks.add(task);
-                }
-            }
-
-            return foundTasks;
-        }
-
-        //Normal search: tasks containing text in description
-        for (Task task : tasks) {
-            String description = task.getDescription();
+        //Blank text finds tasks with empty descriptions
+        return findCached(TaskMetrics.Operation.FIND_BY_DESCRIPTION, "description", new TaskQuery().descriptionContains(searchText), () -> toTasks(textIndex.descriptionContains(searchText)));
+    }
 
-            if (description.toLowerCase().contains(searchTextLow)) {
-                foundTasks.add(task);
-            }
+    /**
+     * Ranked search over titles and descriptions
+     * Tasks matching more query words come first, title matches count more than description matches
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of tasks to return
+     * @return list of best matching tasks, best first
+     */
+    public List<Task> search(String query, int limit) {
+        long start = System.nanoTime();
+        List<Task> foundTasks = new ArrayList<>();
+        for (int id : textIndex.search(query, limit)) {
+            foundTasks.add(index.get(id));
         }
 
+        metrics.recordFind(TaskMetrics.Operation.SEARCH, start, foundTasks.size(), foundTasks.size());
         return foundTasks;
     }
 
@@ -168,16 +703,7 @@ public class TaskManager {
      * @return list of tasks with the specified priority
      */
     public List<Task> findByPriority(Priority taskPriority) {
-        List<Task> foundTasks = new ArrayList<>();
-
-        for (Task task : tasks) {
-            Priority priority = task.getPriority();
-            if (taskPriority.equals(priority)) {
-                foundTasks.add(task);
-            }
-        }
-
-        return foundTasks;
+        return findCached(TaskMetrics.Operation.FIND_BY_PRIORITY, "priority", new TaskQuery().priority(taskPriority), () -> toTasks(secondaryIndex.withPriority(taskPriority)));
     }
 
     /**
@@ -187,45 +713,129 @@ public class TaskManager {
      * @return list of tasks with the specified due date
      */
     public List<Task> findByDate(LocalDate date) {
-        List<Task> foundTasks = new ArrayList<>();
-
-        for (Task task : tasks) {
-            LocalDate taskDueDateDate = task.getDueDate();
-            if (taskDueDateDate.equals(date)) {
-                foundTasks.add(task);
-            }
-        }
-
-        return foundTasks;
+        return findCached(TaskMetrics.Operation.FIND_BY_DATE, "date", new TaskQuery().dueOn(date), () -> toTasks(secondaryIndex.dueOn(date)));
     }
 
     /**
      * Removes task by ID, returns true if found and deleted
+     * With stable IDs only the removed task leaves the index, otherwise all tasks are renumbered
      *
      * @param id the ID of the task to remove
      * @return true if task was found and removed, false otherwise
      */
     public boolean removeTask(int id) {
-        Task task = findById(id);
+        long start = System.nanoTime();
+        if (!index.contains(id)) {
+            metrics.record(TaskMetrics.Operation.REMOVE, start);
+            return false;
+        }
 
-        if (task != null) {
-            tasks.remove(task);
+        remove(List.of(index.get(id)));
+        checkpointIfNeeded();
+        metrics.record(TaskMetrics.Operation.REMOVE, start);
+        return true;
+    }
+
+    /**
+     * Removes every task matching the query, as one batch
+     *
+     * @param query the query selecting the tasks
+     * @return the number of removed tasks
+     */
+    public int removeTasks(TaskQuery query) {
+        List<Task> found = find(query);
+        return inBatch(() -> {
+            if (!found.isEmpty()) {
+                remove(found);
+                checkpointIfNeeded();
+            }
+            return found.size();
+        });
+    }
+
+    /**
+     * Removes tasks in one pass over the list
+     * Without stable IDs the remaining tasks are renumbered once, after all removals
+     */
+    private void remove(List<Task> removed) {
+        BitSet removedIds = new BitSet();
+        for (Task task : removed) {
+            removedIds.set(task.getId());
+        }
+
+        BitSet positions = new BitSet(tasks.size());
+        Task[] removedInOrder = new Task[removed.size()]; //List order, used by rollback
+        int[] oldIds = undoLog != null && !stableIds ? new int[tasks.size()] : null;
+        int count = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            int id = LazyTaskList.peekId(tasks, i); //Positions are found without decoding other tasks
+            if (removedIds.get(id)) {
+                positions.set(i);
+                removedInOrder[count++] = index.get(id);
+            }
+            if (oldIds != null) {
+                oldIds[i] = id;
+            }
+        }
+
+        LazyTaskList.removeAt(tasks, positions);
+        for (int i = 0; i < count; i++) {
+            Task task = removedInOrder[i];
+            index.remove(task.getId());
+            fireRemoved(task);
+
+            if (stableIds || i < count - 1) {
+                journal.logDelete(task.getId());
+            } else {
+                journal.logRemove(task.getId()); //Replay renumbers once, after the last removal
+            }
+        }
+
+        int previousNextId = nextId;
+        if (!stableIds) {
             reassignTaskId();
-            DataPersistence.saveTasks(tasks);
-            return true;
         }
 
-        return false;
+        recordUndo(() -> {
+            //Ascending positions, so every task goes back between the same neighbours
+            int i = 0;
+            for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+                tasks.add(position, removedInOrder[i++]);
+            }
+
+            if (stableIds) {
+                for (Task task : removedInOrder) {
+                    index.put(task);
+                    fireAdded(task);
+                }
+            } else {
+                int[] renumberedIds = new int[tasks.size()];
+                for (int position = 0; position < tasks.size(); position++) {
+                    renumberedIds[position] = positions.get(position) ? 0 : tasks.get(position).getId(); //Restored tasks had no ID
+                    tasks.get(position).reassignId(oldIds[position]);
+                }
+                index.rebuild(tasks);
+                nextId = previousNextId;
+                fireRenumbered(renumberedIds);
+            }
+        });
     }
 
     /**
      * Reassigns sequential IDs to all tasks after deletions
      * Prevents gaps in task numbering (1, 2, 3, 4...)
+     * Tasks are numbered in list order (insertion order), the display order does not change the list
      */
     public void reassignTaskId() {
+        int[] oldIds = new int[tasks.size()];
         for (int i = 0; i < tasks.size(); i++) {
+            oldIds[i] = tasks.get(i).getId();
             tasks.get(i).reassignId(i + 1); // Use special reassign method
         }
+
+        index.rebuild(tasks);
+        nextId = tasks.size() + 1;
+        fireRenumbered(oldIds);
     }
 
     /**
@@ -236,14 +846,24 @@ public class TaskManager {
      * @return true if task was found and updated, false otherwise
      */
     public boolean updateTitle(int id, String newName) {
-        Task task = findById(id);
+        long start = System.nanoTime();
+        Task task = index.get(id);
 
         if (task != null) {
+            String oldTitle = task.getTitle();
             task.setTitle(newName);
-            DataPersistence.saveTasks(tasks);
+            fireUpdated(task, TaskField.TITLE, oldTitle);
+            journal.logTitle(id, newName);
+            recordUndo(() -> {
+                task.setTitle(oldTitle);
+                fireUpdated(task, TaskField.TITLE, newName);
+            });
+            checkpointIfNeeded();
+            metrics.record(TaskMetrics.Operation.UPDATE, start);
             return true;
         }
 
+        metrics.record(TaskMetrics.Operation.UPDATE, start);
         return false;
     }
 
@@ -255,14 +875,24 @@ public class TaskManager {
      * @return true if task was found and updated, false otherwise
      */
     public boolean updateDescription(int id, String newDescription) {
-        Task task = findById(id);
+        long start = System.nanoTime();
+        Task task = index.get(id);
 
         if (task != null) {
+            String oldDescription = task.getDescription();
             task.setDescription(newDescription);
-            DataPersistence.saveTasks(tasks);
+            fireUpdated(task, TaskField.DESCRIPTION, oldDescription);
+            journal.logDescription(id, newDescription);
+            recordUndo(() -> {
+                task.setDescription(oldDescription);
+                fireUpdated(task, TaskField.DESCRIPTION, newDescription);
+            });
+            checkpointIfNeeded();
+            metrics.record(TaskMetrics.Operation.UPDATE, start);
             return true;
         }
 
+        metrics.record(TaskMetrics.Operation.UPDATE, start);
         return false;
     }
 
@@ -274,14 +904,24 @@ public class TaskManager {
      * @return true if task was found and updated, false otherwise
      */
     public boolean updateDate(int id, LocalDate newDate) {
-        Task task = findById(id);
+        long start = System.nanoTime();
+        Task task = index.get(id);
 
         if (task != null) {
+            LocalDate oldDate = task.getDueDate();
             task.setDueDate(newDate);
-            DataPersistence.saveTasks(tasks);
+            fireUpdated(task, TaskField.DUE_DATE, oldDate);
+            journal.logDueDate(id, newDate);
+            recordUndo(() -> {
+                task.setDueDate(oldDate);
+                fireUpdated(task, TaskField.DUE_DATE, newDate);
+            });
+            checkpointIfNeeded();
+            metrics.record(TaskMetrics.Operation.UPDATE, start);
             return true;
         }
 
+        metrics.record(TaskMetrics.Operation.UPDATE, start);
         return false;
     }
 
@@ -293,14 +933,24 @@ public class TaskManager {
      * @return true if task was found and updated, false otherwise
      */
     public boolean updatePriority(int id, Priority newPriority) {
-        Task task = findById(id);
+        long start = System.nanoTime();
+        Task task = index.get(id);
 
         if (task != null) {
+            Priority oldPriority = task.getPriority();
             task.setPriority(newPriority);
-            DataPersistence.saveTasks(tasks);
+            fireUpdated(task, TaskField.PRIORITY, oldPriority);
+            journal.logPriority(id, newPriority);
+            recordUndo(() -> {
+                task.setPriority(oldPriority);
+                fireUpdated(task, TaskField.PRIORITY, newPriority);
+            });
+            checkpointIfNeeded();
+            metrics.record(TaskMetrics.Operation.UPDATE, start);
             return true;
         }
 
+        metrics.record(TaskMetrics.Operation.UPDATE, start);
         return false;
     }
 
@@ -311,14 +961,24 @@ public class TaskManager {
      * @return true if task was found and updated, false otherwise
      */
     public boolean markCompleted(int id) {
-        Task task = findById(id);
+        long start = System.nanoTime();
+        Task task = index.get(id);
 
         if (task != null) {
+            boolean wasCompleted = task.isCompleted();
             task.setCompleted(true);
-            DataPersistence.saveTasks(tasks);
+            fireUpdated(task, TaskField.COMPLETED, wasCompleted);
+            journal.logCompleted(id, true);
+            recordUndo(() -> {
+                task.setCompleted(wasCompleted);
+                fireUpdated(task, TaskField.COMPLETED, true);
+            });
+            checkpointIfNeeded();
+            metrics.record(TaskMetrics.Operation.UPDATE, start);
             return true;
         }
 
+        metrics.record(TaskMetrics.Operation.UPDATE, start);
         return false;
     }
 
@@ -329,36 +989,118 @@ public class TaskManager {
      * @return true if task was found and updated, false otherwise
      */
     public boolean markIncompleted(int id) {
-        Task task = findById(id);
+        long start = System.nanoTime();
+        Task task = index.get(id);
 
         if (task != null) {
+            boolean wasCompleted = task.isCompleted();
             task.setCompleted(false);
-            DataPersistence.saveTasks(tasks);
+            fireUpdated(task, TaskField.COMPLETED, wasCompleted);
+            journal.logCompleted(id, false);
+            recordUndo(() -> {
+                task.setCompleted(wasCompleted);
+                fireUpdated(task, TaskField.COMPLETED, false);
+            });
+            checkpointIfNeeded();
+            metrics.record(TaskMetrics.Operation.UPDATE, start);
             return true;
         }
 
+        metrics.record(TaskMetrics.Operation.UPDATE, start);
         return false;
     }
 
+    /**
+     * Marks every task matching the query as completed, as one batch
+     *
+     * @param query the query selecting the tasks
+     * @return the number of changed tasks
+     */
+    public int markCompleted(TaskQuery query) {
+        return updateMatching(query, task -> !task.isCompleted(), this::markCompleted);
+    }
+
+    /**
+     * Marks every task matching the query as incomplete, as one batch
+     *
+     * @param query the query selecting the tasks
+     * @return the number of changed tasks
+     */
+    public int markIncompleted(TaskQuery query) {
+        return updateMatching(query, Task::isCompleted, this::markIncompleted);
+    }
+
+    /**
+     * Sets the priority of every task matching the query, as one batch
+     *
+     * @param query the query selecting the tasks
+     * @param newPriority the new priority
+     * @return the number of changed tasks
+     */
+    public int updatePriority(TaskQuery query, Priority newPriority) {
+        return updateMatching(query, task -> task.getPriority() != newPriority, id -> updatePriority(id, newPriority));
+    }
+
+    /**
+     * Sets the due date of every task matching the query, as one batch
+     *
+     * @param query the query selecting the tasks
+     * @param newDate the new due date
+     * @return the number of changed tasks
+     */
+    public int updateDate(TaskQuery query, LocalDate newDate) {
+        return updateMatching(query, task -> !task.getDueDate().equals(newDate), id -> updateDate(id, newDate));
+    }
+
+    /**
+     * Applies a single-task change to every matching task that needs it
+     * Tasks are found before the first change, so changed tasks are not selected again
+     */
+    private int updateMatching(TaskQuery query, Predicate<Task> needsChange, IntPredicate change) {
+        List<Task> found = find(query);
+        return inBatch(() -> {
+            int changed = 0;
+            for (Task task : found) {
+                if (needsChange.test(task) && change.test(task.getId())) {
+                    changed++;
+                }
+            }
+            return changed;
+        });
+    }
+
     /**
      * Sorts tasks by due date in ascending order
      */
     public void sortByDueDate() {
-        tasks.sort((task1, task2) -> task1.getDueDate().compareTo(task2.getDueDate()));
+        sort(TaskSort.DUE_DATE);
     }
 
     /**
      * Sorts tasks by priority in descending order (HIGH to LOW)
      */
     public void sortByPriority() {
-        tasks.sort((task1, task2) -> task2.getPriority().compareTo(task1.getPriority()));
+        sort(TaskSort.PRIORITY);
     }
 
     /**
      * Sorts tasks by ID in ascending order
      */
     public void sortById() {
-        tasks.sort((task1, task2) -> Integer.compare(task1.getId(), task2.getId()));
+        sort(TaskSort.ID);
+    }
+
+    /**
+     * Changes the display order and logs it, the list itself keeps insertion order
+     * Sorted views come from sort indexes maintained on every change, so nothing is sorted here
+     */
+    private void sort(TaskSort order) {
+        TaskSort previousSort = currentSort;
+        currentSort = order;
+        recordUndo(() -> currentSort = previousSort);
+
+        journal.logViewOrder(order);
+        checkpointIfNeeded();
     }
 
     /**
@@ -370,4 +1112,4 @@ public class TaskManager {
         return tasks.isEmpty();
     }
 
-}
\ No newline at end of file
+}
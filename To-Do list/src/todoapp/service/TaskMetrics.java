@@ -0,0 +1,240 @@
+package todoapp.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide metrics of task operations and persistence
+ * Every operation has a latency histogram; find operations also count matched rows and rows read from
+ * the list or the indexes to find them; saves, loads and journal writes count bytes
+ * Recording is lock-free and allocation-free, reading (dump, JMX) may allocate
+ */
+public final class TaskMetrics implements TaskMetricsMXBean {
+
+    /**
+     * Measured operations
+     */
+    public enum Operation {
+        ADD,
+        ADD_BATCH,
+        FIND_BY_ID,
+        FIND,
+        FIND_BY_TITLE,
+        FIND_BY_DESCRIPTION,
+        FIND_BY_PRIORITY,
+        FIND_BY_DATE,
+        SEARCH,
+        VIEW,
+        UPDATE,
+        REMOVE,
+        CHECKPOINT,
+        SAVE,
+        LOAD,
+        JOURNAL_WRITE
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final TaskMetrics INSTANCE = new TaskMetrics();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final AtomicLongArray matched = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLongArray scanned = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLongArray bytes = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLong persistenceErrors = new AtomicLong();
+    private volatile String lastPersistenceError;
+
+    private TaskMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static TaskMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, does nothing if already registered
+     *
+     * @return false if JMX refused the registration
+     */
+    public boolean registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("todoapp:type=TaskMetrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+            return true;
+        } catch (JMException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records the time of an operation started at the given System.nanoTime
+     *
+     * @param operation the operation
+     * @param startNanos the System.nanoTime taken before the operation
+     */
+    public void record(Operation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a find operation with the number of found rows and of rows read to find them
+     *
+     * @param operation the find operation
+     * @param startNanos the System.nanoTime taken before the operation
+     * @param matchedRows the number of returned tasks
+     * @param scannedRows the number of tasks or index entries read, 0 for a cached result
+     */
+    public void recordFind(Operation operation, long startNanos, long matchedRows, long scannedRows) {
+        record(operation, startNanos);
+        matched.addAndGet(operation.ordinal(), matchedRows);
+        scanned.addAndGet(operation.ordinal(), scannedRows);
+    }
+
+    /**
+     * Records a save, load or journal write with the number of bytes it moved
+     *
+     * @param operation the persistence operation
+     * @param startNanos the System.nanoTime taken before the operation
+     * @param byteCount the bytes written or read
+     */
+    public void recordIo(Operation operation, long startNanos, long byteCount) {
+        record(operation, startNanos);
+        bytes.addAndGet(operation.ordinal(), byteCount);
+    }
+
+    /**
+     * Counts a failed save, load or journal write
+     *
+     * @param message the error message, also kept as the last error
+     */
+    public void persistenceError(String message) {
+        persistenceErrors.incrementAndGet();
+        lastPersistenceError = message;
+    }
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return longs(operation -> latencies[operation.ordinal()].getCount());
+    }
+
+    @Override
+    public Map<String, Double> getMeanMicros() {
+        return doubles(operation -> latencies[operation.ordinal()].getMean() / 1000);
+    }
+
+    @Override
+    public Map<String, Double> getP50Micros() {
+        return doubles(operation -> latencies[operation.ordinal()].getValueAtPercentile(50) / 1000.0);
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        return doubles(operation -> latencies[operation.ordinal()].getValueAtPercentile(99) / 1000.0);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        return doubles(operation -> latencies[operation.ordinal()].getMax() / 1000.0);
+    }
+
+    @Override
+    public Map<String, Long> getRowsMatched() {
+        return longs(operation -> matched.get(operation.ordinal()));
+    }
+
+    @Override
+    public Map<String, Long> getRowsScanned() {
+        return longs(operation -> scanned.get(operation.ordinal()));
+    }
+
+    @Override
+    public Map<String, Long> getBytes() {
+        return longs(operation -> bytes.get(operation.ordinal()));
+    }
+
+    @Override
+    public long getPersistenceErrors() {
+        return persistenceErrors.get();
+    }
+
+    @Override
+    public String getLastPersistenceError() {
+        return lastPersistenceError;
+    }
+
+    private static Map<String, Long> longs(ToLongFunction<Operation> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            values.put(operation.name(), value.applyAsLong(operation));
+        }
+        return values;
+    }
+
+    private static Map<String, Double> doubles(ToDoubleFunction<Operation> value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            values.put(operation.name(), value.applyAsDouble(operation));
+        }
+        return values;
+    }
+
+    /**
+     * Formats all operations that were recorded at least once, latencies in microseconds
+     *
+     * @return the metrics as a text table
+     */
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-20s %10s %10s %10s %10s %10s %12s %12s %14s%n",
+                "operation", "count", "mean us", "p50 us", "p99 us", "max us", "matched", "scanned", "bytes"));
+
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram latency = latencies[operation.ordinal()];
+            if (latency.getCount() == 0) {
+                continue;
+            }
+
+            text.append(String.format(Locale.ROOT, "%-20s %10d %10.1f %10.1f %10.1f %10.1f %12d %12d %14d%n",
+                    operation, latency.getCount(), latency.getMean() / 1000, latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0, latency.getMax() / 1000.0,
+                    matched.get(operation.ordinal()), scanned.get(operation.ordinal()), bytes.get(operation.ordinal())));
+        }
+
+        text.append("Persistence errors: ").append(persistenceErrors.get());
+        if (lastPersistenceError != null) {
+            text.append(" (last: ").append(lastPersistenceError).append(')');
+        }
+        return text.append(System.lineSeparator()).toString();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i].reset();
+            matched.set(i, 0);
+            scanned.set(i, 0);
+            bytes.set(i, 0);
+        }
+        persistenceErrors.set(0);
+        lastPersistenceError = null;
+    }
+}
@@ -0,0 +1,40 @@
+package todoapp.service;
+
+import java.util.Map;
+
+/**
+ * JMX view of TaskMetrics, registered as todoapp:type=TaskMetrics
+ * Latencies are in microseconds, maps are keyed by operation name
+ */
+public interface TaskMetricsMXBean {
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP50Micros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getMaxMicros();
+
+    Map<String, Long> getRowsMatched();
+
+    Map<String, Long> getRowsScanned();
+
+    /**
+     * Bytes written by snapshot saves and journal writes, and read by loads
+     */
+    Map<String, Long> getBytes();
+
+    long getPersistenceErrors();
+
+    String getLastPersistenceError();
+
+    /**
+     * Returns all metrics as text, same as the Main menu shows
+     */
+    String dump();
+
+    void reset();
+}
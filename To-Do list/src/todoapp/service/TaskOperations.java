@@ -0,0 +1,108 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Task operations shared by all task manager implementations
+ * Lets front ends and benchmarks work with TaskManager, ConcurrentTaskManager or the other task stores alike
+ */
+public interface TaskOperations {
+
+    /**
+     * Adds new task and assigns its ID
+     *
+     * @param task the task to add, its ID is set by this call
+     */
+    void addTask(Task task);
+
+    /**
+     * Adds many tasks at once and assigns their IDs
+     * Implementations may allocate the IDs as one block and save all tasks with a single write
+     *
+     * @param tasks the tasks to add, their IDs are set by this call
+     * @return the number of added tasks
+     */
+    default int addTasks(List<Task> tasks) {
+        for (Task task : tasks) {
+            addTask(task);
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Finds task by unique ID
+     *
+     * @param id the ID of the task to find
+     * @return the found task or null if not found
+     */
+    Task findById(int id);
+
+    /**
+     * Finds tasks whose title contains the text, ignoring case
+     *
+     * @param searchText the text to search for
+     * @return list of matching tasks
+     */
+    List<Task> findByTitle(String searchText);
+
+    /**
+     * Finds tasks whose description contains the text, ignoring case
+     *
+     * @param searchText the text to search for, blank text finds tasks with empty descriptions
+     * @return list of matching tasks
+     */
+    List<Task> findByDescription(String searchText);
+
+    /**
+     * Finds tasks by priority level
+     *
+     * @param priority the priority to filter by
+     * @return list of matching tasks
+     */
+    List<Task> findByPriority(Priority priority);
+
+    /**
+     * Finds tasks by exact due date
+     *
+     * @param date the due date to search for
+     * @return list of matching tasks
+     */
+    List<Task> findByDate(LocalDate date);
+
+    /**
+     * Returns tasks selected by a display filter
+     *
+     * @param filter the filter to apply
+     * @return list of matching tasks
+     */
+    List<Task> getTasks(TaskFilter filter);
+
+    boolean removeTask(int id);
+
+    boolean updateTitle(int id, String newName);
+
+    boolean updateDescription(int id, String newDescription);
+
+    boolean updateDate(int id, LocalDate newDate);
+
+    boolean updatePriority(int id, Priority newPriority);
+
+    boolean markCompleted(int id);
+
+    boolean markIncompleted(int id);
+
+    boolean isTaskListEmpty();
+
+    /**
+     * Removes all tasks and deletes saved data
+     */
+    void deleteAllData();
+
+    /**
+     * Writes all pending changes and stops the background writer
+     */
+    void close();
+}
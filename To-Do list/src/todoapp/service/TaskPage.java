@@ -0,0 +1,37 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.util.List;
+
+/**
+ * One page of a sorted task view returned by TaskManager.getPage
+ * The next page is requested with the cursor of this one
+ */
+public class TaskPage {
+    private final List<Task> tasks;
+    private final long nextCursor;
+    private final boolean hasMore;
+
+    public TaskPage(List<Task> tasks, long nextCursor, boolean hasMore) {
+        this.tasks = tasks;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Returns cursor of the page after this one, the sort index key of its last task
+     *
+     * @return the cursor to pass to TaskManager.getPage
+     */
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,55 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.io.PrintStream;
+
+/**
+ * Buffered console output for task lists
+ * Tasks are rendered into one reusable buffer that is written in large chunks,
+ * instead of one println (and one flush of the console) per task
+ */
+public class TaskPrinter {
+    private static final int CHUNK_SIZE = 64 * 1024; //Characters collected before a write
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 1024);
+
+    public TaskPrinter(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Prints a task followed by an empty line, same output as println(task)
+     *
+     * @param task the task to print
+     */
+    public void print(Task task) {
+        task.appendTo(buffer);
+        buffer.append(LINE_SEPARATOR);
+        writeIfFull();
+    }
+
+    public void println(String line) {
+        buffer.append(line).append(LINE_SEPARATOR);
+        writeIfFull();
+    }
+
+    /**
+     * Writes everything collected so far, must be called when printing is done
+     */
+    public void flush() {
+        if (!buffer.isEmpty()) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+        out.flush();
+    }
+
+    private void writeIfFull() {
+        if (buffer.length() >= CHUNK_SIZE) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.TaskField;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Combinable task query: predicates over priority, due date range, completion status and text,
+ * plus sort keys, a result offset and limit
+ * All predicates must match, unset predicates match every task
+ * Executed by TaskManager.find, which lets QueryPlanner choose the indexes to use
+ */
+public class TaskQuery {
+    private EnumSet<Priority> priorities; //Null matches any priority
+    private LocalDate dueFrom; //Inclusive, null for no lower bound
+    private LocalDate dueTo; //Exclusive, null for no upper bound
+    private Boolean completed; //Null matches both
+    private String titleText;
+    private String descriptionText;
+    private final List<TaskSort> sortKeys = new ArrayList<>();
+    private int limit = Integer.MAX_VALUE;
+    private int offset;
+
+    /**
+     * Creates a query matching all tasks
+     */
+    public TaskQuery() {
+    }
+
+    /**
+     * Creates the query behind one of the display filters
+     *
+     * @param filter the display filter
+     * @param today the current date, used by OVERDUE
+     * @return the query selecting the same tasks as the filter
+     */
+    public static TaskQuery of(TaskFilter filter, LocalDate today) {
+        TaskQuery query = new TaskQuery();
+        return switch (filter) {
+            case ALL -> query;
+            case COMPLETE -> query.completed(true);
+            case INCOMPLETE -> query.completed(false);
+            case OVERDUE -> query.completed(false).dueBefore(today);
+        };
+    }
+
+    /**
+     * Matches tasks with any of the given priorities, calling it again adds more priorities
+     */
+    public TaskQuery priority(Priority... values) {
+        if (priorities == null) {
+            priorities = EnumSet.noneOf(Priority.class);
+        }
+        Collections.addAll(priorities, values);
+        return this;
+    }
+
+    /**
+     * Matches tasks due on the given date
+     */
+    public TaskQuery dueOn(LocalDate date) {
+        return dueBetween(date, date.plusDays(1));
+    }
+
+    /**
+     * Matches tasks due before the given date (exclusive)
+     */
+    public TaskQuery dueBefore(LocalDate date) {
+        dueTo = date;
+        return this;
+    }
+
+    /**
+     * Matches tasks due on or after the given date
+     */
+    public TaskQuery dueFrom(LocalDate date) {
+        dueFrom = date;
+        return this;
+    }
+
+    /**
+     * Matches tasks due from the first date (inclusive) to the second date (exclusive)
+     */
+    public TaskQuery dueBetween(LocalDate from, LocalDate to) {
+        dueFrom = from;
+        dueTo = to;
+        return this;
+    }
+
+    public TaskQuery completed(boolean isCompleted) {
+        completed = isCompleted;
+        return this;
+    }
+
+    /**
+     * Matches tasks whose title contains the text, ignoring case
+     */
+    public TaskQuery titleContains(String text) {
+        titleText = text;
+        return this;
+    }
+
+    /**
+     * Matches tasks whose description contains the text, ignoring case
+     * Blank text matches tasks with empty descriptions
+     */
+    public TaskQuery descriptionContains(String text) {
+        descriptionText = text;
+        return this;
+    }
+
+    /**
+     * Adds a sort key, results are ordered by the keys in the order they were added and then by ID
+     */
+    public TaskQuery sortBy(TaskSort sort) {
+        sortKeys.add(sort);
+        return this;
+    }
+
+    /**
+     * Limits the number of returned tasks
+     */
+    public TaskQuery limit(int maxTasks) {
+        if (maxTasks < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + maxTasks);
+        }
+        limit = maxTasks;
+        return this;
+    }
+
+    /**
+     * Skips the first tasks of the result, used together with limit to read the result page by page
+     */
+    public TaskQuery offset(int skipTasks) {
+        if (skipTasks < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + skipTasks);
+        }
+        offset = skipTasks;
+        return this;
+    }
+
+    public Set<Priority> getPriorities() {
+        return priorities;
+    }
+
+    public LocalDate getDueFrom() {
+        return dueFrom;
+    }
+
+    public LocalDate getDueTo() {
+        return dueTo;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public String getTitleText() {
+        return titleText;
+    }
+
+    public String getDescriptionText() {
+        return descriptionText;
+    }
+
+    public List<TaskSort> getSortKeys() {
+        return sortKeys;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Checks if the query has no predicates and matches every task
+     *
+     * @return true if no predicate was set
+     */
+    public boolean isUnfiltered() {
+        return priorities == null && dueFrom == null && dueTo == null && completed == null
+                && titleText == null && descriptionText == null;
+    }
+
+    /**
+     * Returns text identifying the result of the query, used as QueryCache key
+     * Queries that differ only in the case of their search texts get the same key, matching ignores case
+     *
+     * @return the normalized query
+     */
+    String cacheKey() {
+        return "priorities=" + priorities + ";due=" + dueFrom + "," + dueTo + ";completed=" + completed
+                + ";title=" + (titleText == null ? null : titleText.toLowerCase()) + ";description=" + normalizeDescription(descriptionText)
+                + ";sort=" + sortKeys + ";offset=" + offset + ";limit=" + limit;
+    }
+
+    /**
+     * Blank description texts all match empty descriptions, so they share one key
+     * Titles have no such rule, a blank title text is an ordinary substring and keeps its own key
+     */
+    private static String normalizeDescription(String text) {
+        if (text == null) {
+            return null;
+        }
+        return TextIndex.isBlank(text) ? "" : text.toLowerCase();
+    }
+
+    /**
+     * Returns the task fields the result depends on - through predicates or sort keys
+     * Results also depend on which tasks exist, that is not a field
+     *
+     * @return the fields, changing any other field cannot change the result
+     */
+    Set<TaskField> dependsOn() {
+        EnumSet<TaskField> fields = EnumSet.noneOf(TaskField.class);
+        if (priorities != null || sortKeys.contains(TaskSort.PRIORITY)) {
+            fields.add(TaskField.PRIORITY);
+        }
+        if (dueFrom != null || dueTo != null || sortKeys.contains(TaskSort.DUE_DATE)) {
+            fields.add(TaskField.DUE_DATE);
+        }
+        if (completed != null) {
+            fields.add(TaskField.COMPLETED);
+        }
+        if (titleText != null) {
+            fields.add(TaskField.TITLE);
+        }
+        if (descriptionText != null) {
+            fields.add(TaskField.DESCRIPTION);
+        }
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaskQuery other)) {
+            return false;
+        }
+
+        return limit == other.limit
+                && offset == other.offset
+                && Objects.equals(priorities, other.priorities)
+                && Objects.equals(dueFrom, other.dueFrom)
+                && Objects.equals(dueTo, other.dueTo)
+                && Objects.equals(completed, other.completed)
+                && Objects.equals(titleText, other.titleText)
+                && Objects.equals(descriptionText, other.descriptionText)
+                && sortKeys.equals(other.sortKeys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(priorities, dueFrom, dueTo, completed, titleText, descriptionText, sortKeys, limit, offset);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskQuery{priorities=" + priorities + ", due=[" + dueFrom + ", " + dueTo + "), completed=" + completed
+                + ", title=" + titleText + ", description=" + descriptionText + ", sort=" + sortKeys + ", offset=" + offset + ", limit=" + limit + "}";
+    }
+}
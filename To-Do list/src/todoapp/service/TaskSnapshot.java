@@ -0,0 +1,44 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.util.List;
+
+/**
+ * Task state restored by DataPersistence.loadTasks
+ * Holds the task list, its ID index, the next ID to allocate and the display order
+ */
+public class TaskSnapshot {
+    private final List<Task> tasks;
+    private final TaskIdIndex index;
+    private final int nextId;
+    private final TaskSort viewOrder;
+
+    public TaskSnapshot(List<Task> tasks, TaskIdIndex index, int nextId, TaskSort viewOrder) {
+        this.tasks = tasks;
+        this.index = index;
+        this.nextId = nextId;
+        this.viewOrder = viewOrder;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public TaskIdIndex getIndex() {
+        return index;
+    }
+
+    public int getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Returns the display order last chosen by the user
+     *
+     * @return the order, null if tasks are shown in list order
+     */
+    public TaskSort getViewOrder() {
+        return viewOrder;
+    }
+
+}
@@ -0,0 +1,42 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * Sorting orders supported by TaskManager
+ * Shared by the live task list and by journal replay so both sort identically
+ */
+public enum TaskSort {
+    ID((task1, task2) -> Integer.compare(task1.getId(), task2.getId())),
+    DUE_DATE((task1, task2) -> task1.getDueDate().compareTo(task2.getDueDate())),
+    PRIORITY((task1, task2) -> task2.getPriority().compareTo(task1.getPriority())); //HIGH to LOW
+
+    private final Comparator<Task> comparator;
+
+    TaskSort(Comparator<Task> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<Task> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the sort key of a task as a number, smaller keys come first
+     * Used by SortIndex, which breaks ties by ID
+     *
+     * @param dueDate the task due date
+     * @param priority the task priority
+     * @return the sort key
+     */
+    public int sortKey(LocalDate dueDate, Priority priority) {
+        return switch (this) {
+            case ID -> 0;
+            case DUE_DATE -> (int) dueDate.toEpochDay();
+            case PRIORITY -> -priority.ordinal(); //HIGH to LOW
+        };
+    }
+}
@@ -0,0 +1,248 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming import and export of tasks in CSV or JSON Lines
+ * Neither direction holds the whole file in memory:
+ * export writes tasks as the iterator reaches them, import reads the file in chunks of records,
+ * parses the chunks in parallel and adds each one with a single bulk insert (one ID block, one journal record)
+ * At most a few chunks per CPU are read ahead, so memory stays bounded for files of any size
+ */
+public final class TaskTransfer {
+    private static final int CHUNK_SIZE = 4096; //Records parsed and added together
+    private static final int BUFFER_SIZE = 64 * 1024; //Characters collected before a write
+
+    private TaskTransfer() {
+    }
+
+    /**
+     * Writes tasks to a file, one record per task
+     *
+     * @param tasks the tasks to export, e.g. TaskManager.iterate(query)
+     * @param file the file to write, replaced if it exists
+     * @param format the file format
+     * @return the number of exported tasks
+     * @throws IOException if the file cannot be written
+     */
+    public static int exportTasks(Iterator<Task> tasks, Path file, TaskFormat format) throws IOException {
+        String separator = System.lineSeparator();
+        StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 1024);
+        int count = 0;
+
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format.header() != null) {
+                buffer.append(format.header()).append(separator);
+            }
+
+            while (tasks.hasNext()) {
+                format.write(tasks.next(), buffer);
+                buffer.append(separator);
+                count++;
+
+                if (buffer.length() >= BUFFER_SIZE) {
+                    out.append(buffer);
+                    buffer.setLength(0);
+                }
+            }
+            out.append(buffer);
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads tasks from a file and adds them with new IDs
+     * Records are parsed in parallel, but added in file order, one chunk per addTasks call
+     * Blank lines and the CSV header are skipped
+     * A malformed record stops the import, the chunks before it stay added
+     *
+     * @param manager the manager to add the tasks to
+     * @param file the file to read
+     * @param format the file format
+     * @return the number of imported tasks
+     * @throws IOException if the file cannot be read or has a malformed record (the message tells the line)
+     */
+    public static int importTasks(TaskOperations manager, Path file, TaskFormat format) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxPending = threads * 2; //Chunks read ahead of the one being added
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "task-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<List<Task>>> pending = new ArrayDeque<>();
+        int imported = 0;
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            RecordReader records = new RecordReader(in, format);
+            Chunk chunk;
+            while ((chunk = records.readChunk()) != null) {
+                Chunk parsed = chunk;
+                pending.add(parsers.submit(() -> parsed.parse(format)));
+                if (pending.size() >= maxPending) {
+                    imported += manager.addTasks(await(pending.poll(), imported));
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                imported += manager.addTasks(await(pending.poll(), imported));
+            }
+        } finally {
+            for (Future<List<Task>> future : pending) {
+                future.cancel(true);
+            }
+            parsers.shutdownNow();
+        }
+
+        return imported;
+    }
+
+    private static List<Task> await(Future<List<Task>> future, int imported) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage() + " (" + imported + " tasks imported before it)", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted after " + imported + " tasks", e);
+        }
+    }
+
+    /**
+     * Raw records of one chunk with the line each of them starts at
+     */
+    private static final class Chunk {
+        private final List<String> records = new ArrayList<>(CHUNK_SIZE);
+        private final int[] lines = new int[CHUNK_SIZE];
+
+        List<Task> parse(TaskFormat format) {
+            List<Task> tasks = new ArrayList<>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                try {
+                    tasks.add(format.parse(records.get(i)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lines[i] + ": " + e.getMessage(), e);
+                }
+            }
+            return tasks;
+        }
+    }
+
+    /**
+     * Splits the input into records on the reading thread, parsing is left to the workers
+     * The input is read character by character: a CSV record with a quoted line break spans several lines,
+     * and line breaks inside quotes are kept as they are (\n, \r or \r\n)
+     */
+    private static final class RecordReader {
+        private final Reader in;
+        private final TaskFormat format;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private final StringBuilder record = new StringBuilder();
+        private int lineNumber = 1; //Line of the next character
+        private boolean afterCarriageReturn; //A line feed right after it belongs to the same line break
+        private boolean first = true;
+
+        RecordReader(Reader in, TaskFormat format) {
+            this.in = in;
+            this.format = format;
+        }
+
+        /**
+         * Reads the next chunk of records
+         *
+         * @return the chunk, null at the end of the input
+         */
+        Chunk readChunk() throws IOException {
+            Chunk chunk = new Chunk();
+
+            while (chunk.records.size() < CHUNK_SIZE) {
+                int startLine = lineNumber;
+                if (!readRecord()) {
+                    break;
+                }
+
+                String text = record.toString();
+                if (text.isBlank()) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                    if (format.isHeader(text)) {
+                        continue;
+                    }
+                }
+
+                chunk.lines[chunk.records.size()] = startLine;
+                chunk.records.add(text);
+            }
+
+            return chunk.records.isEmpty() ? null : chunk;
+        }
+
+        /**
+         * Reads characters up to the next line break outside quotes into record, without that line break
+         * Quotes are only tracked for formats whose quoted fields may contain line breaks,
+         * a quote still open at the end of the input is left to the parser to report
+         *
+         * @return false at the end of the input
+         */
+        private boolean readRecord() throws IOException {
+            record.setLength(0);
+            boolean quoted = false;
+            int c;
+
+            while ((c = read()) >= 0) {
+                boolean lineFeedOfBreak = afterCarriageReturn && c == '\n';
+                afterCarriageReturn = c == '\r';
+                if (lineFeedOfBreak) { //Line was counted at the carriage return
+                    if (quoted) {
+                        record.append('\n');
+                    }
+                    continue;
+                }
+
+                if (c == '\n' || c == '\r') {
+                    lineNumber++;
+                    if (!quoted) {
+                        return true;
+                    }
+                } else if (c == '"' && format.quotesLineBreaks()) {
+                    quoted = !quoted; //A doubled quote toggles twice
+                }
+                record.append((char) c);
+            }
+
+            return !record.isEmpty();
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package todoapp.service;
+
+import java.util.Arrays;
+
+/**
+ * Texts of one task field stored back to back in a single char array
+ * Rows address their text by offset and length, so a column of a million titles is three arrays, not a million objects
+ * Replaced and removed texts leave unused chars behind, they are dropped once they take more than half of the array
+ */
+class TextColumn {
+    private char[] chars = new char[1024];
+    private int used; //Chars written, including unused ones
+    private int live; //Chars still referenced by a row
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private int size;
+
+    void add(String value) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+
+        lengths[size] = 0;
+        size++;
+        set(size - 1, value);
+    }
+
+    /**
+     * Replaces the text of a row, the new text is appended to the end of the array
+     *
+     * @param row the row
+     * @param value the new text
+     */
+    void set(int row, String value) {
+        live -= lengths[row];
+        lengths[row] = 0; //Old text is not kept when the array is compacted
+        if (used + value.length() > chars.length) {
+            makeRoom(value.length());
+        }
+
+        value.getChars(0, value.length(), chars, used);
+        offsets[row] = used;
+        lengths[row] = value.length();
+        used += value.length();
+        live += value.length();
+    }
+
+    /**
+     * Removes a row, rows after it move one position up
+     *
+     * @param row the row to remove
+     */
+    void remove(int row) {
+        live -= lengths[row];
+        System.arraycopy(offsets, row + 1, offsets, row, size - row - 1);
+        System.arraycopy(lengths, row + 1, lengths, row, size - row - 1);
+        size--;
+    }
+
+    void clear() {
+        used = 0;
+        live = 0;
+        size = 0;
+    }
+
+    String get(int row) {
+        return new String(chars, offsets[row], lengths[row]);
+    }
+
+    /**
+     * Checks if the text of a row contains the needle, ignoring case
+     * Compares chars in place, no String is created
+     *
+     * @param row the row
+     * @param lowerNeedle the text to find, already in lower case
+     * @return true if the row text contains the needle
+     */
+    boolean containsIgnoreCase(int row, char[] lowerNeedle) {
+        int offset = offsets[row];
+        int last = offset + lengths[row] - lowerNeedle.length;
+        if (lowerNeedle.length == 0) {
+            return true;
+        }
+
+        char first = lowerNeedle[0];
+        for (int start = offset; start <= last; start++) {
+            if (Character.toLowerCase(chars[start]) != first) {
+                continue;
+            }
+
+            int i = 1;
+            while (i < lowerNeedle.length && Character.toLowerCase(chars[start + i]) == lowerNeedle[i]) {
+                i++;
+            }
+            if (i == lowerNeedle.length) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the text of a row is empty or whitespace only, same as String.trim().isEmpty()
+     *
+     * @param row the row
+     * @return true if the row text is blank
+     */
+    boolean isBlank(int row) {
+        int end = offsets[row] + lengths[row];
+        for (int i = offsets[row]; i < end; i++) {
+            if (chars[i] > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Drops unused chars if they take more than half of the array, otherwise grows it
+     */
+    private void makeRoom(int needed) {
+        char[] target = live < used / 2 && live + needed <= chars.length
+                ? new char[chars.length]
+                : new char[Math.max(chars.length * 2, live + needed)];
+
+        int position = 0;
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(chars, offsets[row], target, position, lengths[row]);
+            offsets[row] = position;
+            position += lengths[row];
+        }
+
+        chars = target;
+        used = position;
+    }
+}
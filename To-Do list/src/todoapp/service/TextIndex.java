@@ -0,0 +1,457 @@
+package todoapp.service;
+
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Inverted full-text index over task titles and descriptions
+ * Words and 3-character grams map to sorted posting lists of task IDs
+ * Substring search picks candidates from the rarest gram and checks them against the stored lowercase text,
+ * so results are the same as a case-insensitive contains() over every task
+ * Lowercase text is computed once when a task is written; a search lowercases only its query and checks
+ * candidates with String.contains (an intrinsic, vectorized by the JIT), so it allocates nothing per task
+ * Built on first query and then maintained incrementally from TaskManager changes
+ */
+public class TextIndex implements TaskListener {
+    private static final int GRAM = 3;
+    private static final int TITLE_WEIGHT = 2; //Ranking: a term found in the title counts more than in the description
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int WORD_BONUS = 1; //Ranking: extra score when the term is a whole word
+    private static final int PARALLEL_TASKS = 16_384; //Larger lists are decoded and lowercased in parallel when the index is built
+
+    private final List<Task> tasks;
+    private final FieldIndex titles = new FieldIndex();
+    private final FieldIndex descriptions = new FieldIndex();
+    private final BitSet blankDescriptions = new BitSet();
+    private ParallelScan scan = ParallelScan.SEQUENTIAL; //Checks of many stored texts are split across cores
+    private boolean built;
+
+    public TextIndex(List<Task> tasks) {
+        this.tasks = tasks;
+    }
+
+    /**
+     * Sets how candidate texts are checked, results are the same in every mode
+     *
+     * @param scan the scan mode
+     */
+    public void setScan(ParallelScan scan) {
+        this.scan = scan;
+    }
+
+    /**
+     * Finds tasks whose title contains the text, ignoring case
+     *
+     * @param searchText the text to search for
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet titleContains(String searchText) {
+        ensureBuilt();
+        return titles.contains(searchText.toLowerCase(), scan);
+    }
+
+    /**
+     * Finds tasks whose description contains the text, ignoring case
+     * Blank search text finds tasks with blank descriptions
+     *
+     * @param searchText the text to search for
+     * @return a new bitset with the matching IDs
+     */
+    public BitSet descriptionContains(String searchText) {
+        ensureBuilt();
+
+        if (isBlank(searchText)) {
+            return (BitSet) blankDescriptions.clone();
+        }
+
+        return descriptions.contains(searchText.toLowerCase(), scan);
+    }
+
+    /**
+     * Estimates how many tasks have to be checked to answer titleContains
+     *
+     * @param searchText the text to search for
+     * @return upper bound of the number of matches
+     */
+    public int estimateTitle(String searchText) {
+        ensureBuilt();
+        return titles.estimate(searchText.toLowerCase());
+    }
+
+    /**
+     * Estimates how many tasks have to be checked to answer descriptionContains
+     *
+     * @param searchText the text to search for
+     * @return upper bound of the number of matches
+     */
+    public int estimateDescription(String searchText) {
+        ensureBuilt();
+        return isBlank(searchText) ? blankDescriptions.cardinality() : descriptions.estimate(searchText.toLowerCase());
+    }
+
+    /**
+     * Returns check of single tasks against a title search, without using the gram postings
+     * The query is lowercased once here, checking a task allocates nothing
+     *
+     * @param searchText the text to search for
+     * @return predicate on task IDs, true if the title contains the text ignoring case
+     */
+    public IntPredicate titleMatcher(String searchText) {
+        ensureBuilt();
+        String query = searchText.toLowerCase();
+        return id -> titles.matches(id, query);
+    }
+
+    /**
+     * Returns check of single tasks against a description search, without using the gram postings
+     *
+     * @param searchText the text to search for, blank text matches empty descriptions
+     * @return predicate on task IDs, true if the description matches
+     */
+    public IntPredicate descriptionMatcher(String searchText) {
+        ensureBuilt();
+        if (isBlank(searchText)) {
+            return blankDescriptions::get;
+        }
+
+        String query = searchText.toLowerCase();
+        return id -> descriptions.matches(id, query);
+    }
+
+    /**
+     * Checks if text is empty or whitespace only, same as String.trim().isEmpty() without the trimmed copy
+     *
+     * @param text the text to check
+     * @return true if every char is at most ' '
+     */
+    static boolean isBlank(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ranked search for tasks matching any of the query words
+     * Every word is matched as a substring of title and description,
+     * score adds up per word and field, whole-word matches score higher
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of results
+     * @return IDs of the best matching tasks, best first (ties by ID)
+     */
+    public int[] search(String query, int limit) {
+        ensureBuilt();
+
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (String term : tokenize(query.toLowerCase())) {
+            addScores(scores, titles, term, TITLE_WEIGHT);
+            addScores(scores, descriptions, term, DESCRIPTION_WEIGHT);
+        }
+
+        List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? Integer.compare(a.getKey(), b.getKey())
+                : Integer.compare(b.getValue(), a.getValue()));
+
+        int[] ids = new int[Math.min(limit, ranked.size())];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ranked.get(i).getKey();
+        }
+
+        return ids;
+    }
+
+    private static void addScores(Map<Integer, Integer> scores, FieldIndex field, String term, int weight) {
+        BitSet matches = field.contains(term, ParallelScan.SEQUENTIAL); //Ranking is bounded by its result limit, not by the scan
+        for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+            scores.merge(id, weight, Integer::sum);
+        }
+
+        PostingList words = field.words.get(term);
+        if (words != null) {
+            for (int i = 0; i < words.size; i++) {
+                scores.merge(words.ids[i], WORD_BONUS, Integer::sum);
+            }
+        }
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        if (built) {
+            add(task);
+        }
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        if (built) {
+            titles.remove(task.getId());
+            descriptions.remove(task.getId());
+            blankDescriptions.clear(task.getId());
+        }
+    }
+
+    @Override
+    public void taskUpdated(Task task, TaskField field, Object oldValue) {
+        if (!built) {
+            return;
+        }
+
+        int id = task.getId();
+        switch (field) {
+            case TITLE -> {
+                titles.remove(id);
+                titles.add(id, task.getTitle().toLowerCase());
+            }
+            case DESCRIPTION -> {
+                descriptions.remove(id);
+                descriptions.add(id, task.getDescription().toLowerCase());
+                blankDescriptions.set(id, isBlank(task.getDescription()));
+            }
+            default -> {
+                //Only text fields are indexed here
+            }
+        }
+    }
+
+    @Override
+    public void tasksReset(List<Task> tasks) {
+        built = false; //IDs changed - rebuild on next query
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+
+        titles.clear();
+        descriptions.clear();
+        blankDescriptions.clear();
+
+        if (tasks.size() < PARALLEL_TASKS) {
+            for (Task task : tasks) {
+                add(task);
+            }
+        } else {
+            buildParallel();
+        }
+
+        built = true;
+    }
+
+    /**
+     * Decodes and lowercases all tasks on the common fork-join pool, then fills the postings in list order,
+     * so the index is the same as one built task by task
+     */
+    private void buildParallel() {
+        if (tasks instanceof LazyTaskList lazy) {
+            lazy.getStore().decodeAll(); //Afterwards get() only reads, so the list can be shared by the workers
+        }
+
+        int size = tasks.size();
+        int[] ids = new int[size];
+        String[] lowerTitles = new String[size];
+        String[] lowerDescriptions = new String[size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            Task task = tasks.get(i);
+            ids[i] = task.getId();
+            lowerTitles[i] = task.getTitle().toLowerCase();
+            lowerDescriptions[i] = task.getDescription().toLowerCase();
+        });
+
+        for (int i = 0; i < size; i++) {
+            titles.add(ids[i], lowerTitles[i]);
+            descriptions.add(ids[i], lowerDescriptions[i]);
+            blankDescriptions.set(ids[i], isBlank(lowerDescriptions[i]));
+        }
+    }
+
+    private void add(Task task) {
+        titles.add(task.getId(), task.getTitle().toLowerCase());
+        descriptions.add(task.getId(), task.getDescription().toLowerCase());
+        blankDescriptions.set(task.getId(), isBlank(task.getDescription()));
+    }
+
+    /**
+     * Splits lowercase text into words of letters and digits
+     */
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+
+        return words;
+    }
+
+    //Three UTF-16 chars packed into one key
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    /**
+     * Word and gram postings of one text field, plus the lowercase text for checking candidates
+     */
+    private static class FieldIndex {
+        private String[] values = new String[16]; //Lowercase text by task ID
+        private final BitSet present = new BitSet();
+        private final Map<Long, PostingList> grams = new HashMap<>();
+        private final Map<String, PostingList> words = new HashMap<>();
+
+        void add(int id, String text) {
+            if (id >= values.length) {
+                values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+            }
+
+            values[id] = text;
+            present.set(id);
+
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                grams.computeIfAbsent(gram(text, i), key -> new PostingList()).add(id);
+            }
+            for (String word : tokenize(text)) {
+                words.computeIfAbsent(word, key -> new PostingList()).add(id);
+            }
+        }
+
+        void remove(int id) {
+            if (!present.get(id)) {
+                return;
+            }
+
+            String text = values[id];
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                removePosting(grams, gram(text, i), id);
+            }
+            for (String word : tokenize(text)) {
+                removePosting(words, word, id);
+            }
+
+            values[id] = null;
+            present.clear(id);
+        }
+
+        private static <K> void removePosting(Map<K, PostingList> postings, K key, int id) {
+            PostingList list = postings.get(key);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(key);
+            }
+        }
+
+        boolean matches(int id, String query) {
+            return present.get(id) && values[id].contains(query);
+        }
+
+        /**
+         * Returns size of the smallest posting list of the query grams, which bounds the number of matches
+         */
+        int estimate(String query) {
+            if (query.length() < GRAM) {
+                return present.cardinality();
+            }
+
+            int smallest = Integer.MAX_VALUE;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                PostingList list = grams.get(gram(query, i));
+                if (list == null) {
+                    return 0;
+                }
+                smallest = Math.min(smallest, list.size);
+            }
+
+            return smallest;
+        }
+
+        /**
+         * Finds IDs whose text contains the lowercase query
+         * Queries shorter than a gram are checked against every stored text
+         * Candidates are checked in the given scan mode, the stored texts are only read meanwhile
+         */
+        BitSet contains(String query, ParallelScan scan) {
+            String[] texts = values;
+            if (query.length() < GRAM) {
+                return scan.filter(present, id -> texts[id].contains(query));
+            }
+
+            //Every match contains all grams of the query, the rarest one gives the fewest candidates
+            PostingList candidates = null;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                PostingList list = grams.get(gram(query, i));
+                if (list == null) {
+                    return new BitSet();
+                }
+                if (candidates == null || list.size < candidates.size) {
+                    candidates = list;
+                }
+            }
+
+            return scan.filter(candidates.ids, 0, candidates.size, id -> texts[id].contains(query));
+        }
+
+        void clear() {
+            values = new String[16];
+            present.clear();
+            grams.clear();
+            words.clear();
+        }
+    }
+
+    /**
+     * Sorted set of task IDs backed by an int array
+     */
+    private static class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return; //Same gram repeated in one text
+            }
+
+            int position = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                position = -position - 1;
+            } else if (position < size) {
+                return; //Already present
+            }
+
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
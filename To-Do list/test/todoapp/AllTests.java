@@ -0,0 +1,109 @@
+package todoapp;
+
+import todoapp.service.ColumnarTaskStoreTest;
+import todoapp.service.DataPersistenceTest;
+import todoapp.service.OffHeapTaskStoreTest;
+import todoapp.service.QueryCacheTest;
+import todoapp.service.QueryPlannerTest;
+import todoapp.service.ReminderSchedulerTest;
+import todoapp.service.SortIndexTest;
+import todoapp.service.TaskBatchTest;
+import todoapp.service.TaskCodecTest;
+import todoapp.service.TaskJournalTest;
+import todoapp.service.TaskTransferTest;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs the test classes of the test source folder, the project has no test framework
+ * Every public no-argument method named test* runs on a new instance of its class, in name order
+ *
+ * Stores that always use the working directory are tested there, so it has to be run from an empty directory:
+ * java -cp out todoapp.AllTests [TaskJournalTest ...]
+ * Exits with status 1 if a test fails
+ */
+public class AllTests {
+    private static final Class<?>[] TESTS = {
+            TaskJournalTest.class,
+            TaskCodecTest.class,
+            DataPersistenceTest.class,
+            QueryPlannerTest.class,
+            SortIndexTest.class,
+            QueryCacheTest.class,
+            TaskBatchTest.class,
+            ReminderSchedulerTest.class,
+            ColumnarTaskStoreTest.class,
+            OffHeapTaskStoreTest.class,
+            TaskTransferTest.class
+    };
+
+    //Data files of the working directory, deleted after every test
+    private static final String[] DATA_FILES = {
+            "tasks.dat", "tasks.dat.bak", "tasks.dat.tmp", "tasks.dat.damaged", "tasks.log", "tasks.log.prev"
+    };
+
+    public static void main(String[] args) {
+        if (new File("tasks.dat").exists() || new File("tasks.log").exists()) {
+            System.out.println("Error: working directory already has task data, run tests from an empty directory");
+            System.exit(1);
+        }
+
+        List<String> selected = Arrays.asList(args);
+        int passed = 0;
+        List<String> failed = new ArrayList<>();
+        for (Class<?> test : TESTS) {
+            if (!selected.isEmpty() && !selected.contains(test.getSimpleName())) {
+                continue;
+            }
+
+            for (Method method : testMethods(test)) {
+                String name = test.getSimpleName() + "." + method.getName();
+                long start = System.nanoTime();
+                try {
+                    method.invoke(test.getDeclaredConstructor().newInstance());
+                    passed++;
+                    System.out.printf("ok     %s (%d ms)%n", name, (System.nanoTime() - start) / 1_000_000);
+                } catch (InvocationTargetException e) {
+                    failed.add(name);
+                    System.out.println("FAILED " + name);
+                    e.getCause().printStackTrace(System.out);
+                } catch (ReflectiveOperationException e) {
+                    failed.add(name);
+                    System.out.println("FAILED " + name + ": " + e);
+                } finally {
+                    deleteDataFiles();
+                }
+            }
+        }
+
+        System.out.println(passed + " passed, " + failed.size() + " failed" + (failed.isEmpty() ? "" : ": " + failed));
+        System.exit(failed.isEmpty() ? 0 : 1); //Background writer and timer threads are daemons, but pools may not be
+    }
+
+    private static List<Method> testMethods(Class<?> test) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : test.getMethods()) {
+            if (method.getName().startsWith("test") && method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers())) {
+                methods.add(method);
+            }
+        }
+
+        methods.sort(Comparator.comparing(Method::getName));
+        return methods;
+    }
+
+    private static void deleteDataFiles() {
+        for (String name : DATA_FILES) {
+            File file = new File(name);
+            if (file.exists() && !file.delete()) {
+                System.out.println("Warning! Could not delete " + name);
+            }
+        }
+    }
+}
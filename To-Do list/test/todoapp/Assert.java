@@ -0,0 +1,95 @@
+package todoapp;
+
+import todoapp.model.Task;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Assertions used by the test classes, failures are thrown as AssertionError
+ */
+public final class Assert {
+
+    /**
+     * Code expected to throw, checked exceptions included
+     */
+    @FunctionalInterface
+    public interface Code {
+        void run() throws Exception;
+    }
+
+    private Assert() {
+    }
+
+    public static void fail(String message) {
+        throw new AssertionError(message);
+    }
+
+    public static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            fail(message);
+        }
+    }
+
+    public static void assertFalse(boolean condition, String message) {
+        assertTrue(!condition, message);
+    }
+
+    public static void assertEquals(Object expected, Object actual, String message) {
+        if (!Objects.equals(expected, actual)) {
+            fail(message + ": expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    public static void assertEquals(long expected, long actual, String message) {
+        if (expected != actual) {
+            fail(message + ": expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    /**
+     * Checks that the code throws an exception of the given type
+     *
+     * @param type the expected exception type
+     * @param code the code to run
+     * @return the thrown exception
+     */
+    public static <T extends Throwable> T assertThrows(Class<T> type, Code code) {
+        try {
+            code.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError("Expected " + type.getSimpleName() + " but was " + e, e);
+        }
+
+        throw new AssertionError("Expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+
+    /**
+     * Compares all fields of two tasks, Task has no equals of its own
+     */
+    public static void assertTaskEquals(Task expected, Task actual) {
+        if (expected == null || actual == null) {
+            assertTrue(expected == actual, "Expected task " + expected + " but was " + actual);
+            return;
+        }
+
+        assertEquals(expected.getId(), actual.getId(), "ID");
+        assertEquals(expected.getTitle(), actual.getTitle(), "Title of task " + expected.getId());
+        assertEquals(expected.getDescription(), actual.getDescription(), "Description of task " + expected.getId());
+        assertEquals(expected.getDueDate(), actual.getDueDate(), "Due date of task " + expected.getId());
+        assertEquals(expected.getPriority(), actual.getPriority(), "Priority of task " + expected.getId());
+        assertEquals(expected.isCompleted(), actual.isCompleted(), "Status of task " + expected.getId());
+    }
+
+    /**
+     * Compares two task lists element by element, in order
+     */
+    public static void assertTasksEqual(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.size(), actual.size(), "Task count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertTaskEquals(expected.get(i), actual.get(i));
+        }
+    }
+}
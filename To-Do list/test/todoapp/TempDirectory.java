@@ -0,0 +1,40 @@
+package todoapp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Temporary directory for the data files of one test, deleted with its contents on close
+ */
+public final class TempDirectory implements AutoCloseable {
+    private final Path path;
+
+    public TempDirectory() {
+        try {
+            path = Files.createTempDirectory("todoapp-test");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public Path resolve(String name) {
+        return path.resolve(name);
+    }
+
+    @Override
+    public void close() {
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete()); //Children first
+        } catch (IOException e) {
+            System.out.println("Warning! Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+}
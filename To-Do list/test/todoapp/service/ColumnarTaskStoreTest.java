@@ -0,0 +1,160 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static todoapp.Assert.*;
+
+/**
+ * ColumnarTaskStore gives the same results as TaskManager for the same changes, also after reloading its files
+ * The store always uses the working directory
+ */
+public class ColumnarTaskStoreTest {
+
+    private static Task copy(Task task) {
+        Task copy = new Task(task.getTitle(), task.getDescription(), task.getDueDate(), task.getPriority());
+        copy.setCompleted(task.isCompleted());
+        return copy;
+    }
+
+    /**
+     * Returns the tasks as text in ID order, every field included
+     */
+    private static List<String> describe(List<Task> tasks) {
+        List<Task> sorted = new ArrayList<>(tasks);
+        sorted.sort(TaskSort.ID.comparator());
+        List<String> described = new ArrayList<>();
+        for (Task task : sorted) {
+            described.add(task.getId() + "|" + task.getTitle() + "|" + task.getDescription() + "|" + task.getDueDate() + "|"
+                    + task.getPriority() + "|" + task.isCompleted());
+        }
+        return described;
+    }
+
+    private static void compare(TaskManager expected, TaskOperations store, Random random, String state) {
+        assertEquals(describe(expected.getTasks(TaskFilter.ALL)), describe(store.getTasks(TaskFilter.ALL)), state + ": all tasks");
+        for (TaskFilter filter : TaskFilter.values()) {
+            assertEquals(describe(expected.getTasks(filter)), describe(store.getTasks(filter)), state + ": filter " + filter);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            TaskQuery query = QueryPlannerTest.randomQuery(random); //Only used for its random texts and values
+            String text = query.getTitleText() != null ? query.getTitleText() : "e";
+            assertEquals(describe(expected.findByTitle(text)), describe(store.findByTitle(text)), state + ": title " + text);
+            assertEquals(describe(expected.findByDescription(text)), describe(store.findByDescription(text)), state + ": description " + text);
+
+            Priority priority = Priority.values()[random.nextInt(3)];
+            assertEquals(describe(expected.findByPriority(priority)), describe(store.findByPriority(priority)), state + ": priority " + priority);
+            LocalDate date = QueryPlannerTest.randomTask(random).getDueDate();
+            assertEquals(describe(expected.findByDate(date)), describe(store.findByDate(date)), state + ": date " + date);
+        }
+    }
+
+    /**
+     * Applies the same random changes to a store and to a TaskManager with stable IDs, which serves as reference
+     * Enough changes are made for the store to write a checkpoint, then it is reopened from its files
+     *
+     * @param open opens the store on the working directory
+     */
+    static void checkAgainstTaskManager(Supplier<TaskOperations> open, long seed) {
+        Random random = new Random(seed);
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager expected = new TaskManager(directory.path(), true, Durability.NONE);
+            TaskOperations store = open.get();
+
+            List<Task> added = new ArrayList<>();
+            List<Task> copies = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                Task task = QueryPlannerTest.randomTask(random);
+                task.setCompleted(random.nextInt(3) == 0);
+                added.add(task);
+                copies.add(copy(task));
+            }
+            expected.addTasks(added);
+            store.addTasks(copies);
+            compare(expected, store, random, "After adding");
+
+            for (int i = 1; i <= 2 * TaskJournal.DEFAULT_CHECKPOINT_INTERVAL; i++) {
+                change(expected, store, random);
+                if (i % 500 == 0) {
+                    compare(expected, store, random, "After " + i + " changes");
+                }
+            }
+            store.close();
+            assertTrue(Files.exists(Paths.get(DataPersistence.DATA_FILE)), "Snapshot written by a checkpoint");
+
+            store = open.get();
+            compare(expected, store, random, "Reloaded");
+            for (int i = 0; i < 100; i++) {
+                change(expected, store, random); //Changes of tasks loaded from the snapshot
+            }
+            store.close();
+
+            store = open.get();
+            compare(expected, store, random, "Reloaded twice");
+            Task task = QueryPlannerTest.randomTask(random);
+            Task taskCopy = copy(task);
+            expected.addTask(task);
+            store.addTask(taskCopy);
+            assertEquals(task.getId(), taskCopy.getId(), "ID of a task added after reloading");
+
+            store.deleteAllData();
+            store.close();
+            expected.close();
+        }
+    }
+
+    private static void change(TaskManager expected, TaskOperations store, Random random) {
+        List<Task> tasks = expected.getTasks(TaskFilter.ALL);
+        if (tasks.isEmpty() || random.nextInt(10) == 0) {
+            Task task = QueryPlannerTest.randomTask(random);
+            Task taskCopy = copy(task);
+            expected.addTask(task);
+            store.addTask(taskCopy);
+            assertEquals(task.getId(), taskCopy.getId(), "ID of an added task");
+            return;
+        }
+
+        int id = random.nextInt(5) == 0 ? tasks.size() * 3 : tasks.get(random.nextInt(tasks.size())).getId(); //Also IDs that may be missing
+        Task changed = QueryPlannerTest.randomTask(random);
+        boolean result = switch (random.nextInt(7)) {
+            case 0 -> expected.updateTitle(id, changed.getTitle()) == store.updateTitle(id, changed.getTitle());
+            case 1 -> expected.updateDescription(id, changed.getDescription()) == store.updateDescription(id, changed.getDescription());
+            case 2 -> expected.updateDate(id, changed.getDueDate()) == store.updateDate(id, changed.getDueDate());
+            case 3 -> expected.updatePriority(id, changed.getPriority()) == store.updatePriority(id, changed.getPriority());
+            case 4 -> expected.markCompleted(id) == store.markCompleted(id);
+            case 5 -> expected.markIncompleted(id) == store.markIncompleted(id);
+            default -> expected.removeTask(id) == store.removeTask(id);
+        };
+        assertTrue(result, "Same result of a change of task " + id);
+    }
+
+    public void testSameResultsAsTaskManager() {
+        checkAgainstTaskManager(() -> new ColumnarTaskStore(Durability.NONE), 7);
+    }
+
+    public void testViewsFollowUpdates() {
+        ColumnarTaskStore store = new ColumnarTaskStore(Durability.NONE);
+        Task task = TaskJournalTest.task("First", "", 1, Priority.LOW);
+        store.addTask(task);
+        store.addTask(TaskJournalTest.task("Second", "", 2, Priority.HIGH));
+
+        Task view = store.findById(2);
+        store.removeTask(1); //Moves the row of the view
+        store.updateTitle(2, "Second, renamed");
+        assertEquals("Second, renamed", view.getTitle(), "View shows the current title after its row moved");
+        view.setPriority(Priority.MEDIUM);
+        assertEquals(Priority.MEDIUM, store.findByPriority(Priority.MEDIUM).get(0).getPriority(), "Setter of a view changes the store");
+
+        store.deleteAllData();
+        store.close();
+    }
+}
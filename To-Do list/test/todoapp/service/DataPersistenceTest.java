@@ -0,0 +1,107 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static todoapp.Assert.*;
+
+/**
+ * Snapshot saves and loads of DataPersistence, including saves over the file a lazy list is mapped from
+ * and recovery from the backup snapshot when the current one is damaged or missing
+ */
+public class DataPersistenceTest {
+
+    private static TaskSnapshot load(TempDirectory directory) {
+        TaskJournal journal = new TaskJournal(directory.resolve(DataPersistence.JOURNAL_FILE).toFile(),
+                directory.resolve(DataPersistence.DATA_FILE), TaskJournal.DEFAULT_CHECKPOINT_INTERVAL, Durability.NONE);
+        return DataPersistence.loadTasks(directory.resolve(DataPersistence.DATA_FILE), journal);
+    }
+
+    public void testSaveOverMappedSnapshotReleasesMapping() {
+        try (TempDirectory directory = new TempDirectory()) {
+            Path path = directory.resolve(DataPersistence.DATA_FILE);
+            List<Task> tasks = TaskCodecTest.sampleTasks(2_000);
+            DataPersistence.saveTasks(path, tasks, 0, 4_001, null);
+
+            LazyTaskList lazy = (LazyTaskList) load(directory).getTasks();
+            assertTrue(lazy.getStore().isMapped(), "Snapshot is mapped after loading");
+            lazy.get(3).setTitle("Changed");
+
+            //Windows refuses to rename or replace the mapped file, so it has to be released by the first save
+            assertTrue(DataPersistence.saveTasks(path, lazy, 1, 4_001, null), "First save over the mapped file");
+            assertFalse(lazy.getStore().isMapped(), "Mapping released by the save");
+            assertFalse(lazy.isDecoded(1_000), "Records are still encoded after the mapping was released");
+            assertTrue(DataPersistence.saveTasks(path, lazy, 2, 4_001, null), "Second save replaces the backup");
+
+            tasks.get(3).setTitle("Changed");
+            assertTasksEqual(tasks, lazy);
+            assertTasksEqual(tasks, load(directory).getTasks());
+            assertTrue(Files.exists(directory.resolve(DataPersistence.DATA_FILE + ".bak")), "Previous snapshot kept as backup");
+        }
+    }
+
+    public void testClearedLazyListReleasesMapping() {
+        try (TempDirectory directory = new TempDirectory()) {
+            Path path = directory.resolve(DataPersistence.DATA_FILE);
+            DataPersistence.saveTasks(path, TaskCodecTest.sampleTasks(10), 0, 21, null);
+
+            LazyTaskList lazy = (LazyTaskList) load(directory).getTasks();
+            lazy.clear();
+            assertFalse(lazy.getStore().isMapped(), "Mapping released by clear");
+            DataPersistence.deleteSavedData(path);
+            assertFalse(Files.exists(path), "Snapshot deleted");
+        }
+    }
+
+    /**
+     * Two checkpoints, so there is a backup snapshot, a previous log and a current log
+     *
+     * @return the tasks as they were when the manager was closed
+     */
+    private static List<Task> writeTwoCheckpoints(TempDirectory directory) {
+        TaskManager manager = TaskJournalTest.open(directory, true);
+        for (int i = 0; i < 2 * TaskJournal.DEFAULT_CHECKPOINT_INTERVAL + 10; i++) {
+            manager.addTask(TaskJournalTest.task("Task " + i, "Description " + i, i % 40, Priority.values()[i % 3]));
+            if (i % 100 == 99) {
+                manager.markCompleted(i / 2); //Changes of tasks stored in older snapshots
+                manager.removeTask(i / 2 + 1);
+            }
+        }
+        List<Task> expected = manager.getTasks(TaskFilter.ALL);
+        manager.close();
+        return expected;
+    }
+
+    public void testDamagedSnapshotIsRebuiltFromBackupAndJournal() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            List<Task> expected = writeTwoCheckpoints(directory);
+            Path path = directory.resolve(DataPersistence.DATA_FILE);
+            assertTrue(Files.exists(directory.resolve(DataPersistence.DATA_FILE + ".bak")), "Backup written by the second checkpoint");
+
+            byte[] bytes = Files.readAllBytes(path);
+            bytes[TaskCodec.HEADER_SIZE + 40] ^= 0x01; //Inside the first records
+            Files.write(path, bytes);
+
+            TaskManager recovered = TaskJournalTest.open(directory, true);
+            assertTasksEqual(expected, recovered.getTasks(TaskFilter.ALL));
+            recovered.close();
+            assertTrue(Files.exists(directory.resolve(DataPersistence.DATA_FILE + ".damaged")), "Damaged snapshot kept aside");
+        }
+    }
+
+    public void testMissingSnapshotIsRebuiltFromBackupAndJournal() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            List<Task> expected = writeTwoCheckpoints(directory);
+            Files.delete(directory.resolve(DataPersistence.DATA_FILE)); //Crash between the two renames of a save
+
+            TaskManager recovered = TaskJournalTest.open(directory, true);
+            assertTasksEqual(expected, recovered.getTasks(TaskFilter.ALL));
+            recovered.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.util.ArrayList;
+import java.util.List;
+
+import static todoapp.Assert.*;
+
+/**
+ * OffHeapTaskStore gives the same results as TaskManager for the same changes, also after reloading its files
+ * The store always uses the working directory
+ */
+public class OffHeapTaskStoreTest {
+
+    public void testSameResultsAsTaskManager() {
+        ColumnarTaskStoreTest.checkAgainstTaskManager(() -> new OffHeapTaskStore(Durability.NONE), 8);
+    }
+
+    public void testReturnedTasksAreCopies() {
+        OffHeapTaskStore store = new OffHeapTaskStore(Durability.NONE);
+        store.addTask(TaskJournalTest.task("First", "Description", 1, Priority.LOW));
+
+        Task found = store.findById(1);
+        found.setTitle("Changed on the copy");
+        assertEquals("First", store.findById(1).getTitle(), "Store unchanged by a setter of a returned task");
+        assertTrue(store.updateTitle(1, "Changed"), "Update of an existing task");
+        assertEquals("Changed", store.findById(1).getTitle(), "Changed through the update method");
+
+        store.deleteAllData();
+        store.close();
+    }
+
+    /**
+     * Updates of snapshot records copy them to the arena, enough of them to grow it past its initial size
+     */
+    public void testUpdatesWhileTheArenaGrows() {
+        List<Task> tasks = new ArrayList<>();
+        for (int id = 1; id <= 1_000; id++) {
+            Task task = TaskJournalTest.task("Task " + id, "d".repeat(200), 0, Priority.LOW);
+            task.setId(id);
+            tasks.add(task);
+        }
+        assertTrue(DataPersistence.saveTasks(tasks, 0, tasks.size() + 1), "Snapshot written");
+
+        OffHeapTaskStore store = new OffHeapTaskStore(Durability.NONE);
+        for (int id = 1; id < 1_000; id++) {
+            assertTrue(store.updateDate(id, TaskJournalTest.task("", "", id, Priority.LOW).getDueDate()), "Date of task " + id);
+            assertTrue(store.updatePriority(id, Priority.values()[id % 3]), "Priority of task " + id);
+        }
+        checkUpdates(store, "After the updates");
+        store.close();
+
+        store = new OffHeapTaskStore(Durability.NONE);
+        checkUpdates(store, "Reloaded");
+        store.deleteAllData();
+        store.close();
+    }
+
+    private static void checkUpdates(OffHeapTaskStore store, String state) {
+        for (int id = 1; id < 1_000; id++) {
+            Task task = store.findById(id);
+            assertEquals(TaskJournalTest.task("", "", id, Priority.LOW).getDueDate(), task.getDueDate(), state + ": date of task " + id);
+            assertEquals(Priority.values()[id % 3], task.getPriority(), state + ": priority of task " + id);
+        }
+        assertEquals(TaskJournalTest.task("", "", 0, Priority.LOW).getDueDate(), store.findById(1_000).getDueDate(), state + ": task not updated");
+    }
+}
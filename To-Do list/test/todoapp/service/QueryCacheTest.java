@@ -0,0 +1,92 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static todoapp.Assert.*;
+
+/**
+ * Results served by the QueryCache of TaskManager equal uncached results, also after changes invalidate entries
+ */
+public class QueryCacheTest {
+
+    private static TaskManager open(TempDirectory directory) {
+        TaskManager manager = new TaskManager(directory.path(), true, Durability.NONE);
+        manager.addTask(TaskJournalTest.task("Buy milk", "", 1, Priority.HIGH));
+        manager.addTask(TaskJournalTest.task("Groceries", "  ", 2, Priority.LOW));
+        manager.addTask(TaskJournalTest.task("Report", "Quarterly numbers", 3, Priority.MEDIUM));
+        return manager;
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        List<Integer> ids = new ArrayList<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
+    public void testEmptyTitleTextFirst() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = open(directory);
+            assertEquals(List.of(1, 2, 3), ids(manager.findByTitle("")), "Empty text matches every title");
+            assertEquals(List.of(1), ids(manager.findByTitle(" ")), "Blank text matches titles containing a space");
+            manager.close();
+        }
+    }
+
+    public void testBlankTitleTextFirst() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = open(directory);
+            assertEquals(List.of(1), ids(manager.findByTitle(" ")), "Blank text matches titles containing a space");
+            assertEquals(List.of(1, 2, 3), ids(manager.findByTitle("")), "Empty text matches every title");
+            assertEquals(0, manager.getQueryCache().getHits(), "Different title texts never share an entry");
+            manager.close();
+        }
+    }
+
+    public void testBlankDescriptionTextsShareEntry() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = open(directory);
+            assertEquals(List.of(1, 2), ids(manager.findByDescription(" ")), "Blank text matches empty descriptions");
+            assertEquals(List.of(1, 2), ids(manager.findByDescription("")), "Empty text matches empty descriptions");
+            assertEquals(1, manager.getQueryCache().getHits(), "Second blank text served from the cache");
+            assertEquals(List.of(3), ids(manager.findByDescription("QUARTERLY")), "Search ignores case");
+            manager.close();
+        }
+    }
+
+    public void testCachedResultsMatchLinearScan() {
+        Random random = new Random(4);
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = new TaskManager(directory.path(), false, Durability.NONE);
+            List<Task> added = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                added.add(QueryPlannerTest.randomTask(random));
+            }
+            manager.addTasks(added);
+
+            List<TaskQuery> queries = new ArrayList<>(); //Few queries, so most of them are repeated and hit the cache
+            for (int i = 0; i < 40; i++) {
+                queries.add(QueryPlannerTest.randomQuery(random));
+            }
+
+            for (int round = 0; round < 20; round++) {
+                List<Task> tasks = QueryPlannerTest.allTasks(manager);
+                for (int i = 0; i < 50; i++) {
+                    TaskQuery query = queries.get(random.nextInt(queries.size()));
+                    assertEquals(QueryPlannerTest.linearScan(tasks, query), ids(manager.find(query)), query.toString());
+                }
+                for (int i = 0; i < 10; i++) {
+                    QueryPlannerTest.randomChange(manager, tasks, random);
+                }
+            }
+            assertTrue(manager.getQueryCache().getHits() > 0, "Results were served from the cache");
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static todoapp.Assert.*;
+
+/**
+ * Queries answered by QueryPlanner from the indexes return the same tasks in the same order as a linear scan
+ * Random queries run on random task lists, also after random changes the indexes have to follow
+ */
+public class QueryPlannerTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1);
+    private static final String[] WORDS = {"report", "meeting", "Groceries", "invoice", "review", "Äpfel", "call", "x y"};
+    private static final String[] SEARCHES = {"report", "REP", "port", "grocer", "äpf", "x y", "y", "e", "zzz", "", " "};
+
+    static Task randomTask(Random random) {
+        return new Task(words(random, 1 + random.nextInt(3)), description(random), TODAY.plusDays(random.nextInt(120) - 60),
+                Priority.values()[random.nextInt(3)]);
+    }
+
+    private static String description(Random random) {
+        return switch (random.nextInt(6)) {
+            case 0 -> "";
+            case 1 -> "  \t";
+            default -> words(random, 1 + random.nextInt(5));
+        };
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    static TaskQuery randomQuery(Random random) {
+        TaskQuery query = new TaskQuery();
+        if (random.nextInt(3) == 0) {
+            query.priority(Priority.values()[random.nextInt(3)]);
+            if (random.nextBoolean()) {
+                query.priority(Priority.values()[random.nextInt(3)]);
+            }
+        }
+        if (random.nextInt(3) == 0) {
+            query.dueFrom(TODAY.plusDays(random.nextInt(120) - 60));
+        }
+        if (random.nextInt(3) == 0) {
+            query.dueBefore(TODAY.plusDays(random.nextInt(120) - 60));
+        }
+        if (random.nextInt(4) == 0) {
+            query.completed(random.nextBoolean());
+        }
+        if (random.nextInt(3) == 0) {
+            query.titleContains(SEARCHES[random.nextInt(SEARCHES.length)]);
+        }
+        if (random.nextInt(4) == 0) {
+            query.descriptionContains(SEARCHES[random.nextInt(SEARCHES.length)]);
+        }
+        for (int i = random.nextInt(4) - 1; i > 0; i--) {
+            query.sortBy(TaskSort.values()[random.nextInt(TaskSort.values().length)]);
+        }
+        if (random.nextInt(5) == 0) {
+            query.offset(random.nextInt(50));
+        }
+        if (random.nextInt(4) == 0) {
+            query.limit(random.nextInt(100));
+        }
+        return query;
+    }
+
+    /**
+     * Returns IDs of the matching tasks, the expected result computed without any index
+     */
+    static List<Integer> linearScan(List<Task> tasks, TaskQuery query) {
+        List<Task> found = new ArrayList<>();
+        for (Task task : tasks) {
+            if (matches(task, query)) {
+                found.add(task);
+            }
+        }
+
+        Comparator<Task> order = (task1, task2) -> 0;
+        for (TaskSort sort : query.getSortKeys()) {
+            order = order.thenComparing(sort.comparator());
+        }
+        found.sort(order.thenComparing(TaskSort.ID.comparator()));
+
+        List<Integer> ids = new ArrayList<>();
+        for (int i = query.getOffset(); i < found.size() && ids.size() < query.getLimit(); i++) {
+            ids.add(found.get(i).getId());
+        }
+        return ids;
+    }
+
+    private static boolean matches(Task task, TaskQuery query) {
+        if (query.getPriorities() != null && !query.getPriorities().contains(task.getPriority())) {
+            return false;
+        }
+        if (query.getDueFrom() != null && task.getDueDate().isBefore(query.getDueFrom())) {
+            return false;
+        }
+        if (query.getDueTo() != null && !task.getDueDate().isBefore(query.getDueTo())) {
+            return false;
+        }
+        if (query.getCompleted() != null && query.getCompleted() != task.isCompleted()) {
+            return false;
+        }
+        if (query.getTitleText() != null && !task.getTitle().toLowerCase().contains(query.getTitleText().toLowerCase())) {
+            return false;
+        }
+
+        String description = query.getDescriptionText();
+        if (description != null && TextIndex.isBlank(description)) {
+            return TextIndex.isBlank(task.getDescription()); //Blank text finds tasks with empty descriptions
+        }
+        return description == null || task.getDescription().toLowerCase().contains(description.toLowerCase());
+    }
+
+    static List<Task> allTasks(TaskManager manager) {
+        List<Task> tasks = new ArrayList<>();
+        manager.iterate(new TaskQuery()).forEachRemaining(tasks::add);
+        return tasks;
+    }
+
+    private static List<Integer> planned(TaskManager manager, TaskQuery query) {
+        List<Integer> ids = new ArrayList<>();
+        Iterator<Task> found = manager.iterate(query); //Planner only, the query cache is not involved
+        while (found.hasNext()) {
+            ids.add(found.next().getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Applies a random update, removal or addition
+     */
+    static void randomChange(TaskManager manager, List<Task> tasks, Random random) {
+        if (tasks.isEmpty()) {
+            manager.addTask(randomTask(random));
+            return;
+        }
+
+        int id = tasks.get(random.nextInt(tasks.size())).getId();
+        switch (random.nextInt(8)) {
+            case 0 -> manager.updateTitle(id, words(random, 1 + random.nextInt(3)));
+            case 1 -> manager.updateDescription(id, description(random));
+            case 2 -> manager.updateDate(id, TODAY.plusDays(random.nextInt(120) - 60));
+            case 3 -> manager.updatePriority(id, Priority.values()[random.nextInt(3)]);
+            case 4 -> manager.markCompleted(id);
+            case 5 -> manager.markIncompleted(id);
+            case 6 -> manager.removeTask(id);
+            default -> manager.addTask(randomTask(random));
+        }
+    }
+
+    private void checkRandomQueries(boolean stableIds, ParallelScan scan, int taskCount, long seed) {
+        Random random = new Random(seed);
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = new TaskManager(directory.path(), stableIds, Durability.NONE);
+            manager.setParallelScan(scan);
+            List<Task> added = new ArrayList<>();
+            for (int i = 0; i < taskCount; i++) {
+                Task task = randomTask(random);
+                task.setCompleted(random.nextInt(3) == 0);
+                added.add(task);
+            }
+            manager.addTasks(added);
+
+            for (int round = 0; round < 5; round++) {
+                List<Task> tasks = allTasks(manager);
+                for (int i = 0; i < 100; i++) {
+                    TaskQuery query = randomQuery(random);
+                    assertEquals(linearScan(tasks, query), planned(manager, query), query + "\n" + manager.explain(query));
+                }
+
+                for (int i = 0; i < 200; i++) {
+                    randomChange(manager, tasks, random); //IDs of removed tasks may be picked again, such changes do nothing
+                }
+            }
+            manager.close();
+        }
+    }
+
+    public void testRandomQueriesWithStableIds() {
+        checkRandomQueries(true, ParallelScan.SEQUENTIAL, 3_000, 1);
+    }
+
+    public void testRandomQueriesWithRenumbering() {
+        checkRandomQueries(false, ParallelScan.SEQUENTIAL, 1_000, 2);
+    }
+
+    public void testRandomQueriesWithParallelScans() {
+        checkRandomQueries(true, ParallelScan.withThreads(4, 256), 5_000, 3); //Low threshold, so filters and text scans are split
+    }
+}
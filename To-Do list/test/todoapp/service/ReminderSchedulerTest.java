@@ -0,0 +1,241 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static todoapp.Assert.*;
+
+/**
+ * ReminderScheduler reports every deadline once, on its day, through wheel cascades and list resets
+ */
+public class ReminderSchedulerTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1);
+
+    /**
+     * Records reminders as "due 3 2025-01-01" or "overdue 3 2024-12-31"
+     */
+    private static final class Recorder implements ReminderListener {
+        private final List<String> reminders = new ArrayList<>();
+
+        @Override
+        public void taskDue(int id, LocalDate dueDate) {
+            reminders.add("due " + id + " " + dueDate);
+        }
+
+        @Override
+        public void taskOverdue(int id, LocalDate dueDate) {
+            reminders.add("overdue " + id + " " + dueDate);
+        }
+
+        List<String> take() {
+            List<String> taken = new ArrayList<>(reminders);
+            reminders.clear();
+            return taken;
+        }
+    }
+
+    private static ReminderScheduler scheduler(Recorder recorder) {
+        ReminderScheduler scheduler = new ReminderScheduler(Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        scheduler.addListener(recorder);
+        return scheduler;
+    }
+
+    private static TaskManager managerWithTasks(TempDirectory directory, boolean stableIds) {
+        TaskManager manager = new TaskManager(directory.path(), stableIds, Durability.NONE);
+        manager.addTask(TaskJournalTest.task("A", "", 0, Priority.LOW));
+        manager.addTask(TaskJournalTest.task("B", "", -1, Priority.LOW));
+        manager.addTask(TaskJournalTest.task("C", "", 0, Priority.LOW));
+        manager.addTask(TaskJournalTest.task("D", "", 1, Priority.LOW));
+        return manager;
+    }
+
+    public void testRemoveThenResetDoesNotReportAgain() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = managerWithTasks(directory, false);
+            Recorder recorder = new Recorder();
+            ReminderScheduler scheduler = scheduler(recorder);
+            manager.addListener(scheduler);
+            scheduler.scheduleAll(manager.getTaskList());
+            assertEquals(List.of("due 1 2025-01-01", "overdue 2 2024-12-31", "due 3 2025-01-01"), recorder.take(), "Reminders of today");
+
+            manager.removeTask(1); //Renumbers B, C and D to 1, 2 and 3
+            manager.removeTask(3);
+            assertEquals(List.of(), recorder.take(), "Renumbered tasks were already reported");
+
+            manager.updateDate(2, TODAY.plusDays(1));
+            manager.updateDate(2, TODAY);
+            assertEquals(List.of(), recorder.take(), "Due date moved away and back");
+
+            manager.addTask(TaskJournalTest.task("E", "", 0, Priority.LOW));
+            assertEquals(List.of("due 3 2025-01-01"), recorder.take(), "New task with the ID of a removed one");
+
+            scheduler.advanceTo(TODAY.plusDays(1));
+            assertEquals(List.of("overdue 2 2025-01-01", "overdue 3 2025-01-01"), sorted(recorder.take()), "Overdue the next day");
+            manager.close();
+        }
+    }
+
+    public void testRolledBackAddFreesTheId() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = managerWithTasks(directory, true);
+            Recorder recorder = new Recorder();
+            ReminderScheduler scheduler = scheduler(recorder);
+            manager.addListener(scheduler);
+            scheduler.scheduleAll(manager.getTaskList());
+            recorder.take();
+
+            TaskBatch batch = manager.beginBatch();
+            manager.addTask(TaskJournalTest.task("E", "", 0, Priority.LOW));
+            batch.rollback();
+            manager.addTask(TaskJournalTest.task("F", "", 0, Priority.LOW)); //Gets the ID of E again
+            assertEquals(List.of("due 5 2025-01-01", "due 5 2025-01-01"), recorder.take(), "Both tasks reported");
+            manager.close();
+        }
+    }
+
+    public void testDeleteAllDataForgetsReportedIds() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = managerWithTasks(directory, false);
+            Recorder recorder = new Recorder();
+            ReminderScheduler scheduler = scheduler(recorder);
+            manager.addListener(scheduler);
+            scheduler.scheduleAll(manager.getTaskList());
+            recorder.take();
+
+            manager.deleteAllData();
+            assertEquals(0, scheduler.getPendingCount(), "Nothing pending without tasks");
+            manager.addTask(TaskJournalTest.task("New", "", 0, Priority.LOW));
+            assertEquals(List.of("due 1 2025-01-01"), recorder.take(), "New first task");
+            manager.close();
+        }
+    }
+
+    private static List<String> sorted(List<String> reminders) {
+        List<String> sorted = new ArrayList<>(reminders);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    /**
+     * Random due day in the range of one wheel level, or in the overflow list
+     */
+    private static long randomDueDay(Random random, long today) {
+        return switch (random.nextInt(5)) {
+            case 0 -> today + random.nextInt(7) - 3;
+            case 1 -> today + random.nextInt(64);
+            case 2 -> today + random.nextInt(4_096);
+            case 3 -> today + random.nextInt(1 << 18);
+            default -> today + (1 << 18) + random.nextInt(50_000);
+        };
+    }
+
+    /**
+     * Adds the reminders the current state asks for today, as a plain check of every task
+     */
+    private static void expectToday(Map<Integer, Task> tasks, long today, Set<String> expected) {
+        for (Task task : tasks.values()) {
+            long dueDay = task.getDueDate().toEpochDay();
+            if (!task.isCompleted() && dueDay == today) {
+                expected.add("due " + task.getId() + " " + task.getDueDate());
+            } else if (!task.isCompleted() && dueDay == today - 1) {
+                expected.add("overdue " + task.getId() + " " + task.getDueDate());
+            }
+        }
+    }
+
+    /**
+     * Expected reminders of the days after the previous one up to today, tasks did not change meanwhile
+     */
+    private static void expectDays(Map<Integer, Task> tasks, long previous, long today, Set<String> expected) {
+        for (Task task : tasks.values()) {
+            long dueDay = task.getDueDate().toEpochDay();
+            if (task.isCompleted()) {
+                continue;
+            }
+            if (dueDay > previous && dueDay <= today) {
+                expected.add("due " + task.getId() + " " + task.getDueDate());
+            }
+            if (dueDay + 1 > previous && dueDay + 1 <= today) {
+                expected.add("overdue " + task.getId() + " " + task.getDueDate());
+            }
+        }
+    }
+
+    public void testWheelCascadesMatchPlainCheck() {
+        Random random = new Random(6);
+        Recorder recorder = new Recorder();
+        ReminderScheduler scheduler = scheduler(recorder);
+        long today = TODAY.toEpochDay();
+        long end = today + (1 << 18) + 50_010; //Past the last overflow deadline
+
+        Map<Integer, Task> tasks = new HashMap<>();
+        int nextId = 1;
+        for (; nextId <= 3_000; nextId++) {
+            Task task = new Task("Task " + nextId, "", LocalDate.ofEpochDay(randomDueDay(random, today)), Priority.LOW);
+            task.setId(nextId);
+            task.setCompleted(random.nextInt(10) == 0);
+            tasks.put(nextId, task);
+        }
+
+        Set<String> expected = new HashSet<>();
+        scheduler.scheduleAll(new ArrayList<>(tasks.values()));
+        expectToday(tasks, today, expected);
+
+        List<String> reported = new ArrayList<>(recorder.take());
+        while (today < end) { //Deadlines of tasks added late may lie beyond the end
+            long previous = today;
+            today += random.nextInt(4) == 0 ? 1 + random.nextInt(500) : 1 + random.nextInt(3); //Also several days per call
+            scheduler.advanceTo(LocalDate.ofEpochDay(today));
+            expectDays(tasks, previous, today, expected);
+
+            for (int i = random.nextInt(3); i > 0; i--) {
+                Task task = tasks.get(1 + random.nextInt(nextId - 1));
+                if (task == null) {
+                    continue; //Removed before
+                }
+
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        LocalDate old = task.getDueDate();
+                        task.setDueDate(LocalDate.ofEpochDay(randomDueDay(random, today)));
+                        scheduler.taskUpdated(task, TaskField.DUE_DATE, old);
+                    }
+                    case 1 -> {
+                        task.setCompleted(!task.isCompleted());
+                        scheduler.taskUpdated(task, TaskField.COMPLETED, !task.isCompleted());
+                    }
+                    case 2 -> {
+                        tasks.remove(task.getId());
+                        scheduler.taskRemoved(task);
+                    }
+                    default -> {
+                        Task added = new Task("Task " + nextId, "", LocalDate.ofEpochDay(randomDueDay(random, today)), Priority.LOW);
+                        added.setId(nextId++);
+                        tasks.put(added.getId(), added);
+                        scheduler.taskAdded(added);
+                    }
+                }
+                expectToday(tasks, today, expected);
+            }
+            reported.addAll(recorder.take());
+        }
+
+        assertEquals(expected.size(), reported.size(), "Reminders reported once each");
+        assertEquals(expected, new HashSet<>(reported), "Reported reminders");
+        long last = today;
+        long pending = tasks.values().stream().filter(task -> !task.isCompleted() && task.getDueDate().toEpochDay() >= last).count();
+        assertEquals(pending, scheduler.getPendingCount(), "Tasks still waiting to become overdue");
+    }
+}
@@ -0,0 +1,147 @@
+package todoapp.service;
+
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import todoapp.model.TaskField;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static todoapp.Assert.*;
+
+/**
+ * SortIndex pages equal a sorted copy of the task list while leaves are split, emptied and removed
+ */
+public class SortIndexTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1);
+
+    private int nextId = 1;
+
+    private Task newTask(Random random, int days) {
+        Task task = new Task("Task " + nextId, "", TODAY.plusDays(random.nextInt(days)), Priority.values()[random.nextInt(3)]);
+        task.setId(nextId++);
+        return task;
+    }
+
+    /**
+     * Keys of all tasks, sorted as the index should hold them
+     */
+    private static long[] sortedKeys(List<Task> tasks, TaskSort order) {
+        long[] keys = new long[tasks.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Task task = tasks.get(i);
+            keys[i] = SortIndex.key(order, task.getId(), task.getDueDate(), task.getPriority());
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Compares one page of everything and a walk in pages of random size against the sorted keys
+     */
+    private static void compare(SortIndex index, List<Task> tasks, Random random, String state) {
+        long[] expected = sortedKeys(tasks, index.getOrder());
+        assertEquals(expected.length, index.size(), state + ": size");
+        assertTrue(Arrays.equals(expected, index.page(SortIndex.FIRST, Integer.MAX_VALUE)), state + ": all keys in order");
+
+        int pageSize = 1 + random.nextInt(700);
+        long cursor = SortIndex.FIRST;
+        int position = 0;
+        long[] page;
+        do {
+            page = index.page(cursor, pageSize);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(expected, position, Math.min(expected.length, position + pageSize)), page),
+                    state + ": page of " + pageSize + " at " + position);
+            position += page.length;
+            if (page.length > 0) {
+                cursor = page[page.length - 1];
+            }
+        } while (page.length == pageSize);
+        assertEquals(expected.length, position, state + ": keys walked");
+    }
+
+    private void check(TaskSort order, long seed) {
+        Random random = new Random(seed);
+        List<Task> tasks = new ArrayList<>();
+        SortIndex index = new SortIndex(tasks, order);
+        for (int i = 0; i < 1_500; i++) {
+            tasks.add(newTask(random, 30)); //Added before the first use, picked up by the build
+        }
+        compare(index, tasks, random, "Built");
+
+        for (int i = 0; i < 3_000; i++) { //Few distinct sort keys, so most inserts go into the same leaves and split them
+            Task task = newTask(random, 30);
+            tasks.add(task);
+            index.taskAdded(task);
+        }
+        compare(index, tasks, random, "After adding");
+
+        for (int i = 0; i < 3_000; i++) {
+            Task task = tasks.get(random.nextInt(tasks.size()));
+            if (random.nextBoolean()) {
+                LocalDate old = task.getDueDate();
+                task.setDueDate(TODAY.plusDays(random.nextInt(60) - 15)); //Also before the first and after the last key
+                index.taskUpdated(task, TaskField.DUE_DATE, old);
+            } else {
+                Priority old = task.getPriority();
+                task.setPriority(Priority.values()[random.nextInt(3)]);
+                index.taskUpdated(task, TaskField.PRIORITY, old);
+            }
+        }
+        compare(index, tasks, random, "After updating");
+
+        while (tasks.size() > 100) {
+            int position = random.nextInt(10) == 0 ? 0 : random.nextInt(tasks.size()); //Also the first task of the list
+            index.taskRemoved(tasks.remove(position));
+            if (tasks.size() % 1_000 == 0) {
+                compare(index, tasks, random, tasks.size() + " tasks left");
+            }
+        }
+        compare(index, tasks, random, "After removing");
+
+        while (!tasks.isEmpty()) {
+            index.taskRemoved(tasks.remove(tasks.size() - 1));
+        }
+        compare(index, tasks, random, "Empty");
+        for (int i = 0; i < 1_200; i++) {
+            Task task = newTask(random, 365);
+            tasks.add(task);
+            index.taskAdded(task);
+        }
+        compare(index, tasks, random, "Filled again after emptied");
+    }
+
+    public void testDueDateOrder() {
+        check(TaskSort.DUE_DATE, 11);
+    }
+
+    public void testPriorityOrder() {
+        check(TaskSort.PRIORITY, 12);
+    }
+
+    public void testIdOrder() {
+        check(TaskSort.ID, 13);
+    }
+
+    public void testResetRebuilds() {
+        Random random = new Random(14);
+        List<Task> tasks = new ArrayList<>();
+        SortIndex index = new SortIndex(tasks, TaskSort.DUE_DATE);
+        for (int i = 0; i < 2_000; i++) {
+            tasks.add(newTask(random, 100));
+        }
+        compare(index, tasks, random, "Built");
+
+        tasks.subList(0, 500).clear();
+        for (int i = 0; i < tasks.size(); i++) { //Renumbered as TaskManager does without stable IDs
+            Task task = tasks.get(i);
+            Task renumbered = new Task(task.getTitle(), task.getDescription(), task.getDueDate(), task.getPriority());
+            renumbered.setId(i + 1);
+            tasks.set(i, renumbered);
+        }
+        index.tasksReset(tasks);
+        compare(index, tasks, random, "Rebuilt after a reset");
+    }
+}
@@ -0,0 +1,139 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static todoapp.Assert.*;
+
+/**
+ * Batches of TaskManager changes are written as one journal record on commit and undone completely on rollback
+ */
+public class TaskBatchTest {
+
+    /**
+     * Copies the tasks, changes of the batch are made on the task objects of the manager
+     */
+    private static List<Task> copies(List<Task> tasks) {
+        List<Task> copies = new ArrayList<>();
+        for (Task task : tasks) {
+            Task copy = new Task(task.getTitle(), task.getDescription(), task.getDueDate(), task.getPriority());
+            copy.setId(task.getId());
+            copy.setCompleted(task.isCompleted());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static TaskManager openWithTasks(TempDirectory directory, boolean stableIds) {
+        TaskManager manager = TaskJournalTest.open(directory, stableIds);
+        for (int i = 0; i < 30; i++) {
+            manager.addTask(TaskJournalTest.task("Task " + i, i % 4 == 0 ? "" : "Description " + i, i % 10, Priority.values()[i % 3]));
+        }
+        return manager;
+    }
+
+    /**
+     * Every kind of change, including removals that renumber the tasks behind them
+     */
+    private static void changeEverything(TaskManager manager) {
+        manager.addTask(TaskJournalTest.task("Added", "In the batch", 3, Priority.HIGH));
+        manager.updateTitle(2, "Renamed");
+        manager.updateDescription(3, "");
+        manager.updateDate(4, manager.findById(4).getDueDate().plusDays(30));
+        manager.updatePriority(5, Priority.LOW);
+        manager.markCompleted(6);
+        manager.removeTask(7);
+        manager.removeTask(1);
+        manager.addTasks(List.of(TaskJournalTest.task("Bulk 1", "", 1, Priority.LOW), TaskJournalTest.task("Bulk 2", "", 2, Priority.LOW)));
+        manager.markCompleted(new TaskQuery().priority(Priority.HIGH));
+        manager.updateDate(new TaskQuery().dueBefore(TaskJournalTest.task("", "", 3, Priority.LOW).getDueDate()),
+                TaskJournalTest.task("", "", 50, Priority.LOW).getDueDate());
+        manager.removeTasks(new TaskQuery().titleContains("task 1"));
+        manager.sortByPriority();
+    }
+
+    private void checkRollback(boolean stableIds) {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = openWithTasks(directory, stableIds);
+            List<Task> expected = copies(manager.getTasks(TaskFilter.ALL));
+
+            TaskBatch batch = manager.beginBatch();
+            changeEverything(manager);
+            batch.rollback();
+            assertFalse(batch.isOpen(), "Batch closed by the rollback");
+
+            assertTasksEqual(expected, manager.getTasks(TaskFilter.ALL));
+            Random random = new Random(5);
+            for (int i = 0; i < 200; i++) { //Indexes are restored with the tasks
+                TaskQuery query = QueryPlannerTest.randomQuery(random);
+                List<Integer> found = new ArrayList<>();
+                manager.find(query).forEach(task -> found.add(task.getId()));
+                assertEquals(QueryPlannerTest.linearScan(expected, query), found, query.toString());
+            }
+
+            Task added = TaskJournalTest.task("After the rollback", "", 1, Priority.LOW);
+            manager.addTask(added);
+            assertEquals(31, added.getId(), "ID counter restored");
+            expected.add(copies(List.of(added)).get(0));
+            manager.close();
+
+            TaskManager reopened = TaskJournalTest.open(directory, stableIds);
+            assertTasksEqual(expected, reopened.getTasks(TaskFilter.ALL)); //Nothing of the batch was written
+            reopened.close();
+        }
+    }
+
+    public void testRollbackUndoesEveryChangeWithStableIds() {
+        checkRollback(true);
+    }
+
+    public void testRollbackUndoesEveryChangeWithRenumbering() {
+        checkRollback(false);
+    }
+
+    public void testUncommittedBatchIsRolledBackOnClose() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = openWithTasks(directory, false);
+            List<Task> expected = copies(manager.getTasks(TaskFilter.ALL));
+            TaskBatch batch = manager.beginBatch();
+            changeEverything(manager);
+            batch.close();
+            assertTasksEqual(expected, manager.getTasks(TaskFilter.ALL));
+            manager.close();
+        }
+    }
+
+    public void testCommittedBatchSurvivesRestart() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = openWithTasks(directory, false);
+            try (TaskBatch batch = manager.beginBatch()) {
+                changeEverything(manager);
+                batch.commit().join();
+                assertThrows(IllegalStateException.class, batch::commit);
+                assertThrows(IllegalStateException.class, batch::rollback);
+            }
+            manager.sortById();
+            List<Task> expected = copies(manager.getTasks(TaskFilter.ALL));
+            manager.close();
+
+            TaskManager reopened = TaskJournalTest.open(directory, false);
+            assertTasksEqual(expected, reopened.getTasks(TaskFilter.ALL));
+            reopened.close();
+        }
+    }
+
+    public void testOnlyOneBatchIsOpen() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = openWithTasks(directory, true);
+            try (TaskBatch batch = manager.beginBatch()) {
+                assertThrows(IllegalStateException.class, manager::beginBatch);
+                assertTrue(batch.isOpen(), "First batch still open");
+            }
+            manager.close();
+        }
+    }
+}
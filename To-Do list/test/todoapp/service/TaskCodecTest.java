@@ -0,0 +1,114 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static todoapp.Assert.*;
+
+/**
+ * Snapshot files written by DataPersistence read back the same through the sequential reader and the mapped store
+ */
+public class TaskCodecTest {
+
+    static List<Task> sampleTasks(int count) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            String description = i % 4 == 0 ? "" : "Description " + i + " ".repeat(i % 3) + "é€😀".repeat(i % 5);
+            Task task = new Task("Task " + i + " ü", description, LocalDate.of(2025, 1, 1).plusDays(i * 7L - 500), Priority.values()[i % 3]);
+            task.setId(i * 2); //Gaps, as left by removals with stable IDs
+            task.setCompleted(i % 3 == 0);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    private static List<Task> readSequentially(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            TaskCodec.Reader reader = new TaskCodec.Reader(channel, TaskCodec.Checksums.read(channel));
+            reader.readHeader();
+            List<Task> tasks = new ArrayList<>();
+            for (int i = 0; i < reader.getCount(); i++) {
+                tasks.add(reader.read());
+            }
+            reader.finish();
+            return tasks;
+        }
+    }
+
+    private static List<Task> readMapped(MappedTaskStore store) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            tasks.add(store.get(i));
+        }
+        return tasks;
+    }
+
+    public void testRoundTripThroughReaderAndMappedStore() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            Path path = directory.resolve(DataPersistence.DATA_FILE);
+            List<Task> tasks = sampleTasks(5_000); //Several checksum blocks
+            tasks.get(10).setTitle("x".repeat(200_000)); //Record larger than the writer buffer
+            assertTrue(DataPersistence.saveTasks(path, tasks, 77, 10_001, TaskSort.PRIORITY), "Snapshot saved");
+
+            assertTasksEqual(tasks, readSequentially(path));
+
+            MappedTaskStore store = MappedTaskStore.open(path);
+            assertEquals(77, store.getSequence(), "Journal sequence");
+            assertEquals(10_001, store.getNextId(), "ID counter");
+            assertEquals(TaskSort.PRIORITY, TaskCodec.viewOrder(store.getFlags()), "View order");
+            for (int i = 0; i < store.size(); i++) {
+                assertEquals(tasks.get(i).getId(), store.idAt(i), "ID read from the record index");
+                assertEquals(tasks.get(i).isCompleted(), store.completedAt(i), "Status read without decoding");
+                assertEquals(tasks.get(i).getDueDate().toEpochDay(), store.epochDayAt(i), "Due date read without decoding");
+            }
+            assertTasksEqual(tasks, readMapped(store));
+        }
+    }
+
+    public void testUndecodedRecordsAreCopiedRaw() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            Path first = directory.resolve("first.dat");
+            Path second = directory.resolve("second.dat");
+            List<Task> tasks = sampleTasks(300);
+            DataPersistence.saveTasks(first, tasks, 1, 601, null);
+
+            LazyTaskList lazy = new LazyTaskList(MappedTaskStore.open(first));
+            lazy.get(5).setTitle("Changed"); //Decoded, so it is encoded again
+            lazy.remove(6);
+            assertTrue(DataPersistence.saveTasks(second, lazy, 2, 601, null), "Snapshot of the lazy list saved");
+
+            tasks.get(5).setTitle("Changed");
+            tasks.remove(6);
+            assertTasksEqual(tasks, readSequentially(second));
+            assertFalse(lazy.isDecoded(100), "Raw copy must not decode records");
+        }
+    }
+
+    public void testDamagedBlockIsDetected() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            Path path = directory.resolve(DataPersistence.DATA_FILE);
+            DataPersistence.saveTasks(path, sampleTasks(3_000), 1, 6_001, null);
+
+            byte[] bytes = Files.readAllBytes(path);
+            int damaged = TaskCodec.CHECKSUM_BLOCK_SIZE + 100; //Inside a record of the second block
+            bytes[damaged] ^= 0x40;
+            Files.write(path, bytes);
+
+            IOException streamed = assertThrows(IOException.class, () -> readSequentially(path));
+            assertTrue(streamed.getMessage().contains("block 1"), "Damaged block reported: " + streamed.getMessage());
+
+            MappedTaskStore store = MappedTaskStore.open(path); //Header and index blocks are intact
+            store.get(0); //Records of the first block can still be read
+            assertThrows(IllegalStateException.class, store::verifyAll);
+        }
+    }
+}
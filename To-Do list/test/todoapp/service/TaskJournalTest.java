@@ -0,0 +1,113 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static todoapp.Assert.*;
+
+/**
+ * Changes made through TaskManager survive a restart by journal replay, with and without snapshots
+ */
+public class TaskJournalTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1);
+
+    static Task task(String title, String description, int dueInDays, Priority priority) {
+        return new Task(title, description, TODAY.plusDays(dueInDays), priority);
+    }
+
+    static TaskManager open(TempDirectory directory, boolean stableIds) {
+        return new TaskManager(directory.path(), stableIds, Durability.BATCHED);
+    }
+
+    public void testReplayRestoresEveryChange() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = open(directory, false);
+            manager.addTask(task("Buy milk", "2 liters", 10, Priority.HIGH));
+            manager.addTask(task("Call bank", "", 5, Priority.LOW));
+            manager.addTask(task("Write report", "Quarterly", 20, Priority.MEDIUM));
+            manager.updateTitle(1, "Buy oat milk");
+            manager.updateDescription(3, "Yearly");
+            manager.updateDate(2, TODAY.plusDays(7));
+            manager.updatePriority(3, Priority.HIGH);
+            manager.markCompleted(1);
+            manager.removeTask(2); //Renumbers the last task to 2
+            List<Task> expected = manager.getTasks(TaskFilter.ALL);
+            manager.close();
+
+            assertFalse(Files.exists(directory.resolve(DataPersistence.DATA_FILE)), "No snapshot before the first checkpoint");
+            TaskManager reopened = open(directory, false);
+            assertTasksEqual(expected, reopened.getTasks(TaskFilter.ALL));
+            assertEquals("Yearly", reopened.findById(2).getDescription(), "Renumbered task");
+            reopened.close();
+        }
+    }
+
+    public void testStableIdsAreKeptAndNotReused() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = open(directory, true);
+            for (int i = 0; i < 3; i++) {
+                manager.addTask(task("Task " + i, "", i, Priority.LOW));
+            }
+            manager.removeTask(2);
+            manager.removeTask(3);
+            manager.close();
+
+            TaskManager reopened = open(directory, true);
+            assertTrue(reopened.findById(1) != null && reopened.findById(2) == null, "IDs after replay");
+            Task added = task("Task 3", "", 3, Priority.LOW);
+            reopened.addTask(added);
+            assertEquals(4, added.getId(), "ID of a task added after replay");
+            reopened.close();
+        }
+    }
+
+    public void testTornRecordIsCutOffAndLaterAppendsStayReadable() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = open(directory, false);
+            manager.addTask(task("First", "", 1, Priority.LOW));
+            manager.addTask(task("Second", "", 2, Priority.LOW));
+            manager.close();
+
+            //Crash in the middle of an ADD record: sequence number, type and half of the ID
+            byte[] torn = {0, 0, 0, 0, 0, 0, 0, 3, 1, 0, 0};
+            Files.write(directory.resolve(DataPersistence.JOURNAL_FILE), torn, StandardOpenOption.APPEND);
+
+            TaskManager recovered = open(directory, false);
+            assertEquals(2, recovered.getTasks(TaskFilter.ALL).size(), "Tasks before the torn record");
+            recovered.addTask(task("Third", "", 3, Priority.HIGH));
+            recovered.close();
+
+            TaskManager reopened = open(directory, false);
+            List<Task> tasks = reopened.getTasks(TaskFilter.ALL);
+            assertEquals(3, tasks.size(), "Tasks after appending behind the repaired log");
+            assertEquals("Third", tasks.get(2).getTitle(), "Task appended after the repair");
+            reopened.close();
+        }
+    }
+
+    public void testCheckpointWritesSnapshotAndKeepsPreviousLog() {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager manager = open(directory, true);
+            for (int i = 0; i < TaskJournal.DEFAULT_CHECKPOINT_INTERVAL + 5; i++) {
+                manager.addTask(task("Task " + i, "Description " + i, i % 30, Priority.values()[i % 3]));
+            }
+            manager.markCompleted(7);
+            manager.removeTask(8);
+            List<Task> expected = manager.getTasks(TaskFilter.ALL);
+            manager.close();
+
+            assertTrue(Files.exists(directory.resolve(DataPersistence.DATA_FILE)), "Snapshot written by the checkpoint");
+            assertTrue(Files.exists(directory.resolve(DataPersistence.JOURNAL_FILE + ".prev")), "Log rotated by the checkpoint");
+
+            TaskManager reopened = open(directory, true);
+            assertTasksEqual(expected, reopened.getTasks(TaskFilter.ALL));
+            reopened.close();
+        }
+    }
+}
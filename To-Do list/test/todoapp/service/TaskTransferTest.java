@@ -0,0 +1,167 @@
+package todoapp.service;
+
+import todoapp.TempDirectory;
+import todoapp.model.Priority;
+import todoapp.model.Task;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static todoapp.Assert.*;
+
+/**
+ * Tasks exported by TaskTransfer are imported back unchanged, in CSV and JSON Lines
+ */
+public class TaskTransferTest {
+
+    /**
+     * Texts that need quoting or escaping, and some that do not
+     */
+    private static final String[] TEXTS = {
+            "Plain", "", "  spaces around  ", "a, b", "say \"hi\"", "\"", ",", "\"\"", "a\r\nb|c\rd", "line\nbreak",
+            "ends with a break\n", "\r", "tab\there", "back\\slash / slash", "control \u0001 \u001f", "é ✓ 日本", "{\"id\":1}"
+    };
+
+    private static TaskManager open(TempDirectory directory, String name) throws IOException {
+        return new TaskManager(Files.createDirectory(directory.resolve(name)), true, Durability.NONE);
+    }
+
+    /**
+     * Tasks with every text of TEXTS as title and description, then random tasks over several import chunks
+     */
+    private static List<Task> tasks() {
+        List<Task> tasks = new ArrayList<>();
+        for (String text : TEXTS) {
+            tasks.add(TaskJournalTest.task("Title " + text, text, 0, Priority.HIGH));
+            Task task = TaskJournalTest.task(text + " title", "Description " + text, -3, Priority.LOW);
+            task.setCompleted(true);
+            tasks.add(task);
+        }
+        Random random = new Random(9);
+        for (int i = 0; i < 10_000; i++) {
+            tasks.add(QueryPlannerTest.randomTask(random));
+        }
+        return tasks;
+    }
+
+    private void checkRoundTrip(TaskFormat format, String fileName) throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            TaskManager source = open(directory, "source");
+            source.addTasks(tasks());
+            Path file = directory.resolve(fileName);
+            assertEquals(source.getTasks(TaskFilter.ALL).size(), TaskTransfer.exportTasks(source.iterate(new TaskQuery()), file, format), "Exported tasks");
+
+            TaskManager target = open(directory, "target");
+            assertEquals(source.getTasks(TaskFilter.ALL).size(), TaskTransfer.importTasks(target, file, format), "Imported tasks");
+            assertTasksEqual(source.getTasks(TaskFilter.ALL), target.getTasks(TaskFilter.ALL));
+            source.close();
+            target.close();
+        }
+    }
+
+    public void testCsvRoundTrip() throws IOException {
+        checkRoundTrip(TaskFormat.CSV, "tasks.csv");
+    }
+
+    public void testJsonLinesRoundTrip() throws IOException {
+        checkRoundTrip(TaskFormat.JSON_LINES, "tasks.jsonl");
+    }
+
+    /**
+     * Imports a file with the given content
+     *
+     * @return the imported tasks
+     */
+    private static List<Task> importText(TempDirectory directory, String text, TaskFormat format) throws IOException {
+        Path file = directory.resolve("import");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        TaskManager manager = open(directory, "manager");
+        try {
+            int imported = TaskTransfer.importTasks(manager, file, format);
+            List<Task> tasks = manager.getTasks(TaskFilter.ALL);
+            assertEquals(imported, tasks.size(), "Imported tasks");
+            return tasks;
+        } finally {
+            manager.close();
+        }
+    }
+
+    public void testCsvHeaderBlankLinesAndLineBreaks() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            String text = "\r\n  \n" + TaskFormat.CSV.header() + "\r\n"
+                    + "0,First,\"a\r\nb\",2025-01-01,HIGH,false\r\n"
+                    + "\n   \r\n"
+                    + "0,\"Second, \"\"quoted\"\"\",\"c\rd\",2025-01-02,low,TRUE\r"
+                    + "0,Third,,2025-01-03,Medium,"; //No line break at the end
+            List<Task> tasks = importText(directory, text, TaskFormat.CSV);
+
+            assertEquals(3, tasks.size(), "Header and blank lines skipped");
+            assertEquals("a\r\nb", tasks.get(0).getDescription(), "Quoted CRLF kept");
+            assertEquals("Second, \"quoted\"", tasks.get(1).getTitle(), "Comma and doubled quotes");
+            assertEquals("c\rd", tasks.get(1).getDescription(), "Quoted CR kept");
+            assertEquals(Priority.LOW, tasks.get(1).getPriority(), "Priority ignores case");
+            assertTrue(tasks.get(1).isCompleted(), "Completed ignores case");
+            assertEquals("", tasks.get(2).getDescription(), "Empty field");
+            assertFalse(tasks.get(2).isCompleted(), "Empty completed is false");
+        }
+    }
+
+    public void testJsonEscapes() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            String text = "{\"title\":\"\\u0041\\u00e9 \\\"q\\\" \\\\ \\/\",\"description\":\"a\\r\\nb\\tc\\u0001\","
+                    + "\"dueDate\":\"2025-01-01\",\"priority\":\"high\",\"completed\":true,\"other\":null}\n"
+                    + "\n"
+                    + "{ \"title\" : \"Only required keys\" , \"dueDate\" : \"2025-01-02\" , \"priority\" : \"LOW\" }\n";
+            List<Task> tasks = importText(directory, text, TaskFormat.JSON_LINES);
+
+            assertEquals(2, tasks.size(), "Blank line skipped");
+            assertEquals("Aé \"q\" \\ /", tasks.get(0).getTitle(), "Escaped title");
+            assertEquals("a\r\nb\tc\u0001", tasks.get(0).getDescription(), "Escaped description");
+            assertTrue(tasks.get(0).isCompleted(), "Completed");
+            assertEquals("", tasks.get(1).getDescription(), "Missing description");
+            assertFalse(tasks.get(1).isCompleted(), "Missing completed");
+        }
+    }
+
+    public void testUnclosedQuoteAtEnd() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            StringBuilder text = new StringBuilder(TaskFormat.CSV.header()).append('\n');
+            for (int i = 0; i < 4096; i++) { //One whole chunk before the broken record
+                text.append("0,Kept ").append(i).append(",,2025-01-01,LOW,false\n");
+            }
+            text.append("\n0,\"Open\nquote,,2025-01-01,LOW,false\n");
+            Path file = directory.resolve("import.csv");
+            Files.writeString(file, text);
+            TaskManager manager = open(directory, "manager");
+
+            IOException e = assertThrows(IOException.class, () -> TaskTransfer.importTasks(manager, file, TaskFormat.CSV));
+            assertTrue(e.getMessage().startsWith("Line 4099: Unclosed quote"), e.getMessage());
+            assertEquals(4096, manager.getTasks(TaskFilter.ALL).size(), "Chunks before it stay added");
+            manager.close();
+        }
+    }
+
+    public void testErrorMessageTellsLine() throws IOException {
+        try (TempDirectory directory = new TempDirectory()) {
+            Path file = directory.resolve("import.csv");
+            Files.writeString(file, TaskFormat.CSV.header() + "\r\n0,First,\"two\r\nlines\",2025-01-01,LOW,false\r\n\r\n"
+                    + "0,Second,,2025-01-01,URGENT,false\r\n");
+            TaskManager manager = open(directory, "manager");
+
+            IOException e = assertThrows(IOException.class, () -> TaskTransfer.importTasks(manager, file, TaskFormat.CSV));
+            assertTrue(e.getMessage().startsWith("Line 5: Wrong priority 'URGENT'"), e.getMessage());
+            manager.close();
+
+            Files.writeString(file, "{\"title\":\"First\",\"dueDate\":\"2025-01-01\",\"priority\":\"LOW\"}\n"
+                    + "{\"title\":\"Second\",\"dueDate\":\"2025-01-01\",\"priority\":\"LOW\",\"description\":\"\\x\"}\n");
+            TaskManager second = open(directory, "second");
+            e = assertThrows(IOException.class, () -> TaskTransfer.importTasks(second, file, TaskFormat.JSON_LINES));
+            assertTrue(e.getMessage().startsWith("Line 2: Wrong escape"), e.getMessage());
+            second.close();
+        }
+    }
+}